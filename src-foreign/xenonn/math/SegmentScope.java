@@ -0,0 +1,30 @@
+package xenonn.math;
+
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * Memory scope backed by a foreign memory resource scope. Created by {@link MemoryScope}.
+ */
+final class SegmentScope extends MemoryScope {
+
+    private final ResourceScope SCOPE;
+
+    SegmentScope(boolean shared) {
+        SCOPE = shared ? ResourceScope.newSharedScope() : ResourceScope.newConfinedScope();
+    }
+
+    @Override
+    Storage allocate(DType dtype, int length) {
+        return new SegmentStorage(dtype, length, SCOPE);
+    }
+
+    @Override
+    public boolean isAlive() {
+        return SCOPE.isAlive();
+    }
+
+    @Override
+    public void close() {
+        SCOPE.close();
+    }
+}
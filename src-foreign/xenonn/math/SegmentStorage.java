@@ -0,0 +1,116 @@
+package xenonn.math;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * Off-heap storage in a native memory segment. Kernels can't run on it directly, so element-wise
+ * operations stage it through heap buffers.
+ */
+final class SegmentStorage extends Storage {
+
+    final MemorySegment segment;
+    private final DType dtype;
+    private final int length;
+    private final long bytes;
+
+    SegmentStorage(DType dtype, int length, ResourceScope scope) {
+        this.dtype = dtype;
+        this.length = length;
+        bytes = dtype == DType.FLOAT32 ? Float.BYTES : Double.BYTES;
+        segment = MemorySegment.allocateNative(length * bytes, bytes, scope);
+    }
+
+    private MemorySegment slice(int from, int length) {
+        return segment.asSlice(from * bytes, length * bytes);
+    }
+
+    @Override
+    DType dtype() {
+        return dtype;
+    }
+
+    @Override
+    int length() {
+        return length;
+    }
+
+    @Override
+    boolean hasArray() {
+        return false;
+    }
+
+    @Override
+    double get(int index) {
+        if (dtype == DType.FLOAT32) {
+            return MemoryAccess.getFloatAtIndex(segment, index);
+        }
+        return MemoryAccess.getDoubleAtIndex(segment, index);
+    }
+
+    @Override
+    void set(int index, double value) {
+        if (dtype == DType.FLOAT32) {
+            MemoryAccess.setFloatAtIndex(segment, index, (float) value);
+        } else {
+            MemoryAccess.setDoubleAtIndex(segment, index, value);
+        }
+    }
+
+    @Override
+    void add(int index, double value) {
+        set(index, get(index) + value);
+    }
+
+    @Override
+    void fill(int from, int to, double value) {
+        if (value == 0) {
+            slice(from, to - from).fill((byte) 0);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            set(i, value);
+        }
+    }
+
+    @Override
+    void copyTo(int from, Storage target, int to, int length) {
+        if (target.dtype() == dtype && target instanceof DoubleStorage) {
+            MemorySegment.ofArray(((DoubleStorage) target).array).asSlice(to * bytes, length * bytes)
+                    .copyFrom(slice(from, length));
+        } else if (target.dtype() == dtype && target instanceof FloatStorage) {
+            MemorySegment.ofArray(((FloatStorage) target).array).asSlice(to * bytes, length * bytes)
+                    .copyFrom(slice(from, length));
+        } else if (target.dtype() == dtype && target instanceof SegmentStorage) {
+            ((SegmentStorage) target).slice(to, length).copyFrom(slice(from, length));
+        } else {
+            for (int i = 0; i < length; i++) {
+                target.set(to + i, get(from + i));
+            }
+        }
+    }
+
+    @Override
+    void copyTo(int from, double[] target, int to, int length) {
+        copyTo(from, new DoubleStorage(target), to, length);
+    }
+
+    @Override
+    void copyFrom(double[] source, int from, int to, int length) {
+        if (dtype == DType.FLOAT64) {
+            slice(to, length).copyFrom(MemorySegment.ofArray(source).asSlice(from * bytes, length * bytes));
+            return;
+        }
+        super.copyFrom(source, from, to, length);
+    }
+
+    @Override
+    void copyFrom(float[] source, int from, int to, int length) {
+        if (dtype == DType.FLOAT32) {
+            slice(to, length).copyFrom(MemorySegment.ofArray(source).asSlice(from * bytes, length * bytes));
+            return;
+        }
+        super.copyFrom(source, from, to, length);
+    }
+}
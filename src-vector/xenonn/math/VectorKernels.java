@@ -0,0 +1,559 @@
+package xenonn.math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final int FLOAT_LANES = FLOAT_SPECIES.length();
+
+    /**
+     * Int species with as many lanes as the double and float species, for positions kept next to
+     * their values.
+     */
+    private static final VectorSpecies<Integer> POSITION_SPECIES = VectorSpecies.of(int.class, VectorShape.forBitSize(LANES * Integer.SIZE));
+    private static final VectorSpecies<Integer> FLOAT_POSITION_SPECIES = FLOAT_SPECIES.withLanes(int.class);
+
+    @Override
+    public String name() {
+        return "vector " + SPECIES + ", " + FLOAT_SPECIES;
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.add(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.sub(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] - b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.mul(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void divide(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            va.div(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] / b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double d, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).add(d).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + d;
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double d, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).mul(d).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * d;
+        }
+    }
+
+    @Override
+    public void subtract(double d, double[] a, int aOffset, double[] out, int outOffset, int length) {
+        DoubleVector vd = DoubleVector.broadcast(SPECIES, d);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            vd.sub(DoubleVector.fromArray(SPECIES, a, aOffset + i)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = d - a[aOffset + i];
+        }
+    }
+
+    @Override
+    public void divide(double d, double[] a, int aOffset, double[] out, int outOffset, int length) {
+        DoubleVector vd = DoubleVector.broadcast(SPECIES, d);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            vd.div(DoubleVector.fromArray(SPECIES, a, aOffset + i)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = d / a[aOffset + i];
+        }
+    }
+
+    @Override
+    public void square(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            va.mul(va).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            double value = a[aOffset + i];
+            out[outOffset + i] = value * value;
+        }
+    }
+
+    @Override
+    public void sqrt(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).sqrt().intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = Math.sqrt(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public double sum(double[] a, int aOffset, int length) {
+        DoubleVector accumulator = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            accumulator = accumulator.add(DoubleVector.fromArray(SPECIES, a, aOffset + i));
+        }
+        double sum = accumulator.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDeviation(double[] a, int aOffset, double mean, int length) {
+        DoubleVector accumulator = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector deviation = DoubleVector.fromArray(SPECIES, a, aOffset + i).sub(mean);
+            accumulator = deviation.fma(deviation, accumulator);
+        }
+        double sum = accumulator.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double deviation = mean - a[aOffset + i];
+            sum += deviation * deviation;
+        }
+        return sum;
+    }
+
+    @Override
+    public void affine(double[] a, int aOffset, double shift, double scale, double[] out, int outOffset, int length) {
+        DoubleVector vShift = DoubleVector.broadcast(SPECIES, shift);
+        DoubleVector vScale = DoubleVector.broadcast(SPECIES, scale);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).fma(vScale, vShift).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = shift + a[aOffset + i] * scale;
+        }
+    }
+
+    @Override
+    public void relu(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).max(0).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = Math.max(0, a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void reluDerivative(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            zero.blend(one, va.compare(VectorOperators.GE, 0)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] >= 0 ? 1 : 0;
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            one.div(va.neg().lanewise(VectorOperators.EXP).add(1)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = 1 / (1 + Math.exp(-a[aOffset + i]));
+        }
+    }
+
+    @Override
+    public void sigmoidDerivative(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector value = one.div(va.neg().lanewise(VectorOperators.EXP).add(1));
+            value.mul(one.sub(value)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            double value = 1 / (1 + Math.exp(-a[aOffset + i]));
+            out[outOffset + i] = value * (1 - value);
+        }
+    }
+
+    @Override
+    public void tanh(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).lanewise(VectorOperators.TANH).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = Math.tanh(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void tanhDerivative(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector value = DoubleVector.fromArray(SPECIES, a, aOffset + i).lanewise(VectorOperators.TANH);
+            value.neg().fma(value, one).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            double value = Math.tanh(a[aOffset + i]);
+            out[outOffset + i] = 1 - value * value;
+        }
+    }
+
+    @Override
+    public void maxPosition(double[] a, int aOffset, double[] out, int outOffset,
+                            int[] positions, int positionsOffset, int position, int length) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += LANES) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vo = DoubleVector.fromArray(SPECIES, out, outOffset + i);
+            VectorMask<Double> greater = va.compare(VectorOperators.GT, vo);
+            if (greater.anyTrue()) {
+                vo.blend(va, greater).intoArray(out, outOffset + i);
+                IntVector.fromArray(POSITION_SPECIES, positions, positionsOffset + i)
+                        .blend(position, greater.cast(POSITION_SPECIES)).intoArray(positions, positionsOffset + i);
+            }
+        }
+        for (; i < length; i++) {
+            if (a[aOffset + i] > out[outOffset + i]) {
+                out[outOffset + i] = a[aOffset + i];
+                positions[positionsOffset + i] = position;
+            }
+        }
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            va.add(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            va.sub(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] - b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            va.mul(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void divide(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            va.div(vb).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] / b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, double d, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).add((float) d).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (a[aOffset + i] + d);
+        }
+    }
+
+    @Override
+    public void multiply(float[] a, int aOffset, double d, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).mul((float) d).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (a[aOffset + i] * d);
+        }
+    }
+
+    @Override
+    public void subtract(double d, float[] a, int aOffset, float[] out, int outOffset, int length) {
+        FloatVector vd = FloatVector.broadcast(FLOAT_SPECIES, (float) d);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            vd.sub(FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (d - a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void divide(double d, float[] a, int aOffset, float[] out, int outOffset, int length) {
+        FloatVector vd = FloatVector.broadcast(FLOAT_SPECIES, (float) d);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            vd.div(FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (d / a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void square(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            va.mul(va).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            double value = a[aOffset + i];
+            out[outOffset + i] = (float) (value * value);
+        }
+    }
+
+    @Override
+    public void sqrt(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).sqrt().intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) Math.sqrt(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public double sum(float[] a, int aOffset, int length) {
+        FloatVector accumulator = FloatVector.zero(FLOAT_SPECIES);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            accumulator = accumulator.add(FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i));
+        }
+        double sum = accumulator.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDeviation(float[] a, int aOffset, double mean, int length) {
+        FloatVector accumulator = FloatVector.zero(FLOAT_SPECIES);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector deviation = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).sub((float) mean);
+            accumulator = deviation.fma(deviation, accumulator);
+        }
+        double sum = accumulator.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double deviation = mean - a[aOffset + i];
+            sum += deviation * deviation;
+        }
+        return sum;
+    }
+
+    @Override
+    public void affine(float[] a, int aOffset, double shift, double scale, float[] out, int outOffset, int length) {
+        FloatVector vShift = FloatVector.broadcast(FLOAT_SPECIES, (float) shift);
+        FloatVector vScale = FloatVector.broadcast(FLOAT_SPECIES, (float) scale);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).fma(vScale, vShift).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (shift + a[aOffset + i] * scale);
+        }
+    }
+
+    @Override
+    public void relu(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).max(0).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = Math.max(0, a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void reluDerivative(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        FloatVector zero = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector one = FloatVector.broadcast(FLOAT_SPECIES, 1);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            zero.blend(one, va.compare(VectorOperators.GE, 0)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (a[aOffset + i] >= 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void sigmoid(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        FloatVector one = FloatVector.broadcast(FLOAT_SPECIES, 1);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            one.div(va.neg().lanewise(VectorOperators.EXP).add(1)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) (1 / (1 + Math.exp(-a[aOffset + i])));
+        }
+    }
+
+    @Override
+    public void sigmoidDerivative(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        FloatVector one = FloatVector.broadcast(FLOAT_SPECIES, 1);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector value = one.div(va.neg().lanewise(VectorOperators.EXP).add(1));
+            value.mul(one.sub(value)).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            double value = 1 / (1 + Math.exp(-a[aOffset + i]));
+            out[outOffset + i] = (float) (value * (1 - value));
+        }
+    }
+
+    @Override
+    public void tanh(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).lanewise(VectorOperators.TANH).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            out[outOffset + i] = (float) Math.tanh(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void tanhDerivative(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        FloatVector one = FloatVector.broadcast(FLOAT_SPECIES, 1);
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector value = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i).lanewise(VectorOperators.TANH);
+            value.neg().fma(value, one).intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++) {
+            double value = Math.tanh(a[aOffset + i]);
+            out[outOffset + i] = (float) (1 - value * value);
+        }
+    }
+
+    @Override
+    public void maxPosition(float[] a, int aOffset, float[] out, int outOffset,
+                            int[] positions, int positionsOffset, int position, int length) {
+        int i = 0;
+        for (int bound = FLOAT_SPECIES.loopBound(length); i < bound; i += FLOAT_LANES) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vo = FloatVector.fromArray(FLOAT_SPECIES, out, outOffset + i);
+            VectorMask<Float> greater = va.compare(VectorOperators.GT, vo);
+            if (greater.anyTrue()) {
+                vo.blend(va, greater).intoArray(out, outOffset + i);
+                IntVector.fromArray(FLOAT_POSITION_SPECIES, positions, positionsOffset + i)
+                        .blend(position, greater.cast(FLOAT_POSITION_SPECIES)).intoArray(positions, positionsOffset + i);
+            }
+        }
+        for (; i < length; i++) {
+            if (a[aOffset + i] > out[outOffset + i]) {
+                out[outOffset + i] = a[aOffset + i];
+                positions[positionsOffset + i] = position;
+            }
+        }
+    }
+}
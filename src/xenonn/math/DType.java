@@ -0,0 +1,6 @@
+package xenonn.math;
+
+public enum DType {
+    FLOAT64,
+    FLOAT32
+}
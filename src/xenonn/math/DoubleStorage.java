@@ -0,0 +1,66 @@
+package xenonn.math;
+
+import java.util.Arrays;
+
+final class DoubleStorage extends Storage {
+
+    final double[] array;
+
+    DoubleStorage(double[] array) {
+        this.array = array;
+    }
+
+    @Override
+    DType dtype() {
+        return DType.FLOAT64;
+    }
+
+    @Override
+    int length() {
+        return array.length;
+    }
+
+    @Override
+    double get(int index) {
+        return array[index];
+    }
+
+    @Override
+    void set(int index, double value) {
+        array[index] = value;
+    }
+
+    @Override
+    void add(int index, double value) {
+        array[index] += value;
+    }
+
+    @Override
+    void fill(int from, int to, double value) {
+        Arrays.fill(array, from, to, value);
+    }
+
+    @Override
+    void copyTo(int from, Storage target, int to, int length) {
+        if (target instanceof DoubleStorage) {
+            System.arraycopy(array, from, ((DoubleStorage) target).array, to, length);
+        } else if (target instanceof FloatStorage) {
+            float[] targetArray = ((FloatStorage) target).array;
+            for (int i = 0; i < length; i++) {
+                targetArray[to + i] = (float) array[from + i];
+            }
+        } else {
+            target.copyFrom(array, from, to, length);
+        }
+    }
+
+    @Override
+    void copyTo(int from, double[] target, int to, int length) {
+        System.arraycopy(array, from, target, to, length);
+    }
+
+    @Override
+    void copyFrom(double[] source, int from, int to, int length) {
+        System.arraycopy(source, from, array, to, length);
+    }
+}
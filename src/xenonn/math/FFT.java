@@ -0,0 +1,184 @@
+package xenonn.math;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Radix-2 fast Fourier transforms of real 2D planes.
+ * <p>
+ * A plane is a column major sizeX x sizeY array, both sizes powers of two. Since the input is real
+ * its spectrum is Hermitian, so only the sizeX / 2 + 1 non-negative frequencies along x are kept,
+ * as a column major sizeY x (sizeX / 2 + 1) pair of real and imaginary arrays, transposed so that
+ * the transforms along y run over contiguous values. Rows are transformed two at a time as the
+ * real and imaginary parts of one complex sequence, and rows past the data are skipped.
+ * <p>
+ * Twiddle factors and bit reversal tables are computed once per length and shared.
+ */
+public final class FFT {
+
+    private static final ConcurrentHashMap<Integer, Plan> PLANS = new ConcurrentHashMap<>();
+
+    private FFT() {
+
+    }
+
+    /**
+     * Smallest power of two that is at least {@code n} and 2.
+     */
+    public static int size(int n) {
+        int size = 2;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Number of values in the half spectrum of a sizeX x sizeY plane.
+     */
+    public static int spectrumSize(int sizeX, int sizeY) {
+        return (sizeX / 2 + 1) * sizeY;
+    }
+
+    private static Plan plan(int n) {
+        return PLANS.computeIfAbsent(n, Plan::new);
+    }
+
+    /**
+     * Half spectrum of a real plane, written to {@code real} and {@code imaginary}. Only the first
+     * {@code rows} rows of the plane are read, the rest are taken to be zero.
+     */
+    public static void forward(double[] plane, int sizeX, int sizeY, int rows, double[] real, double[] imaginary) {
+        Plan rowPlan = plan(sizeX);
+        Plan columnPlan = plan(sizeY);
+        int bins = sizeX / 2 + 1;
+        double[] re = new double[sizeX];
+        double[] im = new double[sizeX];
+        for (int y = 0; y < sizeY; y += 2) {
+            if (y >= rows) {
+                for (int k = 0; k < bins; k++) {
+                    real[y + sizeY * k] = 0;
+                    imaginary[y + sizeY * k] = 0;
+                    real[y + 1 + sizeY * k] = 0;
+                    imaginary[y + 1 + sizeY * k] = 0;
+                }
+                continue;
+            }
+            boolean pair = y + 1 < rows;
+            for (int x = 0; x < sizeX; x++) {
+                re[x] = plane[x + sizeX * y];
+                im[x] = pair ? plane[x + sizeX * (y + 1)] : 0;
+            }
+            rowPlan.transform(re, im, 0, false);
+            for (int k = 0; k < bins; k++) {
+                int mirror = (sizeX - k) & (sizeX - 1);
+                int index = y + sizeY * k;
+                real[index] = (re[k] + re[mirror]) * 0.5;
+                imaginary[index] = (im[k] - im[mirror]) * 0.5;
+                real[index + 1] = (im[k] + im[mirror]) * 0.5;
+                imaginary[index + 1] = (re[mirror] - re[k]) * 0.5;
+            }
+        }
+        for (int k = 0; k < bins; k++) {
+            columnPlan.transform(real, imaginary, sizeY * k, false);
+        }
+    }
+
+    /**
+     * Real plane of a half spectrum, the inverse of {@link #forward}. Only the first {@code rows}
+     * rows of the plane are written. The spectrum is overwritten.
+     */
+    public static void inverse(double[] real, double[] imaginary, int sizeX, int sizeY, int rows, double[] plane) {
+        Plan rowPlan = plan(sizeX);
+        Plan columnPlan = plan(sizeY);
+        int bins = sizeX / 2 + 1;
+        for (int k = 0; k < bins; k++) {
+            columnPlan.transform(real, imaginary, sizeY * k, true);
+        }
+        double scale = 1.0 / ((double) sizeX * sizeY);
+        double[] re = new double[sizeX];
+        double[] im = new double[sizeX];
+        for (int y = 0; y < rows; y += 2) {
+            boolean pair = y + 1 < rows;
+            for (int k = 0; k < sizeX; k++) {
+                boolean upper = k >= bins;
+                int index = y + sizeY * (upper ? sizeX - k : k);
+                double sign = upper ? -1 : 1;
+                double bIm = imaginary[index + 1] * sign;
+                re[k] = real[index] - bIm;
+                im[k] = imaginary[index] * sign + real[index + 1];
+            }
+            rowPlan.transform(re, im, 0, true);
+            for (int x = 0; x < sizeX; x++) {
+                plane[x + sizeX * y] = re[x] * scale;
+                if (pair) {
+                    plane[x + sizeX * (y + 1)] = im[x] * scale;
+                }
+            }
+        }
+    }
+
+    private static final class Plan {
+
+        private final int N;
+        private final int[] REVERSED;
+        private final double[] COS;
+        private final double[] SIN;
+
+        private Plan(int n) {
+            if (Integer.bitCount(n) != 1) {
+                throw new RuntimeException("FFT size must be a power of two");
+            }
+            N = n;
+            REVERSED = new int[n];
+            int bits = Integer.numberOfTrailingZeros(n);
+            for (int i = 0; i < n; i++) {
+                REVERSED[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+            COS = new double[n / 2];
+            SIN = new double[n / 2];
+            for (int i = 0; i < n / 2; i++) {
+                double angle = -2 * Math.PI * i / n;
+                COS[i] = Math.cos(angle);
+                SIN[i] = Math.sin(angle);
+            }
+        }
+
+        /**
+         * In-place transform of the n complex values starting at offset. The inverse is not scaled.
+         */
+        private void transform(double[] re, double[] im, int offset, boolean inverse) {
+            for (int i = 0; i < N; i++) {
+                int j = REVERSED[i];
+                if (j > i) {
+                    int a = offset + i;
+                    int b = offset + j;
+                    double t = re[a];
+                    re[a] = re[b];
+                    re[b] = t;
+                    t = im[a];
+                    im[a] = im[b];
+                    im[b] = t;
+                }
+            }
+            double sign = inverse ? -1 : 1;
+            for (int length = 2; length <= N; length <<= 1) {
+                int half = length >> 1;
+                int step = N / length;
+                for (int start = 0; start < N; start += length) {
+                    for (int j = 0; j < half; j++) {
+                        double wRe = COS[j * step];
+                        double wIm = SIN[j * step] * sign;
+                        int a = offset + start + j;
+                        int b = a + half;
+                        double tRe = re[b] * wRe - im[b] * wIm;
+                        double tIm = re[b] * wIm + im[b] * wRe;
+                        re[b] = re[a] - tRe;
+                        im[b] = im[a] - tIm;
+                        re[a] += tRe;
+                        im[a] += tIm;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package xenonn.math;
+
+import java.util.Arrays;
+
+/**
+ * Stride 1 multi-channel convolutions computed as products of spectra, see {@link FFT}.
+ * <p>
+ * Images are column major [batch, x, y, channels] arrays and filters are column major
+ * [kernelSize, kernelSize, inChannels, outChannels] arrays, as for {@link Winograd}. Images are
+ * cut into overlapping tiles (overlap-save) whose power of two size is picked per axis to keep
+ * padding waste low, and every tile is treated as a sample of its own. Each pass transforms every
+ * tile once, sums the spectrum products over the channel being reduced and transforms the sums
+ * back, so its cost barely grows with the kernel size. Every step is split across the
+ * {@link Parallel} pool by the plane it writes.
+ */
+public final class FFTConvolution {
+
+    private FFTConvolution() {
+
+    }
+
+    /**
+     * Rough operation count of {@link #correlate} for one sample, leaving out the filter
+     * transforms, which the whole batch shares.
+     */
+    public static double cost(int inX, int inY, int inChannels, int kernelSize, int outChannels, int outX, int outY) {
+        Tiling tiling = new Tiling(outX, outY, inX, inY, kernelSize);
+        double points = (double) tiling.SIZE_X * tiling.SIZE_Y;
+        double transforms = (inChannels + outChannels) * points * Math.log(points) / Math.log(2);
+        double products = (double) inChannels * outChannels * points;
+        return tiling.TILES * (transforms + products);
+    }
+
+    /**
+     * Overwrites {@code out}, a [batch, outX, outY, outChannels] image, with
+     * out[n, x, y, o] = sum over c, kx, ky of image[n, x + kx, y + ky, c] * filter[kx, ky, c, o],
+     * reading zero outside the image.
+     */
+    public static void correlate(double[] image, int batch, int inX, int inY, int inChannels,
+                                 double[] filters, int kernelSize, int outChannels,
+                                 double[] out, int outX, int outY) {
+        Tiling tiling = new Tiling(outX, outY, inX, inY, kernelSize);
+        int samples = batch * tiling.TILES;
+        Spectra images = tiling.spectra(image, batch, inX, inY, inChannels, 0, tiling.SIZE_X, tiling.SIZE_Y);
+        Spectra kernels = tiling.filterSpectra(filters, kernelSize, inChannels * outChannels);
+        Parallel.forEach(outChannels * samples, (start, end) -> {
+            Spectra sum = new Spectra(1, tiling);
+            double[] plane = new double[tiling.SIZE_X * tiling.SIZE_Y];
+            for (int index = start; index < end; index++) {
+                int s = index % samples;
+                int o = index / samples;
+                sum.zero();
+                for (int c = 0; c < inChannels; c++) {
+                    sum.multiplyAdd(images, s + samples * c, kernels, c + inChannels * o, true);
+                }
+                FFT.inverse(sum.REAL[0], sum.IMAGINARY[0], tiling.SIZE_X, tiling.SIZE_Y, tiling.VALID_Y, plane);
+                tiling.write(plane, 0, s, batch, out, outX, outY, o);
+            }
+        });
+    }
+
+    /**
+     * Overwrites {@code delta}, a [batch, inX, inY, inChannels] image, with the adjoint of
+     * {@link #correlate}: delta[n, i, j, c] = sum over o, kx, ky of
+     * errors[n, i - kx, j - ky, o] * filter[kx, ky, c, o].
+     */
+    public static void convolve(double[] errors, int batch, int outX, int outY, int outChannels,
+                                double[] filters, int kernelSize, int inChannels,
+                                double[] delta, int inX, int inY) {
+        Tiling tiling = new Tiling(inX, inY, outX, outY, kernelSize);
+        int samples = batch * tiling.TILES;
+        int shift = kernelSize - 1;
+        Spectra errorSpectra = tiling.spectra(errors, batch, outX, outY, outChannels, shift, tiling.SIZE_X, tiling.SIZE_Y);
+        Spectra kernels = tiling.filterSpectra(filters, kernelSize, inChannels * outChannels);
+        Parallel.forEach(inChannels * samples, (start, end) -> {
+            Spectra sum = new Spectra(1, tiling);
+            double[] plane = new double[tiling.SIZE_X * tiling.SIZE_Y];
+            for (int index = start; index < end; index++) {
+                int s = index % samples;
+                int c = index / samples;
+                sum.zero();
+                for (int o = 0; o < outChannels; o++) {
+                    sum.multiplyAdd(errorSpectra, s + samples * o, kernels, c + inChannels * o, false);
+                }
+                FFT.inverse(sum.REAL[0], sum.IMAGINARY[0], tiling.SIZE_X, tiling.SIZE_Y, tiling.SIZE_Y, plane);
+                tiling.write(plane, shift, s, batch, delta, inX, inY, c);
+            }
+        });
+    }
+
+    /**
+     * Overwrites {@code gradients}, a [kernelSize, kernelSize, inChannels, outChannels] array, with
+     * the filter gradients of {@link #correlate}: sum over n, x, y of
+     * errors[n, x, y, o] * image[n, x + kx, y + ky, c].
+     */
+    public static void filterGradients(double[] image, int inX, int inY, int inChannels,
+                                       double[] errors, int outX, int outY, int outChannels,
+                                       int batch, int kernelSize, double[] gradients) {
+        Tiling tiling = new Tiling(outX, outY, inX, inY, kernelSize);
+        int samples = batch * tiling.TILES;
+        Spectra images = tiling.spectra(image, batch, inX, inY, inChannels, 0, tiling.SIZE_X, tiling.SIZE_Y);
+        Spectra errorSpectra = tiling.spectra(errors, batch, outX, outY, outChannels, 0, tiling.VALID_X, tiling.VALID_Y);
+        int area = kernelSize * kernelSize;
+        Parallel.forEach(inChannels * outChannels, (start, end) -> {
+            Spectra sum = new Spectra(1, tiling);
+            double[] plane = new double[tiling.SIZE_X * tiling.SIZE_Y];
+            for (int pair = start; pair < end; pair++) {
+                int c = pair % inChannels;
+                int o = pair / inChannels;
+                sum.zero();
+                for (int s = 0; s < samples; s++) {
+                    sum.multiplyAdd(images, s + samples * c, errorSpectra, s + samples * o, true);
+                }
+                FFT.inverse(sum.REAL[0], sum.IMAGINARY[0], tiling.SIZE_X, tiling.SIZE_Y, kernelSize, plane);
+                for (int ky = 0; ky < kernelSize; ky++) {
+                    for (int kx = 0; kx < kernelSize; kx++) {
+                        gradients[kx + kernelSize * ky + area * pair] = plane[kx + tiling.SIZE_X * ky];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Overlap-save tiling of an extentX x extentY result. Each tile is a SIZE_X x SIZE_Y transform
+     * of which the VALID_X x VALID_Y values the circular wrap does not reach are kept.
+     */
+    private static final class Tiling {
+
+        private final int SIZE_X;
+        private final int SIZE_Y;
+        private final int VALID_X;
+        private final int VALID_Y;
+        private final int TILES_X;
+        private final int TILES;
+
+        private Tiling(int extentX, int extentY, int otherX, int otherY, int kernelSize) {
+            SIZE_X = size(extentX, otherX, kernelSize);
+            SIZE_Y = size(extentY, otherY, kernelSize);
+            VALID_X = SIZE_X - kernelSize + 1;
+            VALID_Y = SIZE_Y - kernelSize + 1;
+            TILES_X = (extentX + VALID_X - 1) / VALID_X;
+            TILES = TILES_X * ((extentY + VALID_Y - 1) / VALID_Y);
+        }
+
+        /**
+         * Transform size along one axis with the least work per result, from just above the
+         * kernel size up to a single tile covering the whole axis.
+         */
+        private static int size(int extent, int other, int kernelSize) {
+            int whole = FFT.size(Math.max(extent, other) + kernelSize - 1);
+            int best = whole;
+            double bestCost = Double.MAX_VALUE;
+            for (int size = FFT.size(kernelSize + 1); size <= whole; size <<= 1) {
+                int valid = size - kernelSize + 1;
+                double cost = (double) ((extent + valid - 1) / valid) * size * (Math.log(size) + 1);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = size;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Spectra of the width x height window of every tile and channel of a [batch, x, y,
+         * channels] image, each window starting {@code shift} values before its tile. The tile t
+         * of sample n is sample n + batch * t, and its channel c is plane sample + samples * c.
+         */
+        private Spectra spectra(double[] image, int batch, int imageX, int imageY, int channels,
+                                int shift, int width, int height) {
+            int samples = batch * TILES;
+            Spectra spectra = new Spectra(samples * channels, this);
+            Parallel.forEach(samples * channels, (start, end) -> {
+                double[] plane = new double[SIZE_X * SIZE_Y];
+                for (int index = start; index < end; index++) {
+                    int s = index % samples;
+                    int c = index / samples;
+                    int n = s % batch;
+                    int tile = s / batch;
+                    int x0 = (tile % TILES_X) * VALID_X - shift;
+                    int y0 = (tile / TILES_X) * VALID_Y - shift;
+                    for (int j = 0; j < height; j++) {
+                        int y = y0 + j;
+                        for (int i = 0; i < SIZE_X; i++) {
+                            int x = x0 + i;
+                            boolean inside = i < width && x >= 0 && y >= 0 && x < imageX && y < imageY;
+                            plane[i + SIZE_X * j] = inside ? image[n + batch * (x + imageX * (y + imageY * c))] : 0;
+                        }
+                    }
+                    FFT.forward(plane, SIZE_X, SIZE_Y, height, spectra.REAL[index], spectra.IMAGINARY[index]);
+                }
+            });
+            return spectra;
+        }
+
+        /**
+         * Spectra of every kernelSize x kernelSize filter, plane c + inChannels * o.
+         */
+        private Spectra filterSpectra(double[] filters, int kernelSize, int pairs) {
+            Spectra spectra = new Spectra(pairs, this);
+            int area = kernelSize * kernelSize;
+            Parallel.forEach(pairs, (start, end) -> {
+                double[] plane = new double[SIZE_X * SIZE_Y];
+                for (int pair = start; pair < end; pair++) {
+                    for (int ky = 0; ky < kernelSize; ky++) {
+                        for (int kx = 0; kx < kernelSize; kx++) {
+                            plane[kx + SIZE_X * ky] = filters[kx + kernelSize * ky + area * pair];
+                        }
+                    }
+                    FFT.forward(plane, SIZE_X, SIZE_Y, kernelSize, spectra.REAL[pair], spectra.IMAGINARY[pair]);
+                }
+            });
+            return spectra;
+        }
+
+        /**
+         * Copies the kept values of sample s's tile, which start {@code shift} values into the
+         * plane, to channel c of a [batch, x, y, channels] image.
+         */
+        private void write(double[] plane, int shift, int s, int batch, double[] image, int imageX, int imageY, int c) {
+            int n = s % batch;
+            int tile = s / batch;
+            int x0 = (tile % TILES_X) * VALID_X;
+            int y0 = (tile / TILES_X) * VALID_Y;
+            int width = Math.min(VALID_X, imageX - x0);
+            int height = Math.min(VALID_Y, imageY - y0);
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    image[n + batch * (x0 + i + imageX * (y0 + j + imageY * c))] = plane[i + shift + SIZE_X * (j + shift)];
+                }
+            }
+        }
+    }
+
+    private static final class Spectra {
+
+        private final double[][] REAL;
+        private final double[][] IMAGINARY;
+
+        private Spectra(int planes, Tiling tiling) {
+            int size = FFT.spectrumSize(tiling.SIZE_X, tiling.SIZE_Y);
+            REAL = new double[planes][size];
+            IMAGINARY = new double[planes][size];
+        }
+
+        private void zero() {
+            Arrays.fill(REAL[0], 0);
+            Arrays.fill(IMAGINARY[0], 0);
+        }
+
+        /**
+         * Adds a[aPlane] * b[bPlane], with b conjugated if asked, to this spectrum's first plane.
+         */
+        private void multiplyAdd(Spectra a, int aPlane, Spectra b, int bPlane, boolean conjugate) {
+            double[] re = REAL[0];
+            double[] im = IMAGINARY[0];
+            double[] aRe = a.REAL[aPlane];
+            double[] aIm = a.IMAGINARY[aPlane];
+            double[] bRe = b.REAL[bPlane];
+            double[] bIm = b.IMAGINARY[bPlane];
+            double sign = conjugate ? -1 : 1;
+            for (int i = 0; i < re.length; i++) {
+                double imaginary = bIm[i] * sign;
+                re[i] += aRe[i] * bRe[i] - aIm[i] * imaginary;
+                im[i] += aRe[i] * imaginary + aIm[i] * bRe[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package xenonn.math;
+
+import java.util.Arrays;
+
+final class FloatStorage extends Storage {
+
+    final float[] array;
+
+    FloatStorage(float[] array) {
+        this.array = array;
+    }
+
+    @Override
+    DType dtype() {
+        return DType.FLOAT32;
+    }
+
+    @Override
+    int length() {
+        return array.length;
+    }
+
+    @Override
+    double get(int index) {
+        return array[index];
+    }
+
+    @Override
+    void set(int index, double value) {
+        array[index] = (float) value;
+    }
+
+    @Override
+    void add(int index, double value) {
+        array[index] += value;
+    }
+
+    @Override
+    void fill(int from, int to, double value) {
+        Arrays.fill(array, from, to, (float) value);
+    }
+
+    @Override
+    void copyTo(int from, Storage target, int to, int length) {
+        if (target instanceof FloatStorage) {
+            System.arraycopy(array, from, ((FloatStorage) target).array, to, length);
+        } else if (target instanceof DoubleStorage) {
+            double[] targetArray = ((DoubleStorage) target).array;
+            for (int i = 0; i < length; i++) {
+                targetArray[to + i] = array[from + i];
+            }
+        } else {
+            target.copyFrom(array, from, to, length);
+        }
+    }
+
+    @Override
+    void copyTo(int from, double[] target, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            target[to + i] = array[from + i];
+        }
+    }
+}
@@ -0,0 +1,595 @@
+package xenonn.math;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Matrix multiply kernel working directly on flat {@code double[]} storage.
+ * <p>
+ * Every operand is described by an offset plus a row and a column stride, so column major
+ * tensors, row major buffers and transposed layouts are all handled without copying.
+ * Large products are cache blocked (panels of A and B are packed into contiguous buffers)
+ * and computed by a {@value #MR}x{@value #NR} register tiled micro kernel.
+ * <p>
+ * Products of at least {@value #PARALLEL_THRESHOLD} multiply-adds are split into tiles of C that
+ * run on the {@link Parallel} pool.
+ */
+public final class Gemm {
+
+    private static final int MR = 4;
+    private static final int NR = 4;
+
+    private static final int MC = 128;
+    private static final int KC = 256;
+    private static final int NC = 512;
+
+    private static final long BLOCKING_THRESHOLD = 32 * 32 * 32;
+
+    private static final long PARALLEL_THRESHOLD = 64 * 64 * 64;
+    private static final long MIN_TASK_WORK = 32 * 32 * 32;
+
+    private static final ThreadLocal<double[][]> PACK_BUFFERS = ThreadLocal.withInitial(() -> new double[][]{
+            new double[MC * KC],
+            new double[KC * NC]
+    });
+
+    /**
+     * Double precision results of blocked single precision products, grown to the largest product
+     * seen by the thread.
+     */
+    private static final ThreadLocal<double[]> RESULT_BUFFERS = ThreadLocal.withInitial(() -> new double[0]);
+
+    private Gemm() {
+
+    }
+
+    private static boolean parallel(int m, int n, int k) {
+        return (long) m * n * k >= PARALLEL_THRESHOLD && Parallel.getParallelism() > 1;
+    }
+
+    private static void multiplyParallel(int m, int n, int k, Block block) {
+        ForkJoinPool pool = Parallel.pool();
+        long taskWork = Math.max(MIN_TASK_WORK, (long) m * n * k / (4L * pool.getParallelism()));
+        pool.invoke(new Tiles(block, 0, 0, m, n, k, taskWork));
+    }
+
+    /**
+     * Accumulates the rows x columns block of C starting at row i and column j.
+     */
+    private interface Block {
+        void multiply(int i, int j, int rows, int columns);
+    }
+
+    /**
+     * Halves the larger side of its block of C until the work fits one task.
+     */
+    private static final class Tiles extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Block BLOCK;
+        private final int I;
+        private final int J;
+        private final int ROWS;
+        private final int COLUMNS;
+        private final int K;
+        private final long TASK_WORK;
+
+        private Tiles(Block block, int i, int j, int rows, int columns, int k, long taskWork) {
+            BLOCK = block;
+            I = i;
+            J = j;
+            ROWS = rows;
+            COLUMNS = columns;
+            K = k;
+            TASK_WORK = taskWork;
+        }
+
+        @Override
+        protected void compute() {
+            if ((long) ROWS * COLUMNS * K <= TASK_WORK || (ROWS == 1 && COLUMNS == 1)) {
+                BLOCK.multiply(I, J, ROWS, COLUMNS);
+            } else if (ROWS >= COLUMNS) {
+                int half = ROWS / 2;
+                invokeAll(new Tiles(BLOCK, I, J, half, COLUMNS, K, TASK_WORK),
+                        new Tiles(BLOCK, I + half, J, ROWS - half, COLUMNS, K, TASK_WORK));
+            } else {
+                int half = COLUMNS / 2;
+                invokeAll(new Tiles(BLOCK, I, J, ROWS, half, K, TASK_WORK),
+                        new Tiles(BLOCK, I, J + half, ROWS, COLUMNS - half, K, TASK_WORK));
+            }
+        }
+    }
+
+    /**
+     * C = A * B, or C += A * B when {@code accumulate} is set.
+     * A is m x k, B is k x n and C is m x n.
+     */
+    public static void multiply(int m, int n, int k,
+                                double[] a, int aOffset, int aRowStride, int aColumnStride,
+                                double[] b, int bOffset, int bRowStride, int bColumnStride,
+                                double[] c, int cOffset, int cRowStride, int cColumnStride,
+                                boolean accumulate) {
+        if (!accumulate) {
+            zero(m, n, c, cOffset, cRowStride, cColumnStride);
+        }
+        if (m == 0 || n == 0 || k == 0) {
+            return;
+        }
+        if (parallel(m, n, k)) {
+            multiplyParallel(m, n, k, (i, j, rows, columns) -> accumulate(rows, columns, k,
+                    a, aOffset + i * aRowStride, aRowStride, aColumnStride,
+                    b, bOffset + j * bColumnStride, bRowStride, bColumnStride,
+                    c, cOffset + i * cRowStride + j * cColumnStride, cRowStride, cColumnStride));
+        } else {
+            accumulate(m, n, k, a, aOffset, aRowStride, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        }
+    }
+
+    private static void accumulate(int m, int n, int k,
+                                   double[] a, int aOffset, int aRowStride, int aColumnStride,
+                                   double[] b, int bOffset, int bRowStride, int bColumnStride,
+                                   double[] c, int cOffset, int cRowStride, int cColumnStride) {
+        if (m == 1) {
+            rowTimesMatrix(n, k, a, aOffset, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cColumnStride);
+        } else if (k == 1) {
+            outerProduct(m, n, a, aOffset, aRowStride, b, bOffset, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        } else if ((long) m * n * k < BLOCKING_THRESHOLD) {
+            small(m, n, k, a, aOffset, aRowStride, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        } else {
+            blocked(m, n, k, a, aOffset, aRowStride, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        }
+    }
+
+    /**
+     * Single precision C = A * B. Dot products and blocked products accumulate in double and are
+     * rounded once when added to C.
+     */
+    public static void multiply(int m, int n, int k,
+                                float[] a, int aOffset, int aRowStride, int aColumnStride,
+                                float[] b, int bOffset, int bRowStride, int bColumnStride,
+                                float[] c, int cOffset, int cRowStride, int cColumnStride,
+                                boolean accumulate) {
+        if (!accumulate) {
+            zero(m, n, c, cOffset, cRowStride, cColumnStride);
+        }
+        if (m == 0 || n == 0 || k == 0) {
+            return;
+        }
+        if (parallel(m, n, k)) {
+            multiplyParallel(m, n, k, (i, j, rows, columns) -> accumulate(rows, columns, k,
+                    a, aOffset + i * aRowStride, aRowStride, aColumnStride,
+                    b, bOffset + j * bColumnStride, bRowStride, bColumnStride,
+                    c, cOffset + i * cRowStride + j * cColumnStride, cRowStride, cColumnStride));
+        } else {
+            accumulate(m, n, k, a, aOffset, aRowStride, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        }
+    }
+
+    private static void accumulate(int m, int n, int k,
+                                   float[] a, int aOffset, int aRowStride, int aColumnStride,
+                                   float[] b, int bOffset, int bRowStride, int bColumnStride,
+                                   float[] c, int cOffset, int cRowStride, int cColumnStride) {
+        if (m == 1) {
+            rowTimesMatrix(n, k, a, aOffset, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cColumnStride);
+        } else if (k == 1) {
+            outerProduct(m, n, a, aOffset, aRowStride, b, bOffset, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        } else if ((long) m * n * k < BLOCKING_THRESHOLD) {
+            small(m, n, k, a, aOffset, aRowStride, aColumnStride, b, bOffset, bRowStride, bColumnStride, c, cOffset, cRowStride, cColumnStride);
+        } else {
+            double[] result = resultBuffer(m * n);
+            blocked(m, n, k, a, aOffset, aRowStride, aColumnStride, b, bOffset, bRowStride, bColumnStride, result);
+            for (int j = 0; j < n; j++) {
+                int index = cOffset + j * cColumnStride;
+                for (int i = 0; i < m; i++) {
+                    c[index] += result[i + j * m];
+                    index += cRowStride;
+                }
+            }
+        }
+    }
+
+    private static double[] resultBuffer(int length) {
+        double[] buffer = RESULT_BUFFERS.get();
+        if (buffer.length < length) {
+            buffer = new double[length];
+            RESULT_BUFFERS.set(buffer);
+        } else {
+            Arrays.fill(buffer, 0, length, 0);
+        }
+        return buffer;
+    }
+
+    private static void zero(int m, int n, double[] c, int cOffset, int cRowStride, int cColumnStride) {
+        for (int j = 0; j < n; j++) {
+            int index = cOffset + j * cColumnStride;
+            for (int i = 0; i < m; i++) {
+                c[index] = 0;
+                index += cRowStride;
+            }
+        }
+    }
+
+    private static void rowTimesMatrix(int n, int k,
+                                       double[] a, int aOffset, int aStride,
+                                       double[] b, int bOffset, int bRowStride, int bColumnStride,
+                                       double[] c, int cOffset, int cStride) {
+        if (bRowStride == 1 && aStride == 1) {
+            for (int j = 0; j < n; j++) {
+                int bIndex = bOffset + j * bColumnStride;
+                double sum0 = 0;
+                double sum1 = 0;
+                double sum2 = 0;
+                double sum3 = 0;
+                int p = 0;
+                for (; p + 3 < k; p += 4) {
+                    sum0 += a[aOffset + p] * b[bIndex + p];
+                    sum1 += a[aOffset + p + 1] * b[bIndex + p + 1];
+                    sum2 += a[aOffset + p + 2] * b[bIndex + p + 2];
+                    sum3 += a[aOffset + p + 3] * b[bIndex + p + 3];
+                }
+                for (; p < k; p++) {
+                    sum0 += a[aOffset + p] * b[bIndex + p];
+                }
+                c[cOffset + j * cStride] += (sum0 + sum1) + (sum2 + sum3);
+            }
+            return;
+        }
+        for (int p = 0; p < k; p++) {
+            double value = a[aOffset + p * aStride];
+            if (value == 0) {
+                continue;
+            }
+            int bIndex = bOffset + p * bRowStride;
+            int cIndex = cOffset;
+            for (int j = 0; j < n; j++) {
+                c[cIndex] += value * b[bIndex];
+                bIndex += bColumnStride;
+                cIndex += cStride;
+            }
+        }
+    }
+
+    private static void outerProduct(int m, int n,
+                                     double[] a, int aOffset, int aStride,
+                                     double[] b, int bOffset, int bStride,
+                                     double[] c, int cOffset, int cRowStride, int cColumnStride) {
+        for (int j = 0; j < n; j++) {
+            double value = b[bOffset + j * bStride];
+            int aIndex = aOffset;
+            int cIndex = cOffset + j * cColumnStride;
+            for (int i = 0; i < m; i++) {
+                c[cIndex] += a[aIndex] * value;
+                aIndex += aStride;
+                cIndex += cRowStride;
+            }
+        }
+    }
+
+    private static void small(int m, int n, int k,
+                              double[] a, int aOffset, int aRowStride, int aColumnStride,
+                              double[] b, int bOffset, int bRowStride, int bColumnStride,
+                              double[] c, int cOffset, int cRowStride, int cColumnStride) {
+        for (int j = 0; j < n; j++) {
+            for (int p = 0; p < k; p++) {
+                double value = b[bOffset + p * bRowStride + j * bColumnStride];
+                int aIndex = aOffset + p * aColumnStride;
+                int cIndex = cOffset + j * cColumnStride;
+                for (int i = 0; i < m; i++) {
+                    c[cIndex] += a[aIndex] * value;
+                    aIndex += aRowStride;
+                    cIndex += cRowStride;
+                }
+            }
+        }
+    }
+
+    private static void blocked(int m, int n, int k,
+                                double[] a, int aOffset, int aRowStride, int aColumnStride,
+                                double[] b, int bOffset, int bRowStride, int bColumnStride,
+                                double[] c, int cOffset, int cRowStride, int cColumnStride) {
+        double[][] buffers = PACK_BUFFERS.get();
+        double[] packedA = buffers[0];
+        double[] packedB = buffers[1];
+        for (int jc = 0; jc < n; jc += NC) {
+            int nc = Math.min(NC, n - jc);
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(kc, nc, b, bOffset + pc * bRowStride + jc * bColumnStride, bRowStride, bColumnStride, packedB);
+                for (int ic = 0; ic < m; ic += MC) {
+                    int mc = Math.min(MC, m - ic);
+                    packA(mc, kc, a, aOffset + ic * aRowStride + pc * aColumnStride, aRowStride, aColumnStride, packedA);
+                    for (int jr = 0; jr < nc; jr += NR) {
+                        int nr = Math.min(NR, nc - jr);
+                        int bPanel = jr * kc;
+                        for (int ir = 0; ir < mc; ir += MR) {
+                            int mr = Math.min(MR, mc - ir);
+                            int cIndex = cOffset + (ic + ir) * cRowStride + (jc + jr) * cColumnStride;
+                            microKernel(kc, packedA, ir * kc, packedB, bPanel, c, cIndex, cRowStride, cColumnStride, mr, nr);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs an mc x kc block of A into panels of {@value #MR} rows, each panel stored p major
+     * and zero padded to a full panel.
+     */
+    private static void packA(int mc, int kc, double[] a, int offset, int rowStride, int columnStride, double[] packed) {
+        int index = 0;
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            for (int p = 0; p < kc; p++) {
+                int aIndex = offset + ir * rowStride + p * columnStride;
+                int i = 0;
+                for (; i < mr; i++) {
+                    packed[index++] = a[aIndex];
+                    aIndex += rowStride;
+                }
+                for (; i < MR; i++) {
+                    packed[index++] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs a kc x nc block of B into panels of {@value #NR} columns, each panel stored p major
+     * and zero padded to a full panel.
+     */
+    private static void packB(int kc, int nc, double[] b, int offset, int rowStride, int columnStride, double[] packed) {
+        int index = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int p = 0; p < kc; p++) {
+                int bIndex = offset + p * rowStride + jr * columnStride;
+                int j = 0;
+                for (; j < nr; j++) {
+                    packed[index++] = b[bIndex];
+                    bIndex += columnStride;
+                }
+                for (; j < NR; j++) {
+                    packed[index++] = 0;
+                }
+            }
+        }
+    }
+
+    private static void zero(int m, int n, float[] c, int cOffset, int cRowStride, int cColumnStride) {
+        for (int j = 0; j < n; j++) {
+            int index = cOffset + j * cColumnStride;
+            for (int i = 0; i < m; i++) {
+                c[index] = 0;
+                index += cRowStride;
+            }
+        }
+    }
+
+    private static void rowTimesMatrix(int n, int k,
+                                       float[] a, int aOffset, int aStride,
+                                       float[] b, int bOffset, int bRowStride, int bColumnStride,
+                                       float[] c, int cOffset, int cStride) {
+        if (bRowStride == 1 && aStride == 1) {
+            for (int j = 0; j < n; j++) {
+                int bIndex = bOffset + j * bColumnStride;
+                double sum0 = 0;
+                double sum1 = 0;
+                double sum2 = 0;
+                double sum3 = 0;
+                int p = 0;
+                for (; p + 3 < k; p += 4) {
+                    sum0 += a[aOffset + p] * b[bIndex + p];
+                    sum1 += a[aOffset + p + 1] * b[bIndex + p + 1];
+                    sum2 += a[aOffset + p + 2] * b[bIndex + p + 2];
+                    sum3 += a[aOffset + p + 3] * b[bIndex + p + 3];
+                }
+                for (; p < k; p++) {
+                    sum0 += a[aOffset + p] * b[bIndex + p];
+                }
+                c[cOffset + j * cStride] += (sum0 + sum1) + (sum2 + sum3);
+            }
+            return;
+        }
+        for (int p = 0; p < k; p++) {
+            float value = a[aOffset + p * aStride];
+            if (value == 0) {
+                continue;
+            }
+            int bIndex = bOffset + p * bRowStride;
+            int cIndex = cOffset;
+            for (int j = 0; j < n; j++) {
+                c[cIndex] += value * b[bIndex];
+                bIndex += bColumnStride;
+                cIndex += cStride;
+            }
+        }
+    }
+
+    private static void outerProduct(int m, int n,
+                                     float[] a, int aOffset, int aStride,
+                                     float[] b, int bOffset, int bStride,
+                                     float[] c, int cOffset, int cRowStride, int cColumnStride) {
+        for (int j = 0; j < n; j++) {
+            float value = b[bOffset + j * bStride];
+            int aIndex = aOffset;
+            int cIndex = cOffset + j * cColumnStride;
+            for (int i = 0; i < m; i++) {
+                c[cIndex] += a[aIndex] * value;
+                aIndex += aStride;
+                cIndex += cRowStride;
+            }
+        }
+    }
+
+    private static void small(int m, int n, int k,
+                              float[] a, int aOffset, int aRowStride, int aColumnStride,
+                              float[] b, int bOffset, int bRowStride, int bColumnStride,
+                              float[] c, int cOffset, int cRowStride, int cColumnStride) {
+        for (int j = 0; j < n; j++) {
+            for (int p = 0; p < k; p++) {
+                float value = b[bOffset + p * bRowStride + j * bColumnStride];
+                int aIndex = aOffset + p * aColumnStride;
+                int cIndex = cOffset + j * cColumnStride;
+                for (int i = 0; i < m; i++) {
+                    c[cIndex] += a[aIndex] * value;
+                    aIndex += aRowStride;
+                    cIndex += cRowStride;
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocked product of single precision operands into a column major m x n double buffer.
+     */
+    private static void blocked(int m, int n, int k,
+                                float[] a, int aOffset, int aRowStride, int aColumnStride,
+                                float[] b, int bOffset, int bRowStride, int bColumnStride,
+                                double[] c) {
+        double[][] buffers = PACK_BUFFERS.get();
+        double[] packedA = buffers[0];
+        double[] packedB = buffers[1];
+        for (int jc = 0; jc < n; jc += NC) {
+            int nc = Math.min(NC, n - jc);
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(kc, nc, b, bOffset + pc * bRowStride + jc * bColumnStride, bRowStride, bColumnStride, packedB);
+                for (int ic = 0; ic < m; ic += MC) {
+                    int mc = Math.min(MC, m - ic);
+                    packA(mc, kc, a, aOffset + ic * aRowStride + pc * aColumnStride, aRowStride, aColumnStride, packedA);
+                    for (int jr = 0; jr < nc; jr += NR) {
+                        int nr = Math.min(NR, nc - jr);
+                        int bPanel = jr * kc;
+                        for (int ir = 0; ir < mc; ir += MR) {
+                            int mr = Math.min(MR, mc - ir);
+                            int cIndex = (ic + ir) + (jc + jr) * m;
+                            microKernel(kc, packedA, ir * kc, packedB, bPanel, c, cIndex, 1, m, mr, nr);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void packA(int mc, int kc, float[] a, int offset, int rowStride, int columnStride, double[] packed) {
+        int index = 0;
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            for (int p = 0; p < kc; p++) {
+                int aIndex = offset + ir * rowStride + p * columnStride;
+                int i = 0;
+                for (; i < mr; i++) {
+                    packed[index++] = a[aIndex];
+                    aIndex += rowStride;
+                }
+                for (; i < MR; i++) {
+                    packed[index++] = 0;
+                }
+            }
+        }
+    }
+
+    private static void packB(int kc, int nc, float[] b, int offset, int rowStride, int columnStride, double[] packed) {
+        int index = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int p = 0; p < kc; p++) {
+                int bIndex = offset + p * rowStride + jr * columnStride;
+                int j = 0;
+                for (; j < nr; j++) {
+                    packed[index++] = b[bIndex];
+                    bIndex += columnStride;
+                }
+                for (; j < NR; j++) {
+                    packed[index++] = 0;
+                }
+            }
+        }
+    }
+
+    private static void microKernel(int kc, double[] packedA, int aIndex, double[] packedB, int bIndex,
+                                    double[] c, int cIndex, int cRowStride, int cColumnStride, int mr, int nr) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (int p = 0; p < kc; p++) {
+            double a0 = packedA[aIndex];
+            double a1 = packedA[aIndex + 1];
+            double a2 = packedA[aIndex + 2];
+            double a3 = packedA[aIndex + 3];
+            double b0 = packedB[bIndex];
+            c00 += a0 * b0;
+            c10 += a1 * b0;
+            c20 += a2 * b0;
+            c30 += a3 * b0;
+            double b1 = packedB[bIndex + 1];
+            c01 += a0 * b1;
+            c11 += a1 * b1;
+            c21 += a2 * b1;
+            c31 += a3 * b1;
+            double b2 = packedB[bIndex + 2];
+            c02 += a0 * b2;
+            c12 += a1 * b2;
+            c22 += a2 * b2;
+            c32 += a3 * b2;
+            double b3 = packedB[bIndex + 3];
+            c03 += a0 * b3;
+            c13 += a1 * b3;
+            c23 += a2 * b3;
+            c33 += a3 * b3;
+            aIndex += MR;
+            bIndex += NR;
+        }
+        if (mr == MR && nr == NR) {
+            int c0 = cIndex;
+            int c1 = c0 + cColumnStride;
+            int c2 = c1 + cColumnStride;
+            int c3 = c2 + cColumnStride;
+            c[c0] += c00;
+            c[c0 + cRowStride] += c10;
+            c[c0 + 2 * cRowStride] += c20;
+            c[c0 + 3 * cRowStride] += c30;
+            c[c1] += c01;
+            c[c1 + cRowStride] += c11;
+            c[c1 + 2 * cRowStride] += c21;
+            c[c1 + 3 * cRowStride] += c31;
+            c[c2] += c02;
+            c[c2 + cRowStride] += c12;
+            c[c2 + 2 * cRowStride] += c22;
+            c[c2 + 3 * cRowStride] += c32;
+            c[c3] += c03;
+            c[c3 + cRowStride] += c13;
+            c[c3 + 2 * cRowStride] += c23;
+            c[c3 + 3 * cRowStride] += c33;
+            return;
+        }
+        storeColumn(c, cIndex, cRowStride, mr, c00, c10, c20, c30);
+        if (nr > 1) {
+            storeColumn(c, cIndex + cColumnStride, cRowStride, mr, c01, c11, c21, c31);
+        }
+        if (nr > 2) {
+            storeColumn(c, cIndex + 2 * cColumnStride, cRowStride, mr, c02, c12, c22, c32);
+        }
+        if (nr > 3) {
+            storeColumn(c, cIndex + 3 * cColumnStride, cRowStride, mr, c03, c13, c23, c33);
+        }
+    }
+
+    private static void storeColumn(double[] c, int cIndex, int cRowStride, int mr,
+                                    double c0, double c1, double c2, double c3) {
+        c[cIndex] += c0;
+        if (mr > 1) {
+            c[cIndex + cRowStride] += c1;
+        }
+        if (mr > 2) {
+            c[cIndex + 2 * cRowStride] += c2;
+        }
+        if (mr > 3) {
+            c[cIndex + 3 * cRowStride] += c3;
+        }
+    }
+}
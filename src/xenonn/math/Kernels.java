@@ -0,0 +1,130 @@
+package xenonn.math;
+
+/**
+ * Bulk element-wise and reduction loops over flat {@code double[]} ranges.
+ * <p>
+ * The implementation is picked once at startup: a SIMD backend built on the JDK Vector API when
+ * it was compiled from {@code src-vector} and the {@code jdk.incubator.vector} module is available
+ * (run with {@code --add-modules jdk.incubator.vector}), plain scalar loops otherwise. Setting the
+ * system property {@code xenonn.kernels=scalar} forces the scalar loops.
+ */
+public abstract class Kernels {
+
+    private static final Kernels KERNELS = load();
+
+    public static Kernels get() {
+        return KERNELS;
+    }
+
+    private static Kernels load() {
+        if (!"scalar".equals(System.getProperty("xenonn.kernels"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName("xenonn.math.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector kernels unavailable, using scalar kernels: " + e);
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    public abstract String name();
+
+    public abstract void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public abstract void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public abstract void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public abstract void divide(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public abstract void add(double[] a, int aOffset, double d, double[] out, int outOffset, int length);
+
+    public abstract void multiply(double[] a, int aOffset, double d, double[] out, int outOffset, int length);
+
+    /**
+     * out = d - a
+     */
+    public abstract void subtract(double d, double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    /**
+     * out = d / a
+     */
+    public abstract void divide(double d, double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void square(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void sqrt(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract double sum(double[] a, int aOffset, int length);
+
+    /**
+     * Sum of (a - mean)^2
+     */
+    public abstract double squaredDeviation(double[] a, int aOffset, double mean, int length);
+
+    /**
+     * out = shift + a * scale
+     */
+    public abstract void affine(double[] a, int aOffset, double shift, double scale, double[] out, int outOffset, int length);
+
+    public abstract void relu(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void reluDerivative(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void sigmoid(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void sigmoidDerivative(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void tanh(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public abstract void tanhDerivative(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    /**
+     * Wherever a is greater than out, out = a and positions = position. Running maxima with the
+     * position each one came from.
+     */
+    public abstract void maxPosition(double[] a, int aOffset, double[] out, int outOffset,
+                                     int[] positions, int positionsOffset, int position, int length);
+
+    public abstract void add(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length);
+
+    public abstract void subtract(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length);
+
+    public abstract void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length);
+
+    public abstract void divide(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length);
+
+    public abstract void add(float[] a, int aOffset, double d, float[] out, int outOffset, int length);
+
+    public abstract void multiply(float[] a, int aOffset, double d, float[] out, int outOffset, int length);
+
+    public abstract void subtract(double d, float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void divide(double d, float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void square(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void sqrt(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract double sum(float[] a, int aOffset, int length);
+
+    public abstract double squaredDeviation(float[] a, int aOffset, double mean, int length);
+
+    public abstract void affine(float[] a, int aOffset, double shift, double scale, float[] out, int outOffset, int length);
+
+    public abstract void relu(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void reluDerivative(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void sigmoid(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void sigmoidDerivative(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void tanh(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void tanhDerivative(float[] a, int aOffset, float[] out, int outOffset, int length);
+
+    public abstract void maxPosition(float[] a, int aOffset, float[] out, int outOffset,
+                                     int[] positions, int positionsOffset, int position, int length);
+}
@@ -348,17 +348,32 @@ public class Matrix {
 
 
     public static Matrix product(Matrix m1, Matrix m2) {
-        double[][] value = new double[m1.rows()][m2.columns()];
-        for (int i = 0; i < m1.rows(); i++) {
-            for (int j = 0; j < m2.columns(); j++) {
-                for (int k = 0; k < m2.rows(); k++) {
-                    value[i][j] += m1.getValue()[i][k] * m2.getValue()[k][j];
-                }
-            }
+        int rows = m1.rows();
+        int columns = m2.columns();
+        int inner = m2.rows();
+        double[] product = new double[rows * columns];
+        Gemm.multiply(rows, columns, inner,
+                flatten(m1), 0, m1.columns(), 1,
+                flatten(m2), 0, columns, 1,
+                product, 0, columns, 1, false);
+        double[][] value = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(product, i * columns, value[i], 0, columns);
         }
         return new Matrix(value);
     }
 
+    /**
+     * Copies the rows into one row major array.
+     */
+    private static double[] flatten(Matrix m) {
+        double[] flat = new double[m.rows() * m.columns()];
+        for (int i = 0; i < m.rows(); i++) {
+            System.arraycopy(m.getValue()[i], 0, flat, i * m.columns(), m.columns());
+        }
+        return flat;
+    }
+
     public static Matrix invert(Matrix m) {
         int len = m.rows();
         double[][] output = new double[len][len];
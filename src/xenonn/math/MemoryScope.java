@@ -0,0 +1,44 @@
+package xenonn.math;
+
+/**
+ * Lifetime of off-heap tensor storage. Tensors allocated in or moved to a scope stay valid until the
+ * scope is closed; touching them afterwards throws. A confined scope may only be used by the thread
+ * that created it.
+ * <p>
+ * Off-heap storage is built on the incubating foreign memory API and lives apart in
+ * {@code src-foreign}. Scopes can only be created when those classes are on the classpath and the
+ * program runs with {@code --add-modules jdk.incubator.foreign}.
+ */
+public abstract class MemoryScope implements AutoCloseable {
+
+    MemoryScope() {
+
+    }
+
+    public static MemoryScope confined() {
+        return create(false);
+    }
+
+    public static MemoryScope shared() {
+        return create(true);
+    }
+
+    private static MemoryScope create(boolean shared) {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.foreign").isPresent()) {
+            throw new RuntimeException("Off-heap storage needs --add-modules jdk.incubator.foreign");
+        }
+        try {
+            return (MemoryScope) Class.forName("xenonn.math.SegmentScope")
+                    .getDeclaredConstructor(boolean.class).newInstance(shared);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new RuntimeException("Off-heap storage unavailable: " + e);
+        }
+    }
+
+    abstract Storage allocate(DType dtype, int length);
+
+    public abstract boolean isAlive();
+
+    @Override
+    public abstract void close();
+}
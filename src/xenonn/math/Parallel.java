@@ -0,0 +1,109 @@
+package xenonn.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The fork-join pool shared by every parallel kernel.
+ * <p>
+ * The number of worker threads defaults to the number of processors and can be set with
+ * {@link #setParallelism(int)} or {@code -Dxenonn.parallelism}. A parallelism of 1 runs everything
+ * on the calling thread.
+ */
+public final class Parallel {
+
+    private static int parallelism = defaultParallelism();
+    private static ForkJoinPool pool;
+
+    private Parallel() {
+
+    }
+
+    private static int defaultParallelism() {
+        String property = System.getProperty("xenonn.parallelism");
+        if (property == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, Integer.parseInt(property));
+    }
+
+    /**
+     * Sets how many threads parallel kernels are split across. 1 turns the parallel paths off.
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new RuntimeException("Parallelism must be at least 1");
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        Parallel.parallelism = parallelism;
+    }
+
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /**
+     * A contiguous range [start, end) of independent iterations.
+     */
+    public interface Range {
+        void run(int start, int end);
+    }
+
+    /**
+     * Runs iterations 0 to count - 1 as one contiguous range per thread and waits for all of them.
+     * Ranges run concurrently, so iterations must not write to anything another iteration reads or
+     * writes; scratch buffers belong inside the range.
+     */
+    public static void forEach(int count, Range range) {
+        int chunks = Math.min(count, getParallelism());
+        if (chunks <= 1) {
+            if (count > 0) {
+                range.run(0, count);
+            }
+            return;
+        }
+        pool().invoke(new Chunks(range, 0, count, chunks));
+    }
+
+    /**
+     * Halves its range until each part is a single chunk.
+     */
+    private static final class Chunks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Range RANGE;
+        private final int START;
+        private final int END;
+        private final int CHUNKS;
+
+        private Chunks(Range range, int start, int end, int chunks) {
+            RANGE = range;
+            START = start;
+            END = end;
+            CHUNKS = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            if (CHUNKS <= 1) {
+                RANGE.run(START, END);
+            } else {
+                int half = CHUNKS / 2;
+                int middle = START + (int) ((long) (END - START) * half / CHUNKS);
+                invokeAll(new Chunks(RANGE, START, middle, half),
+                        new Chunks(RANGE, middle, END, CHUNKS - half));
+            }
+        }
+    }
+}
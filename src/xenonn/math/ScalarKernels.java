@@ -0,0 +1,310 @@
+package xenonn.math;
+
+final class ScalarKernels extends Kernels {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] - b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void divide(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] / b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void add(double[] a, int aOffset, double d, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + d;
+        }
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double d, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * d;
+        }
+    }
+
+    @Override
+    public void subtract(double d, double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = d - a[aOffset + i];
+        }
+    }
+
+    @Override
+    public void divide(double d, double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = d / a[aOffset + i];
+        }
+    }
+
+    @Override
+    public void square(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            double value = a[aOffset + i];
+            out[outOffset + i] = value * value;
+        }
+    }
+
+    @Override
+    public void sqrt(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = Math.sqrt(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public double sum(double[] a, int aOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDeviation(double[] a, int aOffset, double mean, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double deviation = mean - a[aOffset + i];
+            sum += deviation * deviation;
+        }
+        return sum;
+    }
+
+    @Override
+    public void affine(double[] a, int aOffset, double shift, double scale, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = shift + a[aOffset + i] * scale;
+        }
+    }
+
+    @Override
+    public void relu(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = Math.max(0, a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void reluDerivative(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] >= 0 ? 1 : 0;
+        }
+    }
+
+    @Override
+    public void sigmoid(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = 1 / (1 + Math.exp(-a[aOffset + i]));
+        }
+    }
+
+    @Override
+    public void sigmoidDerivative(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            double value = 1 / (1 + Math.exp(-a[aOffset + i]));
+            out[outOffset + i] = value * (1 - value);
+        }
+    }
+
+    @Override
+    public void tanh(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = Math.tanh(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void tanhDerivative(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = 2 / (Math.cosh(2 * a[aOffset + i]) + 1);
+        }
+    }
+
+    @Override
+    public void maxPosition(double[] a, int aOffset, double[] out, int outOffset,
+                            int[] positions, int positionsOffset, int position, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] > out[outOffset + i]) {
+                out[outOffset + i] = a[aOffset + i];
+                positions[positionsOffset + i] = position;
+            }
+        }
+    }
+    @Override
+    public void add(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] - b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void divide(float[] a, int aOffset, float[] b, int bOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = a[aOffset + i] / b[bOffset + i];
+        }
+    }
+
+    @Override
+    public void add(float[] a, int aOffset, double d, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (a[aOffset + i] + d);
+        }
+    }
+
+    @Override
+    public void multiply(float[] a, int aOffset, double d, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (a[aOffset + i] * d);
+        }
+    }
+
+    @Override
+    public void subtract(double d, float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (d - a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void divide(double d, float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (d / a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void square(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            double value = a[aOffset + i];
+            out[outOffset + i] = (float) (value * value);
+        }
+    }
+
+    @Override
+    public void sqrt(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) Math.sqrt(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public double sum(float[] a, int aOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDeviation(float[] a, int aOffset, double mean, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double deviation = mean - a[aOffset + i];
+            sum += deviation * deviation;
+        }
+        return sum;
+    }
+
+    @Override
+    public void affine(float[] a, int aOffset, double shift, double scale, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (shift + a[aOffset + i] * scale);
+        }
+    }
+
+    @Override
+    public void relu(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = Math.max(0, a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void reluDerivative(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (a[aOffset + i] >= 0 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void sigmoid(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (1 / (1 + Math.exp(-a[aOffset + i])));
+        }
+    }
+
+    @Override
+    public void sigmoidDerivative(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            double value = 1 / (1 + Math.exp(-a[aOffset + i]));
+            out[outOffset + i] = (float) (value * (1 - value));
+        }
+    }
+
+    @Override
+    public void tanh(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) Math.tanh(a[aOffset + i]);
+        }
+    }
+
+    @Override
+    public void tanhDerivative(float[] a, int aOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) (2 / (Math.cosh(2 * a[aOffset + i]) + 1));
+        }
+    }
+
+    @Override
+    public void maxPosition(float[] a, int aOffset, float[] out, int outOffset,
+                            int[] positions, int positionsOffset, int position, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] > out[outOffset + i]) {
+                out[outOffset + i] = a[aOffset + i];
+                positions[positionsOffset + i] = position;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package xenonn.math;
+
+/**
+ * Flat backing store of a tensor. Element access widens to double; the array backed
+ * implementations expose their arrays so kernels can run on them directly, while off-heap
+ * storage is reached through the element and bulk copy accessors.
+ */
+abstract class Storage {
+
+    static Storage allocate(DType dtype, int length) {
+        switch (dtype) {
+            case FLOAT32:
+                return new FloatStorage(new float[length]);
+            case FLOAT64:
+                return new DoubleStorage(new double[length]);
+        }
+        throw new RuntimeException("Unknown dtype " + dtype);
+    }
+
+    static Storage allocate(DType dtype, int length, MemoryScope scope) {
+        return scope.allocate(dtype, length);
+    }
+
+    abstract DType dtype();
+
+    abstract int length();
+
+    /**
+     * Whether this is one of the array backed storages kernels can run on.
+     */
+    boolean hasArray() {
+        return true;
+    }
+
+    abstract double get(int index);
+
+    abstract void set(int index, double value);
+
+    abstract void add(int index, double value);
+
+    abstract void fill(int from, int to, double value);
+
+    /**
+     * Copies {@code length} elements starting at {@code from} into {@code target}, converting
+     * between dtypes when needed.
+     */
+    abstract void copyTo(int from, Storage target, int to, int length);
+
+    void copyTo(int from, double[] target, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            target[to + i] = get(from + i);
+        }
+    }
+
+    void copyFrom(double[] source, int from, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            set(to + i, source[from + i]);
+        }
+    }
+
+    void copyFrom(float[] source, int from, int to, int length) {
+        for (int i = 0; i < length; i++) {
+            set(to + i, source[from + i]);
+        }
+    }
+}
@@ -2,70 +2,282 @@ package xenonn.math;
 
 import java.util.Arrays;
 
+/**
+ * Values are stored column major (the first index varies fastest). A tensor may be a view over
+ * another tensor's storage, described by an offset and a stride per dimension; transpose, slice,
+ * split and the static reshape return such views without copying.
+ * <p>
+ * Storage is float64 by default or float32. Operations on two tensors produce a tensor of the
+ * left operand's dtype, converting the right operand if needed. Operands of different shapes are
+ * broadcast as in NumPy: trailing dimensions are aligned and dimensions of size 1 are stretched.
+ * <p>
+ * Storage lives on the heap unless a tensor is allocated in or moved to a {@link MemoryScope}.
+ * Results of operations and copies are always allocated on the heap.
+ */
 public class Tensor {
 
-    private double[] value;
-    private final int VALUE_LENGTH;
+    private static final Kernels KERNELS = Kernels.get();
+
+    /**
+     * Elements staged through heap buffers per kernel call when an operand is off-heap.
+     */
+    private static final int STAGE_LENGTH = 1024;
+
+    private enum Operation {
+        ADD,
+        SUBTRACT,
+        MULTIPLY,
+        DIVIDE,
+        REVERSE_SUBTRACT,
+        REVERSE_DIVIDE,
+        SQUARE,
+        SQRT
+    }
+
+    private Storage storage;
+    private int valueLength;
+    private int offset;
     private int[] shape;
+    private int[] strides;
+    private boolean contiguous;
 
-    private Tensor(int... shape) {
+    private Tensor(DType dtype, int... shape) {
         this.shape = shape;
-        int valueLength = 1;
-        for (int i = 0; i < this.shape.length; i++) {
-            valueLength *= this.shape[i];
-        }
-        VALUE_LENGTH = valueLength;
-        value = new double[VALUE_LENGTH];
+        valueLength = size(shape);
+        storage = Storage.allocate(dtype, valueLength);
+        strides = defaultStrides(shape);
+        contiguous = true;
+    }
+
+    private Tensor(Storage storage, int offset, int[] shape, int[] strides) {
+        this.storage = storage;
+        this.offset = offset;
+        this.shape = shape;
+        this.strides = strides;
+        valueLength = size(shape);
+        contiguous = isContiguous(shape, strides);
     }
 
     @Override
     public String toString() {
         return "Tensor{ " +
-                "\n VALUE=" + Arrays.toString(value) +
+                "\n VALUE=" + Arrays.toString(values()) +
                 ",\n SHAPE=" + Arrays.toString(shape) +
                 "\n}";
     }
 
     public Tensor(double[] value, int... shape) {
-        this.value = value;
-        VALUE_LENGTH = this.value.length;
+        storage = new DoubleStorage(value);
+        valueLength = value.length;
         this.shape = shape;
+        strides = defaultStrides(shape);
+        contiguous = true;
+    }
+
+    public Tensor(float[] value, int... shape) {
+        storage = new FloatStorage(value);
+        valueLength = value.length;
+        this.shape = shape;
+        strides = defaultStrides(shape);
+        contiguous = true;
     }
 
     private int n21Dim(int... indices) {
-        int n = 1;
-        int index = 0;
+        int index = offset;
         for (int i = 0; i < indices.length; i++) {
-            index += indices[i] * n;
-            n *= shape[i];
+            index += indices[i] * strides[i];
         }
         return index;
     }
 
-    private int[] one2nDim(int index) {
-        int n = VALUE_LENGTH;
+    private static int size(int[] shape) {
+        int size = 1;
+        for (int i = 0; i < shape.length; i++) {
+            size *= shape[i];
+        }
+        return size;
+    }
+
+    private static int[] defaultStrides(int[] shape) {
+        int[] strides = new int[shape.length];
+        int stride = 1;
+        for (int i = 0; i < shape.length; i++) {
+            strides[i] = stride;
+            stride *= shape[i];
+        }
+        return strides;
+    }
+
+    private static boolean isContiguous(int[] shape, int[] strides) {
+        int stride = 1;
+        for (int i = 0; i < shape.length; i++) {
+            if (shape[i] != 1 && strides[i] != stride) {
+                return false;
+            }
+            stride *= shape[i];
+        }
+        return true;
+    }
+
+    /**
+     * Advances {@code indices} to the next element in column major order and returns the storage
+     * index of that element.
+     */
+    private int nextIndex(int[] indices, int index) {
+        return advance(indices, shape, strides, index);
+    }
+
+    private static int advance(int[] indices, int[] shape, int[] strides, int index) {
+        for (int i = 0; i < indices.length; i++) {
+            indices[i]++;
+            index += strides[i];
+            if (indices[i] < shape[i]) {
+                return index;
+            }
+            index -= strides[i] * shape[i];
+            indices[i] = 0;
+        }
+        return index;
+    }
+
+    private void copyTo(Storage target, int targetOffset) {
+        if (contiguous) {
+            storage.copyTo(offset, target, targetOffset, valueLength);
+            return;
+        }
+        int[] indices = new int[shape.length];
+        int index = offset;
+        for (int i = 0; i < valueLength; i++) {
+            target.set(targetOffset + i, storage.get(index));
+            index = nextIndex(indices, index);
+        }
+    }
+
+    private void assign(Tensor source) {
+        if (contiguous) {
+            source.copyTo(storage, offset);
+            return;
+        }
+        Tensor compact = source.contiguous();
         int[] indices = new int[shape.length];
-        for (int i = indices.length - 1; i >= 0; i--) {
-            n /= shape[i];
-            indices[i] = index / n;
-            index -= indices[i] * n;
+        int index = offset;
+        for (int i = 0; i < valueLength; i++) {
+            storage.set(index, compact.storage.get(compact.offset + i));
+            index = nextIndex(indices, index);
         }
-        return indices;
+    }
+
+    private double[] values() {
+        double[] values = new double[valueLength];
+        copyTo(new DoubleStorage(values), 0);
+        return values;
+    }
+
+    /**
+     * Replaces a view's storage with a compact copy of its values.
+     */
+    private void detach() {
+        if (isView()) {
+            replaceStorage(copy().storage);
+        }
+    }
+
+    private Tensor contiguous() {
+        return contiguous ? this : copy();
+    }
+
+    /**
+     * Returns this tensor if kernels can run on it directly, otherwise a heap copy.
+     */
+    private Tensor onHeap() {
+        return onHeap(dtype());
+    }
+
+    private Tensor onHeap(DType dtype) {
+        return contiguous && storage.hasArray() && storage.dtype() == dtype ? this : copy(dtype);
+    }
+
+    private Tensor contiguous(DType dtype) {
+        return contiguous && storage.dtype() == dtype ? this : copy(dtype);
+    }
+
+    public boolean isContiguous() {
+        return contiguous;
+    }
+
+    /**
+     * Whether this tensor covers only part of its storage or covers it out of order. {@link #getAll()}
+     * detaches such tensors from the storage they share.
+     */
+    public boolean isView() {
+        return !(contiguous && offset == 0 && storage.length() == valueLength);
+    }
+
+    public DType dtype() {
+        return storage.dtype();
+    }
+
+    public boolean isOffHeap() {
+        return !storage.hasArray();
+    }
+
+    /**
+     * Moves this tensor's values into off-heap storage owned by {@code scope}. Views taken earlier
+     * keep the old storage.
+     */
+    public Tensor moveTo(MemoryScope scope) {
+        Storage moved = Storage.allocate(dtype(), valueLength, scope);
+        copyTo(moved, 0);
+        replaceStorage(moved);
+        return this;
+    }
+
+    /**
+     * Moves this tensor's values back onto the heap, for example before its scope is closed.
+     */
+    public Tensor moveToHeap() {
+        if (isOffHeap()) {
+            replaceStorage(copy().storage);
+        }
+        return this;
+    }
+
+    private void replaceStorage(Storage storage) {
+        this.storage = storage;
+        offset = 0;
+        strides = defaultStrides(shape);
+        contiguous = true;
     }
 
     public Tensor copy() {
-        return new Tensor(value.clone(), shape.clone());
+        return copy(storage.dtype());
+    }
+
+    public Tensor copy(DType dtype) {
+        Tensor tensor = new Tensor(dtype, shape.clone());
+        copyTo(tensor.storage, 0);
+        return tensor;
     }
 
     public static Tensor zeros(int... shape) {
-        return new Tensor(shape);
+        return new Tensor(DType.FLOAT64, shape);
+    }
+
+    public static Tensor zeros(DType dtype, int... shape) {
+        return new Tensor(dtype, shape);
+    }
+
+    public static Tensor zeros(MemoryScope scope, DType dtype, int... shape) {
+        return new Tensor(Storage.allocate(dtype, size(shape), scope), 0, shape, defaultStrides(shape));
     }
 
     public static Tensor ones(int... shape) {
-        Tensor tensor = new Tensor(shape);
-        for (int i = 0; i < tensor.value.length; i++) {
-            tensor.value[i] = 1;
-        }
+        return ones(DType.FLOAT64, shape);
+    }
+
+    public static Tensor ones(DType dtype, int... shape) {
+        Tensor tensor = new Tensor(dtype, shape);
+        tensor.storage.fill(0, tensor.valueLength, 1);
         return tensor;
     }
 
@@ -73,11 +285,11 @@ public class Tensor {
         if (shape.length != 2) {
             throw new RuntimeException("2 dimensions specifically are needed for eye");
         }
-        Tensor tensor = new Tensor(shape);
+        Tensor tensor = new Tensor(DType.FLOAT64, shape);
         for (int i = 0; i < shape[0]; i++) {
             for (int j = 0; j < shape[1]; j++) {
                 if (i == j) {
-                    tensor.value[i + j * shape[0]] = 1;
+                    tensor.storage.set(i + j * shape[0], 1);
                 }
             }
         }
@@ -85,15 +297,39 @@ public class Tensor {
     }
 
     public void reshape(int... shape) {
-        int shapeSize = 1;
-        for (int i = 0; i < shape.length; i++) {
-            shapeSize *= shape[i];
-        }
-        if (shapeSize != VALUE_LENGTH) {
+        if (size(shape) != valueLength) {
             throw new RuntimeException("This shape doesn't fit the tensor");
         }
+        if (!contiguous) {
+            storage = copy().storage;
+            offset = 0;
+            contiguous = true;
+        }
         this.shape = new int[shape.length];
         System.arraycopy(shape, 0, this.shape, 0, shape.length);
+        strides = defaultStrides(this.shape);
+    }
+
+    /**
+     * Returns a tensor with the given shape sharing this tensor's storage. Tensors that aren't
+     * contiguous are copied first.
+     */
+    public static Tensor reshape(Tensor tensor, int... shape) {
+        if (size(shape) != tensor.valueLength) {
+            throw new RuntimeException("This shape doesn't fit the tensor");
+        }
+        Tensor source = tensor.contiguous();
+        int[] newShape = shape.clone();
+        return new Tensor(source.storage, source.offset, newShape, defaultStrides(newShape));
+    }
+
+    public static Tensor slice(Tensor tensor, int axis, int start, int end) {
+        if (start < 0 || end > tensor.shape[axis] || start > end) {
+            throw new RuntimeException("Slice out of bounds");
+        }
+        int[] shape = tensor.shape.clone();
+        shape[axis] = end - start;
+        return new Tensor(tensor.storage, tensor.offset + start * tensor.strides[axis], shape, tensor.strides.clone());
     }
 
     public int[] getShape() {
@@ -101,11 +337,67 @@ public class Tensor {
     }
 
     public void set(int[] indices, double value) {
-        this.value[n21Dim(indices)] = value;
+        storage.set(n21Dim(indices), value);
     }
 
     public double get(int... indices) {
-        return value[n21Dim(indices)];
+        return storage.get(n21Dim(indices));
+    }
+
+    /*
+     * Fixed-arity accessors for indexing in hot loops; unlike get(int...) they don't allocate an
+     * index array per call. Each index is taken against the tensor's strides, so views work too.
+     */
+    public double get1(int i0) {
+        return storage.get(offset + i0 * strides[0]);
+    }
+
+    public double get2(int i0, int i1) {
+        return storage.get(offset + i0 * strides[0] + i1 * strides[1]);
+    }
+
+    public double get3(int i0, int i1, int i2) {
+        return storage.get(offset + i0 * strides[0] + i1 * strides[1] + i2 * strides[2]);
+    }
+
+    public double get4(int i0, int i1, int i2, int i3) {
+        return storage.get(offset + i0 * strides[0] + i1 * strides[1] + i2 * strides[2] + i3 * strides[3]);
+    }
+
+    public void set1(int i0, double value) {
+        storage.set(offset + i0 * strides[0], value);
+    }
+
+    public void set2(int i0, int i1, double value) {
+        storage.set(offset + i0 * strides[0] + i1 * strides[1], value);
+    }
+
+    public void set3(int i0, int i1, int i2, double value) {
+        storage.set(offset + i0 * strides[0] + i1 * strides[1] + i2 * strides[2], value);
+    }
+
+    public void set4(int i0, int i1, int i2, int i3, double value) {
+        storage.set(offset + i0 * strides[0] + i1 * strides[1] + i2 * strides[2] + i3 * strides[3], value);
+    }
+
+    public void add1(int i0, double d) {
+        storage.add(offset + i0 * strides[0], d);
+    }
+
+    public void add2(int i0, int i1, double d) {
+        storage.add(offset + i0 * strides[0] + i1 * strides[1], d);
+    }
+
+    public void add3(int i0, int i1, int i2, double d) {
+        storage.add(offset + i0 * strides[0] + i1 * strides[1] + i2 * strides[2], d);
+    }
+
+    public void add4(int i0, int i1, int i2, int i3, double d) {
+        storage.add(offset + i0 * strides[0] + i1 * strides[1] + i2 * strides[2] + i3 * strides[3], d);
+    }
+
+    public Cursor cursor() {
+        return new Cursor(this);
     }
 
     public double[] get(int axis, int[] indices) {
@@ -113,184 +405,601 @@ public class Tensor {
         int[] indicesCopy = indices.clone();
         for (int i = 0; i < shape[axis]; i++) {
             indicesCopy[axis] = i;
-            values[i] = value[n21Dim(indicesCopy)];
+            values[i] = storage.get(n21Dim(indicesCopy));
         }
         return values;
     }
 
+    /**
+     * Returns the backing array of a float64 tensor. A view is first copied into storage of its
+     * own, after which it no longer shares values with the tensor it was taken from.
+     */
     public double[] getAll() {
-        return value;
+        if (isOffHeap()) {
+            throw new RuntimeException("Tensor is off-heap, use toArray");
+        }
+        if (!(storage instanceof DoubleStorage)) {
+            throw new RuntimeException("Tensor isn't float64");
+        }
+        detach();
+        return ((DoubleStorage) storage).array;
+    }
+
+    /**
+     * float32 counterpart of {@link #getAll()}.
+     */
+    public float[] getAllFloat() {
+        if (isOffHeap()) {
+            throw new RuntimeException("Tensor is off-heap, use toArray");
+        }
+        if (!(storage instanceof FloatStorage)) {
+            throw new RuntimeException("Tensor isn't float32");
+        }
+        detach();
+        return ((FloatStorage) storage).array;
+    }
+
+    /**
+     * Returns a copy of the values in column major order. Unlike {@link #getAll()} this works for
+     * every dtype and for off-heap tensors, but writes to the array don't reach the tensor.
+     */
+    public double[] toArray() {
+        return values();
+    }
+
+    /**
+     * Overwrites the values in column major order, converting to this tensor's dtype.
+     */
+    public void setAll(double[] values) {
+        if (values.length != valueLength) {
+            throw new RuntimeException("Values don't fit the tensor");
+        }
+        assign(new Tensor(values, shape));
+    }
+
+    /**
+     * Copies the values in column major order into {@code array} from {@code offset}.
+     */
+    public void toArray(double[] array, int offset) {
+        if (offset < 0 || offset + valueLength > array.length) {
+            throw new RuntimeException("Values don't fit the array");
+        }
+        if (contiguous) {
+            storage.copyTo(this.offset, array, offset, valueLength);
+        } else {
+            copyTo(new DoubleStorage(array), offset);
+        }
+    }
+
+    /**
+     * Overwrites the values in column major order with the {@link #size()} values of
+     * {@code array} from {@code offset}, converting to this tensor's dtype.
+     */
+    public void setAll(double[] array, int offset) {
+        if (offset < 0 || offset + valueLength > array.length) {
+            throw new RuntimeException("Values don't fit the tensor");
+        }
+        if (contiguous) {
+            storage.copyFrom(array, offset, this.offset, valueLength);
+        } else {
+            assign(new Tensor(new DoubleStorage(array), offset, shape, defaultStrides(shape)));
+        }
     }
 
     public int size() {
-        return VALUE_LENGTH;
+        return valueLength;
     }
 
     public void zero() {
-        value = new double[VALUE_LENGTH];
+        if (contiguous) {
+            storage.fill(offset, offset + valueLength, 0);
+            return;
+        }
+        int[] indices = new int[shape.length];
+        int index = offset;
+        for (int i = 0; i < valueLength; i++) {
+            storage.set(index, 0);
+            index = nextIndex(indices, index);
+        }
     }
 
     public double sum() {
-        double sum = 0;
-        for (int i = 0; i < value.length; i++) {
-            sum += value[i];
+        Tensor tensor = onHeap();
+        if (tensor.storage instanceof FloatStorage) {
+            return KERNELS.sum(((FloatStorage) tensor.storage).array, tensor.offset, valueLength);
         }
-        return sum;
+        return KERNELS.sum(((DoubleStorage) tensor.storage).array, tensor.offset, valueLength);
     }
 
     public static double sum(Tensor tensor) {
-        double sum = 0;
-        for (int i = 0; i < tensor.value.length; i++) {
-            sum += tensor.value[i];
+        return tensor.sum();
+    }
+
+    /**
+     * Runs an element-wise kernel over contiguous tensors of the same dtype.
+     */
+    private static void apply(Operation operation, Tensor a, Tensor b, Tensor out) {
+        if (!(a.storage.hasArray() && b.storage.hasArray() && out.storage.hasArray())) {
+            applyStaged(operation, a, b, 0, out);
+            return;
         }
-        return sum;
+        applyRun(operation, a.storage, a.offset, b.storage, b.offset, out.storage, out.offset, out.valueLength);
     }
 
-    public Tensor add(double d) {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] += d;
+    /**
+     * Runs an element-wise kernel with a scalar operand over contiguous tensors of the same dtype.
+     */
+    private static void apply(Operation operation, Tensor a, double d, Tensor out) {
+        if (!(a.storage.hasArray() && out.storage.hasArray())) {
+            applyStaged(operation, a, null, d, out);
+            return;
         }
-        return this;
+        applyRun(operation, a.storage, a.offset, d, out.storage, out.offset, out.valueLength);
+    }
+
+    /**
+     * Runs an element-wise kernel over {@code length} elements of array backed storages of the same
+     * dtype.
+     */
+    private static void applyRun(Operation operation, Storage a, int aOffset, Storage b, int bOffset,
+                                 Storage out, int outOffset, int length) {
+        if (out instanceof FloatStorage) {
+            float[] aValue = ((FloatStorage) a).array;
+            float[] bValue = ((FloatStorage) b).array;
+            float[] outValue = ((FloatStorage) out).array;
+            switch (operation) {
+                case ADD:
+                    KERNELS.add(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                    break;
+                case SUBTRACT:
+                    KERNELS.subtract(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                    break;
+                case MULTIPLY:
+                    KERNELS.multiply(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                    break;
+                case DIVIDE:
+                    KERNELS.divide(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                    break;
+                default:
+                    throw new RuntimeException("Not a binary operation: " + operation);
+            }
+            return;
+        }
+        double[] aValue = ((DoubleStorage) a).array;
+        double[] bValue = ((DoubleStorage) b).array;
+        double[] outValue = ((DoubleStorage) out).array;
+        switch (operation) {
+            case ADD:
+                KERNELS.add(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                break;
+            case SUBTRACT:
+                KERNELS.subtract(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                break;
+            case MULTIPLY:
+                KERNELS.multiply(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                break;
+            case DIVIDE:
+                KERNELS.divide(aValue, aOffset, bValue, bOffset, outValue, outOffset, length);
+                break;
+            default:
+                throw new RuntimeException("Not a binary operation: " + operation);
+        }
+    }
+
+    /**
+     * Scalar operand counterpart of the binary {@code applyRun}.
+     */
+    private static void applyRun(Operation operation, Storage a, int aOffset, double d,
+                                 Storage out, int outOffset, int length) {
+        if (out instanceof FloatStorage) {
+            float[] aValue = ((FloatStorage) a).array;
+            float[] outValue = ((FloatStorage) out).array;
+            switch (operation) {
+                case ADD:
+                    KERNELS.add(aValue, aOffset, d, outValue, outOffset, length);
+                    break;
+                case MULTIPLY:
+                    KERNELS.multiply(aValue, aOffset, d, outValue, outOffset, length);
+                    break;
+                case REVERSE_SUBTRACT:
+                    KERNELS.subtract(d, aValue, aOffset, outValue, outOffset, length);
+                    break;
+                case REVERSE_DIVIDE:
+                    KERNELS.divide(d, aValue, aOffset, outValue, outOffset, length);
+                    break;
+                case SQUARE:
+                    KERNELS.square(aValue, aOffset, outValue, outOffset, length);
+                    break;
+                case SQRT:
+                    KERNELS.sqrt(aValue, aOffset, outValue, outOffset, length);
+                    break;
+                default:
+                    throw new RuntimeException("Not a scalar operation: " + operation);
+            }
+            return;
+        }
+        double[] aValue = ((DoubleStorage) a).array;
+        double[] outValue = ((DoubleStorage) out).array;
+        switch (operation) {
+            case ADD:
+                KERNELS.add(aValue, aOffset, d, outValue, outOffset, length);
+                break;
+            case MULTIPLY:
+                KERNELS.multiply(aValue, aOffset, d, outValue, outOffset, length);
+                break;
+            case REVERSE_SUBTRACT:
+                KERNELS.subtract(d, aValue, aOffset, outValue, outOffset, length);
+                break;
+            case REVERSE_DIVIDE:
+                KERNELS.divide(d, aValue, aOffset, outValue, outOffset, length);
+                break;
+            case SQUARE:
+                KERNELS.square(aValue, aOffset, outValue, outOffset, length);
+                break;
+            case SQRT:
+                KERNELS.sqrt(aValue, aOffset, outValue, outOffset, length);
+                break;
+            default:
+                throw new RuntimeException("Not a scalar operation: " + operation);
+        }
+    }
+
+    /**
+     * Runs a kernel chunk by chunk over heap copies of off-heap operands. {@code b} is null for
+     * scalar and unary operations.
+     */
+    private static void applyStaged(Operation operation, Tensor a, Tensor b, double d, Tensor out) {
+        int length = out.valueLength;
+        int stageLength = Math.min(STAGE_LENGTH, length);
+        Tensor stageA = zeros(out.dtype(), stageLength);
+        Tensor stageB = b == null ? null : zeros(out.dtype(), stageLength);
+        Tensor stageOut = zeros(out.dtype(), stageLength);
+        for (int i = 0; i < length; i += stageLength) {
+            int chunk = Math.min(stageLength, length - i);
+            a.storage.copyTo(a.offset + i, stageA.storage, 0, chunk);
+            if (b == null) {
+                apply(operation, stageA, d, stageOut);
+            } else {
+                b.storage.copyTo(b.offset + i, stageB.storage, 0, chunk);
+                apply(operation, stageA, stageB, stageOut);
+            }
+            stageOut.storage.copyTo(0, out.storage, out.offset + i, chunk);
+        }
+    }
+
+    /**
+     * Writes the result of a scalar or unary operation on {@code tensor} into {@code out}, in out's
+     * dtype.
+     */
+    private static Tensor applyInto(Operation operation, Tensor tensor, double d, Tensor out) {
+        checkShapes(tensor, out);
+        Tensor target = out.contiguous ? out : zeros(out.dtype(), out.shape.clone());
+        apply(operation, tensor.contiguous(target.dtype()), d, target);
+        if (target != out) {
+            out.assign(target);
+        }
+        return out;
+    }
+
+    /**
+     * Writes the result of an element-wise operation on {@code t0} and {@code t1} into {@code out},
+     * in out's dtype.
+     */
+    private static Tensor applyInto(Operation operation, Tensor t0, Tensor t1, Tensor out) {
+        if (!Arrays.equals(t0.shape, t1.shape)) {
+            return broadcastInto(operation, t0, t1, out);
+        }
+        checkShapes(t0, out);
+        Tensor target = out.contiguous ? out : zeros(out.dtype(), out.shape.clone());
+        apply(operation, t0.contiguous(target.dtype()), t1.contiguous(target.dtype()), target);
+        if (target != out) {
+            out.assign(target);
+        }
+        return out;
+    }
+
+    /**
+     * Shape two operands broadcast to. As in NumPy, trailing dimensions are aligned and each pair
+     * must match or contain a 1.
+     */
+    private static int[] broadcastShape(int[] s0, int[] s1) {
+        if (Arrays.equals(s0, s1)) {
+            return s0;
+        }
+        int length = Math.max(s0.length, s1.length);
+        int[] shape = new int[length];
+        for (int i = 0; i < length; i++) {
+            int d0 = dimension(s0, i, length);
+            int d1 = dimension(s1, i, length);
+            if (d0 != d1 && d0 != 1 && d1 != 1) {
+                throw new RuntimeException("Tensors don't broadcast");
+            }
+            shape[i] = d0 == 1 ? d1 : d0;
+        }
+        return shape;
+    }
+
+    private static int dimension(int[] shape, int i, int length) {
+        int j = i - (length - shape.length);
+        return j < 0 ? 1 : shape[j];
+    }
+
+    /**
+     * Strides that walk {@code tensor} as if it had the broadcast {@code shape}, 0 along broadcast
+     * dimensions.
+     */
+    private static int[] broadcastStrides(Tensor tensor, int[] shape) {
+        int[] strides = new int[shape.length];
+        int lead = shape.length - tensor.shape.length;
+        for (int i = lead; i < shape.length; i++) {
+            strides[i] = tensor.shape[i - lead] == 1 ? 0 : tensor.strides[i - lead];
+        }
+        return strides;
+    }
+
+    /**
+     * Element-wise operation on operands of different shapes. Broadcast strides are computed once,
+     * then the first dimension longer than 1 is handed to the kernels run by run, with a broadcast
+     * operand passed as a scalar.
+     */
+    private static Tensor broadcastInto(Operation operation, Tensor t0, Tensor t1, Tensor out) {
+        int[] shape = broadcastShape(t0.shape, t1.shape);
+        if (!Arrays.equals(shape, out.shape)) {
+            throw new RuntimeException("Tensors don't match");
+        }
+        DType dtype = out.dtype();
+        Tensor target = out.contiguous && out.storage.hasArray() ? out : zeros(dtype, shape.clone());
+        Tensor a = t0.onHeap(dtype);
+        Tensor b = t1.onHeap(dtype);
+        int[] aStrides = broadcastStrides(a, shape);
+        int[] bStrides = broadcastStrides(b, shape);
+        int inner = 0;
+        while (inner < shape.length - 1 && shape[inner] == 1) {
+            inner++;
+        }
+        int run = shape[inner];
+        int[] indices = new int[shape.length];
+        int aIndex = a.offset;
+        int bIndex = b.offset;
+        int outIndex = target.offset;
+        for (int done = 0; done < target.valueLength; done += run) {
+            broadcastRun(operation, a.storage, aIndex, aStrides[inner], b.storage, bIndex, bStrides[inner],
+                    target.storage, outIndex, run);
+            outIndex += run;
+            for (int i = inner + 1; i < shape.length; i++) {
+                indices[i]++;
+                aIndex += aStrides[i];
+                bIndex += bStrides[i];
+                if (indices[i] < shape[i]) {
+                    break;
+                }
+                aIndex -= aStrides[i] * shape[i];
+                bIndex -= bStrides[i] * shape[i];
+                indices[i] = 0;
+            }
+        }
+        if (target != out) {
+            out.assign(target);
+        }
+        return out;
+    }
+
+    private static void broadcastRun(Operation operation, Storage a, int aIndex, int aStep,
+                                     Storage b, int bIndex, int bStep, Storage out, int outIndex, int run) {
+        if (aStep == 1 && bStep == 1) {
+            applyRun(operation, a, aIndex, b, bIndex, out, outIndex, run);
+            return;
+        }
+        if (aStep == 1 && bStep == 0 && operation != Operation.DIVIDE) {
+            double d = b.get(bIndex);
+            if (operation == Operation.SUBTRACT) {
+                applyRun(Operation.ADD, a, aIndex, -d, out, outIndex, run);
+            } else {
+                applyRun(operation, a, aIndex, d, out, outIndex, run);
+            }
+            return;
+        }
+        if (aStep == 0 && bStep == 1) {
+            double d = a.get(aIndex);
+            if (operation == Operation.SUBTRACT) {
+                applyRun(Operation.REVERSE_SUBTRACT, b, bIndex, d, out, outIndex, run);
+            } else if (operation == Operation.DIVIDE) {
+                applyRun(Operation.REVERSE_DIVIDE, b, bIndex, d, out, outIndex, run);
+            } else {
+                applyRun(operation, b, bIndex, d, out, outIndex, run);
+            }
+            return;
+        }
+        for (int i = 0; i < run; i++) {
+            out.set(outIndex + i, combine(operation, a.get(aIndex), b.get(bIndex)));
+            aIndex += aStep;
+            bIndex += bStep;
+        }
+    }
+
+    private static double combine(Operation operation, double x, double y) {
+        switch (operation) {
+            case ADD:
+                return x + y;
+            case SUBTRACT:
+                return x - y;
+            case MULTIPLY:
+                return x * y;
+            case DIVIDE:
+                return x / y;
+            default:
+                throw new RuntimeException("Not a binary operation: " + operation);
+        }
+    }
+
+    /**
+     * Sums {@code tensor} over the dimensions a tensor of {@code shape} would be broadcast along to
+     * reach tensor's shape, the gradient counterpart of broadcasting.
+     */
+    public static Tensor sumToShape(Tensor tensor, int... shape) {
+        return sumToShapeInto(tensor, zeros(tensor.dtype(), shape.clone()));
+    }
+
+    /**
+     * Same as {@link #sumToShape(Tensor, int...)}, overwriting {@code out}, whose shape is the
+     * target shape.
+     */
+    public static Tensor sumToShapeInto(Tensor tensor, Tensor out) {
+        if (!Arrays.equals(broadcastShape(tensor.shape, out.shape), tensor.shape)) {
+            throw new RuntimeException("Shape doesn't broadcast to the tensor");
+        }
+        out.zero();
+        Tensor source = tensor.contiguous();
+        int[] strides = broadcastStrides(out, tensor.shape);
+        int[] indices = new int[tensor.shape.length];
+        int index = out.offset;
+        for (int i = 0; i < tensor.valueLength; i++) {
+            out.storage.add(index, source.storage.get(source.offset + i));
+            index = advance(indices, tensor.shape, strides, index);
+        }
+        return out;
+    }
+
+    public static Tensor copyInto(Tensor source, Tensor out) {
+        checkShapes(source, out);
+        if (source != out) {
+            out.assign(source);
+        }
+        return out;
+    }
+
+    public Tensor add(double d) {
+        return applyInto(Operation.ADD, this, d, this);
     }
 
     public void add(int[] indices, double d) {
-        value[n21Dim(indices)] += d;
+        storage.add(n21Dim(indices), d);
     }
 
     public static Tensor add(Tensor tensor, double d) {
-        Tensor returnTensor = zeros(tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = tensor.value[i] + d;
-        }
-        return returnTensor;
+        return applyInto(Operation.ADD, tensor, d, zeros(tensor.dtype(), tensor.shape));
+    }
+
+    public static Tensor addInto(Tensor tensor, double d, Tensor out) {
+        return applyInto(Operation.ADD, tensor, d, out);
     }
 
     public Tensor multiply(double d) {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] *= d;
-        }
-        return this;
+        return applyInto(Operation.MULTIPLY, this, d, this);
     }
 
     public void multiply(int[] indices, double d) {
-        value[n21Dim(indices)] *= d;
+        int index = n21Dim(indices);
+        storage.set(index, storage.get(index) * d);
     }
 
     public static Tensor multiply(Tensor tensor, double d) {
+        return applyInto(Operation.MULTIPLY, tensor, d, zeros(tensor.dtype(), tensor.shape));
+    }
 
-        Tensor returnTensor = zeros(tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = tensor.value[i] * d;
-        }
-        return returnTensor;
+    public static Tensor multiplyInto(Tensor tensor, double d, Tensor out) {
+        return applyInto(Operation.MULTIPLY, tensor, d, out);
     }
 
     public Tensor divideByTensor(double d) {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] = d / value[i];
-        }
-        return this;
+        return applyInto(Operation.REVERSE_DIVIDE, this, d, this);
     }
 
     public static Tensor divideByTensor(double d, Tensor tensor) {
-        Tensor returnTensor = zeros(tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = d / tensor.value[i];
-        }
-        return returnTensor;
+        return applyInto(Operation.REVERSE_DIVIDE, tensor, d, zeros(tensor.dtype(), tensor.shape));
+    }
+
+    public static Tensor divideByTensorInto(double d, Tensor tensor, Tensor out) {
+        return applyInto(Operation.REVERSE_DIVIDE, tensor, d, out);
     }
 
     public Tensor square() {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] *= value[i];
-        }
-        return this;
+        return applyInto(Operation.SQUARE, this, 0, this);
     }
 
     public static Tensor square(Tensor tensor) {
-        Tensor returnTensor = zeros(tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = sq(tensor.value[i]);
-        }
-        return returnTensor;
+        return applyInto(Operation.SQUARE, tensor, 0, zeros(tensor.dtype(), tensor.shape));
+    }
+
+    public static Tensor squareInto(Tensor tensor, Tensor out) {
+        return applyInto(Operation.SQUARE, tensor, 0, out);
     }
 
     public Tensor cube() {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] *= sq(value[i]);
+        if (!contiguous) {
+            assign(cube(this));
+            return this;
+        }
+        for (int i = 0; i < valueLength; i++) {
+            double value = storage.get(offset + i);
+            storage.set(offset + i, value * sq(value));
         }
         return this;
     }
 
     public static Tensor cube(Tensor tensor) {
-        Tensor returnTensor = new Tensor(tensor.value, tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] *= sq(tensor.value[i]);
+        Tensor source = tensor.contiguous();
+        Tensor returnTensor = zeros(tensor.dtype(), tensor.shape);
+        for (int i = 0; i < tensor.valueLength; i++) {
+            double value = source.storage.get(source.offset + i);
+            returnTensor.storage.set(i, value * sq(value));
         }
         return returnTensor;
     }
 
     public Tensor sqrt() {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] = Math.sqrt(value[i]);
-        }
-        return this;
+        return applyInto(Operation.SQRT, this, 0, this);
     }
 
     public static Tensor sqrt(Tensor tensor) {
-        Tensor returnTensor = new Tensor(tensor.value, tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = Math.sqrt(tensor.value[i]);
-        }
-        return returnTensor;
+        return applyInto(Operation.SQRT, tensor, 0, zeros(tensor.dtype(), tensor.shape));
+    }
+
+    public static Tensor sqrtInto(Tensor tensor, Tensor out) {
+        return applyInto(Operation.SQRT, tensor, 0, out);
     }
 
     public Tensor cbrt() {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] = Math.cbrt(value[i]);
+        if (!contiguous) {
+            assign(cbrt(this));
+            return this;
+        }
+        for (int i = 0; i < valueLength; i++) {
+            storage.set(offset + i, Math.cbrt(storage.get(offset + i)));
         }
         return this;
     }
 
     public static Tensor cbrt(Tensor tensor) {
-        Tensor returnTensor = new Tensor(tensor.value, tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = Math.cbrt(tensor.value[i]);
+        Tensor source = tensor.contiguous();
+        Tensor returnTensor = zeros(tensor.dtype(), tensor.shape);
+        for (int i = 0; i < tensor.valueLength; i++) {
+            returnTensor.storage.set(i, Math.cbrt(source.storage.get(source.offset + i)));
         }
         return returnTensor;
     }
 
     public Tensor power(double power) {
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] = Math.pow(value[i], power);
+        if (!contiguous) {
+            assign(power(this, power));
+            return this;
+        }
+        for (int i = 0; i < valueLength; i++) {
+            storage.set(offset + i, Math.pow(storage.get(offset + i), power));
         }
         return this;
     }
 
     public static Tensor power(Tensor tensor, double power) {
-        Tensor returnTensor = new Tensor(tensor.value, tensor.shape);
-        for (int i = 0; i < tensor.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = Math.pow(tensor.value[i], power);
+        Tensor source = tensor.contiguous();
+        Tensor returnTensor = zeros(tensor.dtype(), tensor.shape);
+        for (int i = 0; i < tensor.valueLength; i++) {
+            returnTensor.storage.set(i, Math.pow(source.storage.get(source.offset + i), power));
         }
         return returnTensor;
     }
 
-    public Tensor add(Tensor t) {
-        if (t.shape.length != shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t.shape.length; i++) {
-            if (t.shape[i] != shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] += t.value[i];
-        }
-        return this;
-    }
-
-    public static Tensor add(Tensor t0, Tensor t1) {
+    private static void checkShapes(Tensor t0, Tensor t1) {
         if (t0.shape.length != t1.shape.length) {
             throw new RuntimeException("Tensors don't match");
         }
@@ -299,131 +1008,78 @@ public class Tensor {
                 throw new RuntimeException("Tensors don't match");
             }
         }
-        Tensor returnTensor = new Tensor(t0.value.clone(), t0.shape);
-        for (int i = 0; i < t0.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = t0.value[i] + t1.value[i];
-        }
-        return returnTensor;
+    }
+
+    public Tensor add(Tensor t) {
+        return applyInto(Operation.ADD, this, t, this);
+    }
+
+    public static Tensor add(Tensor t0, Tensor t1) {
+        return applyInto(Operation.ADD, t0, t1, zeros(t0.dtype(), broadcastShape(t0.shape, t1.shape)));
+    }
+
+    public static Tensor addInto(Tensor t0, Tensor t1, Tensor out) {
+        return applyInto(Operation.ADD, t0, t1, out);
     }
 
     public Tensor subtract(Tensor t) {
-        if (t.shape.length != shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t.shape.length; i++) {
-            if (t.shape[i] != shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] -= t.value[i];
-        }
-        return this;
+        return applyInto(Operation.SUBTRACT, this, t, this);
     }
 
     public static Tensor subtract(Tensor t0, Tensor t1) {
-        if (t0.shape.length != t1.shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t0.shape.length; i++) {
-            if (t0.shape[i] != t1.shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        Tensor returnTensor = new Tensor(t0.value.clone(), t0.shape);
-        for (int i = 0; i < t0.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = t0.value[i] - t1.value[i];
-        }
-        return returnTensor;
+        return applyInto(Operation.SUBTRACT, t0, t1, zeros(t0.dtype(), broadcastShape(t0.shape, t1.shape)));
+    }
+
+    public static Tensor subtractInto(Tensor t0, Tensor t1, Tensor out) {
+        return applyInto(Operation.SUBTRACT, t0, t1, out);
     }
 
     public static Tensor subtract(double d, Tensor t0) {
-        Tensor returnTensor = new Tensor(t0.value.clone(), t0.shape);
-        for (int i = 0; i < t0.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = d - t0.value[i];
-        }
-        return returnTensor;
+        return applyInto(Operation.REVERSE_SUBTRACT, t0, d, zeros(t0.dtype(), t0.shape));
+    }
+
+    public static Tensor subtractInto(double d, Tensor t0, Tensor out) {
+        return applyInto(Operation.REVERSE_SUBTRACT, t0, d, out);
     }
 
     public Tensor multiply(Tensor t) {
-        if (t.shape.length != shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t.shape.length; i++) {
-            if (t.shape[i] != shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] *= t.value[i];
-        }
-        return this;
+        return applyInto(Operation.MULTIPLY, this, t, this);
     }
 
     public static Tensor multiply(Tensor t0, Tensor t1) {
-        if (t0.shape.length != t1.shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t0.shape.length; i++) {
-            if (t0.shape[i] != t1.shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        Tensor returnTensor = new Tensor(t0.value.clone(), t0.shape);
-        for (int i = 0; i < t0.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = t0.value[i] * t1.value[i];
-        }
-        return returnTensor;
+        return applyInto(Operation.MULTIPLY, t0, t1, zeros(t0.dtype(), broadcastShape(t0.shape, t1.shape)));
     }
 
+    public static Tensor multiplyInto(Tensor t0, Tensor t1, Tensor out) {
+        return applyInto(Operation.MULTIPLY, t0, t1, out);
+    }
 
     public Tensor divide(Tensor t) {
-        if (t.shape.length != shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t.shape.length; i++) {
-            if (t.shape[i] != shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            value[i] /= t.value[i];
-        }
-        return this;
+        return applyInto(Operation.DIVIDE, this, t, this);
     }
 
     public static Tensor divide(Tensor t0, Tensor t1) {
-        if (t0.shape.length != t1.shape.length) {
-            throw new RuntimeException("Tensors don't match");
-        }
-        for (int i = 0; i < t0.shape.length; i++) {
-            if (t0.shape[i] != t1.shape[i]) {
-                throw new RuntimeException("Tensors don't match");
-            }
-        }
-        Tensor returnTensor = new Tensor(t0.value.clone(), t0.shape);
-        for (int i = 0; i < t0.VALUE_LENGTH; i++) {
-            returnTensor.value[i] = t0.value[i] / t1.value[i];
-        }
-        return returnTensor;
+        return applyInto(Operation.DIVIDE, t0, t1, zeros(t0.dtype(), broadcastShape(t0.shape, t1.shape)));
+    }
+
+    public static Tensor divideInto(Tensor t0, Tensor t1, Tensor out) {
+        return applyInto(Operation.DIVIDE, t0, t1, out);
     }
 
     public static Tensor log(Tensor tensor) {
-        Tensor returnTensor = new Tensor(tensor.getShape());
-        for (int i = 0; i < returnTensor.value.length; i++) {
-            returnTensor.value[i] = Math.log(tensor.value[i]);
+        Tensor source = tensor.contiguous();
+        Tensor returnTensor = zeros(tensor.dtype(), tensor.shape);
+        for (int i = 0; i < returnTensor.valueLength; i++) {
+            returnTensor.storage.set(i, Math.log(source.storage.get(source.offset + i)));
         }
         return returnTensor;
     }
 
+    /**
+     * Moves the first dimension to the end, returning a view over the same storage.
+     */
     public static Tensor transpose(Tensor tensor) {
-        int[] shape = shift(tensor.shape);
-        Tensor transposedTensor = Tensor.zeros(shape);
-        for (int i = 0; i < tensor.value.length; i++) {
-            int index = transposedTensor.n21Dim(shift(tensor.one2nDim(i)));
-            transposedTensor.value[index] = tensor.value[i];
-        }
-        return transposedTensor;
+        return new Tensor(tensor.storage, tensor.offset, shift(tensor.shape), shift(tensor.strides));
     }
 
     private static int[] shift(int[] indices) {
@@ -435,7 +1091,72 @@ public class Tensor {
         return shiftedIndices;
     }
 
+    private static Tensor asMatrix(Tensor tensor, int rows, int columns) {
+        if (tensor.shape.length == 2) {
+            return tensor;
+        }
+        Tensor source = tensor.contiguous();
+        return new Tensor(source.storage, source.offset, new int[]{rows, columns}, new int[]{1, rows});
+    }
+
+    /**
+     * C = A * B on tensors of the same dtype, with explicit strides for each operand.
+     */
+    private static void multiplyMatrices(int m, int n, int k,
+                                         Tensor a, int aRowStride, int aColumnStride,
+                                         Tensor b, int bRowStride, int bColumnStride,
+                                         Tensor c, int cRowStride, int cColumnStride) {
+        if (c.storage instanceof FloatStorage) {
+            Gemm.multiply(m, n, k,
+                    ((FloatStorage) a.storage).array, a.offset, aRowStride, aColumnStride,
+                    ((FloatStorage) b.storage).array, b.offset, bRowStride, bColumnStride,
+                    ((FloatStorage) c.storage).array, c.offset, cRowStride, cColumnStride, false);
+            return;
+        }
+        Gemm.multiply(m, n, k,
+                ((DoubleStorage) a.storage).array, a.offset, aRowStride, aColumnStride,
+                ((DoubleStorage) b.storage).array, b.offset, bRowStride, bColumnStride,
+                ((DoubleStorage) c.storage).array, c.offset, cRowStride, cColumnStride, false);
+    }
+
+    private static Tensor productTarget(Tensor out, DType dtype, int... shape) {
+        if (out == null) {
+            return zeros(dtype, shape);
+        }
+        if (out.valueLength != size(shape)) {
+            throw new RuntimeException("Output doesn't fit the product");
+        }
+        return out.contiguous && !out.isOffHeap() ? out : zeros(dtype, shape);
+    }
+
+    private static Tensor productResult(Tensor value, Tensor out) {
+        if (out == null || value == out) {
+            return value;
+        }
+        out.assign(value);
+        return out;
+    }
+
     public static Tensor dotProduct(Tensor t0, Tensor t1) {
+        return product(t0, t1, null);
+    }
+
+    /**
+     * {@link #dotProduct(Tensor, Tensor)} written into {@code out}, which keeps its shape and dtype.
+     * It must hold as many values as the product and must not share storage with an operand.
+     */
+    public static Tensor dotProductInto(Tensor t0, Tensor t1, Tensor out) {
+        return product(t0, t1, out);
+    }
+
+    private static Tensor product(Tensor t0, Tensor t1, Tensor out) {
+        DType dtype = out == null ? t0.dtype() : out.dtype();
+        if (t0.dtype() != dtype || t0.isOffHeap()) {
+            t0 = t0.copy(dtype);
+        }
+        if (t1.dtype() != dtype || t1.isOffHeap()) {
+            t1 = t1.copy(dtype);
+        }
         int[] t0Shape = t0.shape;
         int[] t1Shape = t1.shape;
         int t0ShapeLength = t0Shape.length;
@@ -470,35 +1191,57 @@ public class Tensor {
             t1NewShape[1] *= t1TrimmedShape[i];
         }
 
-        Tensor t2 = new Tensor(t0.value, t0NewShape);
-        Tensor t3 = new Tensor(t1.value, t1NewShape);
-
-        if (t0NewShape[0] == 1) {
-            double[] value = new double[t1NewShape[1]];
-            for (int i = 0; i < t1NewShape[0]; i++) {
-                for (int j = 0; j < t1NewShape[1]; j++) {
-                    value[j] += t2.get(0, i) * t3.get(i, j);
-                }
-            }
-            int[] reshape = new int[t1Shape.length - 1];
-            System.arraycopy(t1Shape, 1, reshape, 0, t1ShapeLength - 1);
-            return new Tensor(value, 1, value.length);
-        } else if (t0NewShape[1] == 1) {
-            Tensor value = zeros(t0NewShape[0], t1NewShape[1]);
-            for (int i = 0; i < t1NewShape[0]; i++) {
-                for (int j = 0; j < t0NewShape[0]; j++) {
-                    for (int k = 0; k < t1NewShape[1]; k++) {
-                        value.set(new int[]{j, k}, value.get(j, k) + t2.get(j, 0) * t3.get(i, k));
+        int t0Rows = t0NewShape[0];
+        int t0Columns = t0NewShape[1];
+        int t1Rows = t1NewShape[0];
+        int t1Columns = t1NewShape[1];
+
+        Tensor m0 = asMatrix(t0, t0Rows, t0Columns);
+        Tensor m1 = asMatrix(t1, t1Rows, t1Columns);
+
+        if (t0Rows == 1) {
+            Tensor value = productTarget(out, dtype, 1, t1Columns);
+            multiplyMatrices(1, t1Columns, t1Rows,
+                    m0, m0.strides[0], m0.strides[1],
+                    m1, m1.strides[0], m1.strides[1],
+                    value, 1, 1);
+            return productResult(value, out);
+        } else if (t0Columns == 1) {
+            Tensor row = m1;
+            int rowStride = m1.strides[1];
+            if (t1Rows != 1) {
+                row = zeros(dtype, 1, t1Columns);
+                rowStride = 1;
+                for (int k = 0; k < t1Columns; k++) {
+                    for (int i = 0; i < t1Rows; i++) {
+                        row.storage.add(k, m1.storage.get(m1.offset + i * m1.strides[0] + k * m1.strides[1]));
                     }
                 }
             }
+            Tensor value = productTarget(out, dtype, t0Rows, t1Columns);
+            multiplyMatrices(t0Rows, t1Columns, 1,
+                    m0, m0.strides[0], m0.strides[1],
+                    row, 1, rowStride,
+                    value, 1, t0Rows);
+            if (out != null) {
+                return productResult(value, out);
+            }
             int[] reshape = new int[t1Shape.length];
             System.arraycopy(t1Shape, 1, reshape, 1, t0Shape.length - 1);
-            reshape[0] = t0NewShape[0];
+            reshape[0] = t0Rows;
             value.reshape(reshape);
             return value;
-        }
-        return multiply(t2, t3);
+        } else if (t0Columns == t1Rows) {
+            Tensor value = productTarget(out, dtype, t0Rows, t1Columns);
+            multiplyMatrices(t0Rows, t1Columns, t0Columns,
+                    m0, m0.strides[0], m0.strides[1],
+                    m1, m1.strides[0], m1.strides[1],
+                    value, 1, t0Rows);
+            return productResult(value, out);
+        }
+        Tensor value = productTarget(out, dtype, t0NewShape);
+        multiplyInto(reshape(t0, t0NewShape), reshape(t1, t1NewShape), reshape(value, t0NewShape));
+        return productResult(value, out);
     }
 
     //TODO:fix concatenation shape[shape(1, 2, 3), shape(2, 2, 3)] = shape(3, 2, 3)
@@ -512,50 +1255,78 @@ public class Tensor {
                 throw new RuntimeException("Tensors don't match");
             }
         }
-        shape[index] += t.shape[index];
-        double[] newValue = new double[value.length + t.value.length];
-        System.arraycopy(value, 0, newValue, 0, value.length);
-        System.arraycopy(t.value, 0, newValue, value.length, t.value.length);
-        value = newValue;
+        int[] newShape = shape.clone();
+        newShape[index] += t.shape[index];
+        Storage newStorage = Storage.allocate(dtype(), valueLength + t.valueLength);
+        copyTo(newStorage, 0);
+        t.copyTo(newStorage, valueLength);
+        storage = newStorage;
+        valueLength = newStorage.length();
+        offset = 0;
+        shape = newShape;
+        strides = defaultStrides(shape);
+        contiguous = true;
         return this;
     }
 
+    /**
+     * Joins tensors along the first dimension into a new tensor in the first tensor's dtype, for
+     * example samples of shape [1, ...] into a batch of shape [N, ...]. The other dimensions must
+     * match.
+     */
+    public static Tensor stack(Tensor... tensors) {
+        int[] shape = tensors[0].shape.clone();
+        shape[0] = 0;
+        for (int i = 0; i < tensors.length; i++) {
+            int[] tensorShape = tensors[i].shape;
+            if (tensorShape.length != shape.length) {
+                throw new RuntimeException("Tensors don't match");
+            }
+            for (int j = 1; j < shape.length; j++) {
+                if (tensorShape[j] != shape[j]) {
+                    throw new RuntimeException("Tensors don't match");
+                }
+            }
+            shape[0] += tensorShape[0];
+        }
+        Tensor stacked = zeros(tensors[0].dtype(), shape);
+        int start = 0;
+        for (int i = 0; i < tensors.length; i++) {
+            int end = start + tensors[i].shape[0];
+            slice(stacked, 0, start, end).assign(tensors[i]);
+            start = end;
+        }
+        return stacked;
+    }
+
     public static Tensor concat(Tensor t0, Tensor t1) {
         Tensor returnTensor = t0.copy();
         returnTensor.concat(t1);
         return returnTensor;
     }
 
+    /**
+     * Splits along the last dimension into two views over the same storage.
+     */
     public static Tensor[] split(Tensor t, int split0) {
-        double[] tValue = t.value;
-        int[] tShape = t.shape;
-        int[] t0Shape = tShape.clone();
-        int[] t1Shape = tShape.clone();
-        int lastIndex = t0Shape.length - 1;
-        int sharedShapeSize = tValue.length / tShape[lastIndex];
-        t0Shape[lastIndex] = split0;
-        t1Shape[lastIndex] -= split0;
-        double[] t0Value = new double[sharedShapeSize * t0Shape[lastIndex]];
-        double[] t1Value = new double[sharedShapeSize * t1Shape[lastIndex]];
-        System.arraycopy(tValue, 0, t0Value, 0, t0Value.length);
-        System.arraycopy(tValue, t0Value.length, t1Value, 0, t1Value.length);
-        Tensor splitT0 = new Tensor(t0Value, t0Shape);
-        Tensor splitT1 = new Tensor(t1Value, t1Shape);
+        int lastIndex = t.shape.length - 1;
+        Tensor splitT0 = slice(t, lastIndex, 0, split0);
+        Tensor splitT1 = slice(t, lastIndex, split0, t.shape[lastIndex]);
         return new Tensor[]{splitT0, splitT1};
     }
 
     public double mean() {
-        return sum() / VALUE_LENGTH;
+        return sum() / valueLength;
     }
 
 
     public double variance() {
+        Tensor tensor = onHeap();
         double mean = mean();
-        double variance = 0;
-        for (int i = 0; i < VALUE_LENGTH; i++) {
-            variance += sq(mean - value[i]);
+        if (tensor.storage instanceof FloatStorage) {
+            return KERNELS.squaredDeviation(((FloatStorage) tensor.storage).array, tensor.offset, mean, valueLength) / (valueLength - 1);
         }
-        return variance / (VALUE_LENGTH - 1);
+        return KERNELS.squaredDeviation(((DoubleStorage) tensor.storage).array, tensor.offset, mean, valueLength) / (valueLength - 1);
     }
 
     public static double mean(Tensor tensor) {
@@ -570,4 +1341,77 @@ public class Tensor {
     private static double sq(double x) {
         return x * x;
     }
+
+    /**
+     * Walks the elements of a tensor in column major order, which is storage order for contiguous
+     * tensors, without allocating per element. {@link #next()} moves to the first element; the
+     * same cursor can walk the tensor again after {@link #reset()}, which is also required once the
+     * tensor is reshaped or moved.
+     */
+    public static final class Cursor {
+
+        private final Tensor TENSOR;
+
+        private Storage storage;
+        private int[] shape;
+        private int[] strides;
+        private int[] indices;
+        private int index;
+        private int position;
+
+        private Cursor(Tensor tensor) {
+            TENSOR = tensor;
+            reset();
+        }
+
+        public void reset() {
+            storage = TENSOR.storage;
+            shape = TENSOR.shape;
+            strides = TENSOR.strides;
+            if (indices == null || indices.length != shape.length) {
+                indices = new int[shape.length];
+            } else {
+                Arrays.fill(indices, 0);
+            }
+            index = TENSOR.offset;
+            position = -1;
+        }
+
+        public boolean next() {
+            if (position + 1 >= TENSOR.valueLength) {
+                return false;
+            }
+            if (position >= 0) {
+                index = advance(indices, shape, strides, index);
+            }
+            position++;
+            return true;
+        }
+
+        /**
+         * Index of the current element along the given axis.
+         */
+        public int index(int axis) {
+            return indices[axis];
+        }
+
+        /**
+         * Number of elements visited before the current one.
+         */
+        public int position() {
+            return position;
+        }
+
+        public double get() {
+            return storage.get(index);
+        }
+
+        public void set(double value) {
+            storage.set(index, value);
+        }
+
+        public void add(double d) {
+            storage.add(index, d);
+        }
+    }
 }
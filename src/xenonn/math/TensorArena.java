@@ -0,0 +1,91 @@
+package xenonn.math;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of temporary tensors keyed by dtype and shape. Tensors handed out stay valid until
+ * {@link #reset()}, after which the arena hands them out again. Not thread safe.
+ */
+public final class TensorArena {
+
+    private final Map<Key, ArrayDeque<Tensor>> FREE = new HashMap<>();
+    private final List<Key> USED_KEYS = new ArrayList<>();
+    private final List<Tensor> USED = new ArrayList<>();
+
+    /**
+     * Returns a zeroed tensor, reusing one that was handed out before the last reset if possible.
+     */
+    public Tensor zeros(DType dtype, int... shape) {
+        Key key = new Key(dtype, shape);
+        ArrayDeque<Tensor> free = FREE.get(key);
+        Tensor tensor = free == null ? null : free.poll();
+        if (tensor == null) {
+            tensor = Tensor.zeros(dtype, key.SHAPE.clone());
+        } else {
+            tensor.zero();
+        }
+        USED_KEYS.add(key);
+        USED.add(tensor);
+        return tensor;
+    }
+
+    /**
+     * Reclaims every tensor handed out since the last reset. Tensors that were reshaped, moved or
+     * detached in the meantime are dropped instead of reused.
+     */
+    public void reset() {
+        for (int i = 0; i < USED.size(); i++) {
+            Tensor tensor = USED.get(i);
+            Key key = USED_KEYS.get(i);
+            if (key.fits(tensor)) {
+                FREE.computeIfAbsent(key, k -> new ArrayDeque<>()).add(tensor);
+            }
+        }
+        USED.clear();
+        USED_KEYS.clear();
+    }
+
+    /**
+     * Number of tensors handed out since the last reset.
+     */
+    public int used() {
+        return USED.size();
+    }
+
+    private static final class Key {
+
+        private final DType DTYPE;
+        private final int[] SHAPE;
+        private final int HASH;
+
+        private Key(DType dtype, int[] shape) {
+            DTYPE = dtype;
+            SHAPE = shape.clone();
+            HASH = 31 * dtype.hashCode() + Arrays.hashCode(SHAPE);
+        }
+
+        private boolean fits(Tensor tensor) {
+            return tensor.dtype() == DTYPE && !tensor.isView() && !tensor.isOffHeap()
+                    && Arrays.equals(tensor.getShape(), SHAPE);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return DTYPE == key.DTYPE && Arrays.equals(SHAPE, key.SHAPE);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package xenonn.math;
+
+/**
+ * Winograd minimal filtering F(2x2, 3x3) for stride 1 correlations with 3x3 filters.
+ * <p>
+ * Images are column major [batch, x, y, channels] arrays and filters are column major
+ * [3, 3, inChannels, outChannels] arrays. Each 2x2 output tile is computed from a 4x4 input tile
+ * with 16 multiplications per channel pair instead of 36. The element-wise products of all tiles
+ * are batched into 16 matrix products of [tiles, inChannels] by [inChannels, outChannels], which
+ * run on {@link Gemm}. The tile transforms are split by channel across the {@link Parallel} pool.
+ */
+public final class Winograd {
+
+    private static final int TILE = 2;
+    private static final int POINTS = 16;
+
+    private Winograd() {
+
+    }
+
+    /**
+     * Transforms filters into the 16 [inChannels, outChannels] matrices {@link #correlate} takes.
+     * Filters only change when weights are updated, so the result can be kept between calls.
+     */
+    public static double[] transformFilters(double[] filters, int inChannels, int outChannels) {
+        int pairs = inChannels * outChannels;
+        double[] transformed = new double[POINTS * pairs];
+        double[] g = new double[9];
+        double[] gx = new double[12];
+        double[] u = new double[POINTS];
+        for (int pair = 0; pair < pairs; pair++) {
+            System.arraycopy(filters, pair * 9, g, 0, 9);
+            transformFilter(g, gx, u);
+            for (int point = 0; point < POINTS; point++) {
+                transformed[point * pairs + pair] = u[point];
+            }
+        }
+        return transformed;
+    }
+
+    /**
+     * U = G g G^T for one 3x3 filter.
+     */
+    private static void transformFilter(double[] g, double[] gx, double[] u) {
+        for (int ky = 0; ky < 3; ky++) {
+            double g0 = g[ky * 3];
+            double g1 = g[ky * 3 + 1];
+            double g2 = g[ky * 3 + 2];
+            gx[ky * 4] = g0;
+            gx[ky * 4 + 1] = (g0 + g1 + g2) * 0.5;
+            gx[ky * 4 + 2] = (g0 - g1 + g2) * 0.5;
+            gx[ky * 4 + 3] = g2;
+        }
+        for (int i = 0; i < 4; i++) {
+            double g0 = gx[i];
+            double g1 = gx[4 + i];
+            double g2 = gx[8 + i];
+            u[i] = g0;
+            u[4 + i] = (g0 + g1 + g2) * 0.5;
+            u[8 + i] = (g0 - g1 + g2) * 0.5;
+            u[12 + i] = g2;
+        }
+    }
+
+    /**
+     * Overwrites {@code out}, a [batch, outX, outY, outChannels] image, with
+     * out[n, x, y, o] = sum over c, kx, ky of image[n, x + kx - shift, y + ky - shift, c] *
+     * filter[kx, ky, c, o], reading zero outside the image. A shift of 0 is a valid or right
+     * padded correlation, a shift of 2 a full one.
+     */
+    public static void correlate(double[] image, int batch, int inX, int inY, int inChannels, int shift,
+                                 double[] transformedFilters, int outChannels,
+                                 double[] out, int outX, int outY) {
+        int tilesX = (outX + TILE - 1) / TILE;
+        int tilesY = (outY + TILE - 1) / TILE;
+        int tiles = batch * tilesX * tilesY;
+        double[] transformedImage = new double[POINTS * tiles * inChannels];
+        double[] products = new double[POINTS * tiles * outChannels];
+        transformImage(image, batch, inX, inY, inChannels, shift, tilesX, tilesY, transformedImage);
+        for (int point = 0; point < POINTS; point++) {
+            Gemm.multiply(tiles, outChannels, inChannels,
+                    transformedImage, point * tiles * inChannels, 1, tiles,
+                    transformedFilters, point * inChannels * outChannels, 1, inChannels,
+                    products, point * tiles * outChannels, 1, tiles, false);
+        }
+        transformOutput(products, batch, outChannels, tilesX, tilesY, out, outX, outY);
+    }
+
+    /**
+     * V = B^T d B for every 4x4 input tile d and channel, stored as 16 [tiles, channels] matrices.
+     */
+    private static void transformImage(double[] image, int batch, int inX, int inY, int channels, int shift,
+                                       int tilesX, int tilesY, double[] transformed) {
+        int tiles = batch * tilesX * tilesY;
+        int plane = tiles * channels;
+        Parallel.forEach(channels, (start, end) -> {
+            double[] d = new double[POINTS];
+            double[] v = new double[POINTS];
+            for (int c = start; c < end; c++) {
+                for (int ty = 0; ty < tilesY; ty++) {
+                    for (int tx = 0; tx < tilesX; tx++) {
+                        int x0 = tx * TILE - shift;
+                        int y0 = ty * TILE - shift;
+                        for (int n = 0; n < batch; n++) {
+                            for (int j = 0; j < 4; j++) {
+                                int y = y0 + j;
+                                for (int i = 0; i < 4; i++) {
+                                    int x = x0 + i;
+                                    boolean inside = x >= 0 && y >= 0 && x < inX && y < inY;
+                                    d[j * 4 + i] = inside ? image[n + batch * (x + inX * (y + inY * c))] : 0;
+                                }
+                            }
+                            transformTile(d, v);
+                            int tile = n + batch * (tx + tilesX * ty);
+                            for (int point = 0; point < POINTS; point++) {
+                                transformed[point * plane + c * tiles + tile] = v[point];
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static void transformTile(double[] d, double[] v) {
+        for (int j = 0; j < 4; j++) {
+            double d0 = d[j * 4];
+            double d1 = d[j * 4 + 1];
+            double d2 = d[j * 4 + 2];
+            double d3 = d[j * 4 + 3];
+            v[j * 4] = d0 - d2;
+            v[j * 4 + 1] = d1 + d2;
+            v[j * 4 + 2] = d2 - d1;
+            v[j * 4 + 3] = d1 - d3;
+        }
+        for (int i = 0; i < 4; i++) {
+            double d0 = v[i];
+            double d1 = v[4 + i];
+            double d2 = v[8 + i];
+            double d3 = v[12 + i];
+            v[i] = d0 - d2;
+            v[4 + i] = d1 + d2;
+            v[8 + i] = d2 - d1;
+            v[12 + i] = d1 - d3;
+        }
+    }
+
+    /**
+     * Y = A^T m A for every tile and output channel, dropping tile outputs past the image edge.
+     */
+    private static void transformOutput(double[] products, int batch, int channels, int tilesX, int tilesY,
+                                        double[] out, int outX, int outY) {
+        int tiles = batch * tilesX * tilesY;
+        int plane = tiles * channels;
+        Parallel.forEach(channels, (start, end) -> {
+            double[] m = new double[POINTS];
+            for (int o = start; o < end; o++) {
+                for (int ty = 0; ty < tilesY; ty++) {
+                    for (int tx = 0; tx < tilesX; tx++) {
+                        for (int n = 0; n < batch; n++) {
+                            int tile = n + batch * (tx + tilesX * ty);
+                            for (int point = 0; point < POINTS; point++) {
+                                m[point] = products[point * plane + o * tiles + tile];
+                            }
+                            for (int j = 0; j < 4; j++) {
+                                double m0 = m[j * 4];
+                                double m1 = m[j * 4 + 1];
+                                double m2 = m[j * 4 + 2];
+                                double m3 = m[j * 4 + 3];
+                                m[j * 4] = m0 + m1 + m2;
+                                m[j * 4 + 1] = m1 - m2 - m3;
+                            }
+                            for (int i = 0; i < TILE; i++) {
+                                double m0 = m[i];
+                                double m1 = m[4 + i];
+                                double m2 = m[8 + i];
+                                double m3 = m[12 + i];
+                                int x = tx * TILE + i;
+                                int y = ty * TILE;
+                                if (x < outX) {
+                                    out[n + batch * (x + outX * (y + outY * o))] = m0 + m1 + m2;
+                                    if (y + 1 < outY) {
+                                        out[n + batch * (x + outX * (y + 1 + outY * o))] = m1 - m2 - m3;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
@@ -1,27 +1,78 @@
 package xenonn.nn.activation;
 
+import xenonn.math.DType;
 import xenonn.math.Tensor;
 
 public abstract class ActivationFunction {
 
     public Tensor value(Tensor in) {
-        Tensor out = in.copy();
-        double[] values = out.getAll();
-        for (int i = 0; i < values.length; i++) {
-            values[i] = value(values[i]);
+        return valueInto(in, Tensor.zeros(in.dtype(), in.getShape().clone()));
+    }
+
+    public Tensor derivative(Tensor in) {
+        return derivativeInto(in, Tensor.zeros(in.dtype(), in.getShape().clone()));
+    }
+
+    /**
+     * Writes the activation of {@code in} into {@code out}, which must have the same shape.
+     */
+    public Tensor valueInto(Tensor in, Tensor out) {
+        if (out.isView() || out.isOffHeap()) {
+            return Tensor.copyInto(value(in), out);
         }
+        Tensor.copyInto(in, out);
+        if (out.dtype() == DType.FLOAT32) {
+            float[] values = out.getAllFloat();
+            value(values, 0, values, 0, values.length);
+            return out;
+        }
+        double[] values = out.getAll();
+        value(values, 0, values, 0, values.length);
         return out;
     }
 
-    public Tensor derivative(Tensor in) {
-        Tensor out = in.copy();
-        double[] derivatives = out.getAll();
-        for (int i = 0; i < derivatives.length; i++) {
-            derivatives[i] = derivative(derivatives[i]);
+    public Tensor derivativeInto(Tensor in, Tensor out) {
+        if (out.isView() || out.isOffHeap()) {
+            return Tensor.copyInto(derivative(in), out);
+        }
+        Tensor.copyInto(in, out);
+        if (out.dtype() == DType.FLOAT32) {
+            float[] derivatives = out.getAllFloat();
+            derivative(derivatives, 0, derivatives, 0, derivatives.length);
+            return out;
         }
+        double[] derivatives = out.getAll();
+        derivative(derivatives, 0, derivatives, 0, derivatives.length);
         return out;
     }
 
+    /**
+     * Bulk form of {@link #value(double)}, overridden where a vectorized kernel exists.
+     */
+    protected void value(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = value(in[inOffset + i]);
+        }
+    }
+
+    protected void derivative(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = derivative(in[inOffset + i]);
+        }
+    }
+
+    protected void value(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) value(in[inOffset + i]);
+        }
+    }
+
+    protected void derivative(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOffset + i] = (float) derivative(in[inOffset + i]);
+        }
+    }
+
     protected abstract double value(double in);
 
     protected abstract double derivative(double in);
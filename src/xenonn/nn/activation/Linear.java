@@ -1,5 +1,9 @@
 package xenonn.nn.activation;
 
+import xenonn.math.Kernels;
+
+import java.util.Arrays;
+
 public class Linear extends ActivationFunction {
 
     private final double SHIFT;
@@ -22,4 +26,23 @@ public class Linear extends ActivationFunction {
         return SCALE;
     }
 
+    @Override
+    protected void value(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().affine(in, inOffset, SHIFT, SCALE, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Arrays.fill(out, outOffset, outOffset + length, SCALE);
+    }
+
+    @Override
+    protected void value(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().affine(in, inOffset, SHIFT, SCALE, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Arrays.fill(out, outOffset, outOffset + length, (float) SCALE);
+    }
 }
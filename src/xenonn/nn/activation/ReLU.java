@@ -1,5 +1,7 @@
 package xenonn.nn.activation;
 
+import xenonn.math.Kernels;
+
 public class ReLU extends ActivationFunction {
 
     public double value(double in) {
@@ -10,4 +12,23 @@ public class ReLU extends ActivationFunction {
         return in >= 0 ? 1: 0;
     }
 
+    @Override
+    protected void value(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().relu(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().reluDerivative(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void value(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().relu(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().reluDerivative(in, inOffset, out, outOffset, length);
+    }
 }
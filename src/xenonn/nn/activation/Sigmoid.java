@@ -1,5 +1,6 @@
 package xenonn.nn.activation;
 
+import xenonn.math.Kernels;
 
 public class Sigmoid extends ActivationFunction {
 
@@ -11,4 +12,24 @@ public class Sigmoid extends ActivationFunction {
         in = value(in);
         return in * (1 - in);
     }
+
+    @Override
+    protected void value(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().sigmoid(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().sigmoidDerivative(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void value(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().sigmoid(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().sigmoidDerivative(in, inOffset, out, outOffset, length);
+    }
 }
@@ -1,5 +1,6 @@
 package xenonn.nn.activation;
 
+import xenonn.math.Kernels;
 
 public class Tanh extends ActivationFunction {
 
@@ -10,4 +11,24 @@ public class Tanh extends ActivationFunction {
     public double derivative(double in) {
         return 2 / (Math.cosh(2 * in) + 1);
     }
+
+    @Override
+    protected void value(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().tanh(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(double[] in, int inOffset, double[] out, int outOffset, int length) {
+        Kernels.get().tanhDerivative(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void value(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().tanh(in, inOffset, out, outOffset, length);
+    }
+
+    @Override
+    protected void derivative(float[] in, int inOffset, float[] out, int outOffset, int length) {
+        Kernels.get().tanhDerivative(in, inOffset, out, outOffset, length);
+    }
 }
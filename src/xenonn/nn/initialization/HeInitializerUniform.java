@@ -10,9 +10,10 @@ public class HeInitializerUniform extends Initializer {
         int columns = weightTensor.getShape()[1];
         double range = 2 / Math.sqrt(rows * columns);
 
-        double[] values = weightTensor.getAll();
+        double[] values = new double[weightTensor.size()];
         for (int i = 0; i < values.length; i++) {
             values[i] = RANDOM.nextDouble() * 2 * range - range;
         }
+        weightTensor.setAll(values);
     }
 }
@@ -12,9 +12,10 @@ public class ManualInitializer extends Initializer {
 
     @Override
     public void initialize(Tensor weightTensor) {
-        double[] values = weightTensor.getAll();
+        double[] values = new double[weightTensor.size()];
         for (int i = 0; i < values.length; i++) {
             values[i] = RANDOM.nextGaussian() * RANGE;
         }
+        weightTensor.setAll(values);
     }
 }
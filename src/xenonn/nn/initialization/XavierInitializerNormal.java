@@ -12,9 +12,10 @@ public class XavierInitializerNormal extends Initializer {
         int columns = weightTensor.getShape()[1];
         double range = SQRT_6 / Math.sqrt(rows + columns);
 
-        double[] values = weightTensor.getAll();
+        double[] values = new double[weightTensor.size()];
         for (int i = 0; i < values.length; i++) {
             values[i] = RANDOM.nextGaussian() * range;
         }
+        weightTensor.setAll(values);
     }
 }
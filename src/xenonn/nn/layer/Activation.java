@@ -3,6 +3,8 @@ package xenonn.nn.layer;
 import xenonn.math.Tensor;
 import xenonn.nn.activation.ActivationFunction;
 
+import java.util.Arrays;
+
 public class Activation extends Layer {
 
     private final ActivationFunction ACTIVATION_FUNCTION;
@@ -38,14 +40,18 @@ public class Activation extends Layer {
     @Override
     public Tensor feedForward(Tensor tensor) {
         if (learningOn) {
-            derivatives = ACTIVATION_FUNCTION.derivative(tensor);
+            if (derivatives == null || derivatives.dtype() != tensor.dtype()
+                    || !Arrays.equals(derivatives.getShape(), tensor.getShape())) {
+                derivatives = Tensor.zeros(tensor.dtype(), tensor.getShape().clone());
+            }
+            ACTIVATION_FUNCTION.derivativeInto(tensor, derivatives);
         }
-        return ACTIVATION_FUNCTION.value(tensor);
+        return ACTIVATION_FUNCTION.valueInto(tensor, temporary(tensor.getShape()));
     }
 
     @Override
     public Tensor getDelta(Tensor outputError) {
-        return Tensor.multiply(outputError, derivatives);
+        return Tensor.multiplyInto(outputError, derivatives, temporary(outputError.getShape()));
     }
 
 }
@@ -6,6 +6,8 @@ import xenonn.nn.initialization.NullInitializer;
 import xenonn.nn.initialization.XavierInitializerNormal;
 import xenonn.nn.layer.type.Trainable;
 
+import java.util.Arrays;
+
 public class Dense extends Layer implements Trainable {
 
     private int IN;
@@ -15,6 +17,7 @@ public class Dense extends Layer implements Trainable {
 
     private Tensor input;
     private Tensor outputError;
+    private Tensor[] gradients;
 
     private final Initializer INITIALIZER;
 
@@ -42,11 +45,12 @@ public class Dense extends Layer implements Trainable {
     public void setInDimensions(int[] inDimensions) {
         IN = inDimensions[1];
         if (WEIGHTS[0] == null) {
-            WEIGHTS[0] = Tensor.zeros(IN, OUT);
+            WEIGHTS[0] = Tensor.zeros(dtype, IN, OUT);
         }
         if (WEIGHTS[1] == null) {
-            WEIGHTS[1] = Tensor.zeros(1, OUT);
+            WEIGHTS[1] = Tensor.zeros(dtype, 1, OUT);
         }
+        gradients = new Tensor[]{Tensor.zeros(dtype, IN, OUT), Tensor.zeros(dtype, 1, OUT)};
     }
 
     @Override
@@ -57,9 +61,12 @@ public class Dense extends Layer implements Trainable {
     @Override
     public Tensor feedForward(Tensor in) {
         if (learningOn) {
-            input = in.copy();
+            if (input == null || !Arrays.equals(input.getShape(), in.getShape())) {
+                input = Tensor.zeros(dtype, in.getShape().clone());
+            }
+            Tensor.copyInto(in, input);
         }
-        Tensor value = Tensor.dotProduct(in, WEIGHTS[0]);
+        Tensor value = Tensor.dotProductInto(in, WEIGHTS[0], temporary(in.getShape()[0], OUT));
         value.add(WEIGHTS[1]);
         return value;
     }
@@ -72,7 +79,7 @@ public class Dense extends Layer implements Trainable {
 
     @Override
     public Tensor getDelta(Tensor outputError) {
-        return Tensor.dotProduct(outputError, Tensor.transpose(WEIGHTS[0]));
+        return Tensor.dotProductInto(outputError, Tensor.transpose(WEIGHTS[0]), temporary(outputError.getShape()[0], IN));
     }
 
     @Override
@@ -82,11 +89,16 @@ public class Dense extends Layer implements Trainable {
 
     @Override
     public Tensor[] getGradients() {
-        return new Tensor[]{Tensor.dotProduct(Tensor.transpose(input), outputError), outputError};
+        Tensor.dotProductInto(Tensor.transpose(input), outputError, gradients[0]);
+        Tensor.sumToShapeInto(outputError, gradients[1]);
+        return gradients;
     }
 
     @Override
     public void setOutputError(Tensor outputError) {
-        this.outputError = outputError.copy();
+        if (this.outputError == null || !Arrays.equals(this.outputError.getShape(), outputError.getShape())) {
+            this.outputError = Tensor.zeros(dtype, outputError.getShape().clone());
+        }
+        Tensor.copyInto(outputError, this.outputError);
     }
 }
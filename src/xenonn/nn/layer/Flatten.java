@@ -32,16 +32,15 @@ public class Flatten extends Layer {
 
     @Override
     public Tensor feedForward(Tensor tensor) {
-        Tensor flattened = tensor.copy();
-        flattened.reshape(1, tensor.size());
-        return flattened;
+        int batch = tensor.size() / OUT;
+        return Tensor.copyInto(Tensor.reshape(tensor, batch, OUT), temporary(batch, OUT));
     }
 
 
 
     @Override
     public Tensor getDelta(Tensor outputError) {
-        outputError.reshape(IN_DIMENSIONS);
+        outputError.reshape(batchShape(IN_DIMENSIONS, outputError.getShape()[0]));
         return outputError;
     }
 }
@@ -1,10 +1,50 @@
 package xenonn.nn.layer;
 
+import xenonn.math.DType;
 import xenonn.math.Tensor;
+import xenonn.math.TensorArena;
 
 public abstract class Layer {
 
     protected boolean learningOn;
+    protected DType dtype = DType.FLOAT64;
+    protected TensorArena arena;
+
+    /**
+     * Sets the storage type of the tensors this layer allocates. Called by the model before
+     * {@link #setInDimensions(int[])}.
+     */
+    public void setDType(DType dtype) {
+        this.dtype = dtype;
+    }
+
+    /**
+     * Sets the arena that temporaries are drawn from while learning. Set by the learning rule,
+     * which reclaims them every step, so outputs and deltas produced while learning are only valid
+     * until the next step.
+     */
+    public void setArena(TensorArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Zeroed tensor in this layer's dtype, drawn from the arena while learning.
+     */
+    protected Tensor temporary(int... shape) {
+        if (learningOn && arena != null) {
+            return arena.zeros(dtype, shape);
+        }
+        return Tensor.zeros(dtype, shape);
+    }
+
+    /**
+     * Shape of a batch of {@code batch} samples with the given dimensions.
+     */
+    protected static int[] batchShape(int[] dimensions, int batch) {
+        int[] shape = dimensions.clone();
+        shape[0] = batch;
+        return shape;
+    }
 
     public void learning(boolean on) {
         this.learningOn = on;
@@ -14,12 +54,31 @@ public abstract class Layer {
         return learningOn;
     }
 
+    /**
+     * In and out dimensions describe a single sample and start with a 1, e.g. {1, features}.
+     */
     public abstract void setInDimensions(int[] inDimensions);
 
     public abstract int[] getOutDimensions();
 
+    /**
+     * Takes a batch of samples stacked along the first dimension, [N, ...], and returns the batch
+     * of outputs in the same order. Recurrent layers step through one sample at a time and only
+     * take N = 1.
+     */
     public abstract Tensor feedForward(Tensor in);
 
+    /**
+     * Whether every sample of a batch is treated on its own, so feeding a batch gives the same
+     * outputs as feeding its samples one by one.
+     */
+    public boolean independentSamples() {
+        return true;
+    }
+
+    /**
+     * Takes the error of the batch last fed forward, shaped like its output.
+     */
     public abstract Tensor getDelta(Tensor outputError);
 
     public abstract void initializeWeights();
@@ -18,22 +18,24 @@ public class Softmax extends Layer {
 
     @Override
     public Tensor feedForward(Tensor tensor) {
-        return softmax(tensor.get(1, new int[]{0, 0}));
-    }
-
-    private Tensor softmax(double[] in) {
-        double sum = 0;
-        double max = max(in);
-        double[] expValues = new double[IN];
-        for (int i = 0; i < IN; i++) {
-            double value = Math.exp(in[i] - max);
-            expValues[i] = value;
-            sum += value;
-        }
-        for (int i = 0; i < IN; i++) {
-            in[i] = expValues[i] / sum;
+        int batch = tensor.getShape()[0];
+        Tensor out = temporary(batch, IN);
+        for (int n = 0; n < batch; n++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < IN; i++) {
+                max = Math.max(tensor.get2(n, i), max);
+            }
+            double sum = 0;
+            for (int i = 0; i < IN; i++) {
+                double value = Math.exp(tensor.get2(n, i) - max);
+                out.set2(n, i, value);
+                sum += value;
+            }
+            for (int i = 0; i < IN; i++) {
+                out.set2(n, i, out.get2(n, i) / sum);
+            }
         }
-        return new Tensor(in, 1, IN);
+        return out;
     }
 
     @Override
@@ -45,11 +47,4 @@ public class Softmax extends Layer {
         return outputError;
     }
 
-    private static double max(double[] values) {
-        double max = Double.NEGATIVE_INFINITY;
-        for (int i = 0; i < values.length; i++) {
-            max = Math.max(values[i], max);
-        }
-        return max;
-    }
 }
@@ -0,0 +1,107 @@
+package xenonn.nn.layer.conv;
+
+import xenonn.math.DType;
+import xenonn.math.Tensor;
+
+/**
+ * Averages every window. Padding is left out of the average, so windows overlapping the edge
+ * average only the inputs they cover.
+ */
+public class AveragePooling2D extends Pooling2D {
+
+    public AveragePooling2D(int poolSize) {
+        this(poolSize, poolSize, 0);
+    }
+
+    public AveragePooling2D(int poolSize, int stride, int padding) {
+        super(poolSize, stride, padding);
+    }
+
+    @Override
+    public Tensor feedForward(Tensor in) {
+        int batch = batch(in);
+        Tensor input = flat(in);
+        Tensor out = temporary(batch, OUT_X, OUT_Y, IN_IMAGES);
+        boolean single = dtype == DType.FLOAT32;
+        double[] values = single ? null : input.getAll();
+        double[] outValues = single ? null : out.getAll();
+        float[] floatValues = single ? input.getAllFloat() : null;
+        float[] floatOutValues = single ? out.getAllFloat() : null;
+        int outOffset = 0;
+        for (int i = 0; i < IN_IMAGES; i++) {
+            for (int y = 0; y < OUT_Y; y++) {
+                int yStart = Math.max(windowStart(y), 0);
+                int yEnd = Math.min(windowStart(y) + POOL_SIZE, IN_Y);
+                for (int x = 0; x < OUT_X; x++) {
+                    int xStart = Math.max(windowStart(x), 0);
+                    int xEnd = Math.min(windowStart(x) + POOL_SIZE, IN_X);
+                    double scale = 1.0 / ((xEnd - xStart) * (yEnd - yStart));
+                    for (int imageY = yStart; imageY < yEnd; imageY++) {
+                        for (int imageX = xStart; imageX < xEnd; imageX++) {
+                            int inOffset = (imageX + IN_X * (imageY + IN_Y * i)) * batch;
+                            if (single) {
+                                KERNELS.add(floatValues, inOffset, floatOutValues, outOffset, floatOutValues, outOffset, batch);
+                            } else {
+                                KERNELS.add(values, inOffset, outValues, outOffset, outValues, outOffset, batch);
+                            }
+                        }
+                    }
+                    if (single) {
+                        KERNELS.multiply(floatOutValues, outOffset, scale, floatOutValues, outOffset, batch);
+                    } else {
+                        KERNELS.multiply(outValues, outOffset, scale, outValues, outOffset, batch);
+                    }
+                    outOffset += batch;
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Scales every window's batch run of errors once, then adds it to each input of the window.
+     */
+    @Override
+    public Tensor getDelta(Tensor outputError) {
+        int batch = outputError.getShape()[0];
+        Tensor error = flat(outputError);
+        Tensor scaled = temporary(batch, OUT_X, OUT_Y, IN_IMAGES);
+        Tensor delta = temporary(batch, IN_X, IN_Y, IN_IMAGES);
+        boolean single = dtype == DType.FLOAT32;
+        double[] errors = single ? null : error.getAll();
+        double[] scaledErrors = single ? null : scaled.getAll();
+        double[] deltas = single ? null : delta.getAll();
+        float[] floatErrors = single ? error.getAllFloat() : null;
+        float[] floatScaledErrors = single ? scaled.getAllFloat() : null;
+        float[] floatDeltas = single ? delta.getAllFloat() : null;
+        int outOffset = 0;
+        for (int i = 0; i < IN_IMAGES; i++) {
+            for (int y = 0; y < OUT_Y; y++) {
+                int yStart = Math.max(windowStart(y), 0);
+                int yEnd = Math.min(windowStart(y) + POOL_SIZE, IN_Y);
+                for (int x = 0; x < OUT_X; x++) {
+                    int xStart = Math.max(windowStart(x), 0);
+                    int xEnd = Math.min(windowStart(x) + POOL_SIZE, IN_X);
+                    double scale = 1.0 / ((xEnd - xStart) * (yEnd - yStart));
+                    if (single) {
+                        KERNELS.multiply(floatErrors, outOffset, scale, floatScaledErrors, outOffset, batch);
+                    } else {
+                        KERNELS.multiply(errors, outOffset, scale, scaledErrors, outOffset, batch);
+                    }
+                    for (int imageY = yStart; imageY < yEnd; imageY++) {
+                        for (int imageX = xStart; imageX < xEnd; imageX++) {
+                            int inOffset = (imageX + IN_X * (imageY + IN_Y * i)) * batch;
+                            if (single) {
+                                KERNELS.add(floatDeltas, inOffset, floatScaledErrors, outOffset, floatDeltas, inOffset, batch);
+                            } else {
+                                KERNELS.add(deltas, inOffset, scaledErrors, outOffset, deltas, inOffset, batch);
+                            }
+                        }
+                    }
+                    outOffset += batch;
+                }
+            }
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,219 @@
+package xenonn.nn.layer.conv;
+
+import xenonn.math.Parallel;
+import xenonn.math.Tensor;
+import xenonn.nn.initialization.HeInitializerNormal;
+import xenonn.nn.initialization.Initializer;
+import xenonn.nn.layer.Layer;
+import xenonn.nn.layer.type.Trainable;
+
+/**
+ * Convolution over the time axis of {1, length, channels} sequences, producing NUM_FILTERS
+ * channels. Output step t reads input steps t + k * DILATION for k below KERNEL_SIZE. A causal
+ * convolution pads the start of the sequence with (KERNEL_SIZE - 1) * DILATION zeros instead, so
+ * output step t only reads steps up to t and the length is kept.
+ * <p>
+ * Every pass is a matrix product over all steps of the batch at once: the input is gathered into
+ * a [batch * OUT_LENGTH, KERNEL_SIZE * IN_CHANNELS] patch matrix and multiplied by the kernel.
+ */
+public class Convolution1D extends Layer implements Trainable {
+
+    private int IN_LENGTH;
+    private int IN_CHANNELS;
+
+    private final int NUM_FILTERS;
+    private final int KERNEL_SIZE;
+    private final int DILATION;
+
+    private final boolean CAUSAL;
+
+    private int PADDING;
+    private int OUT_LENGTH;
+
+    private final Initializer INITIALIZER;
+
+    private Tensor[] weights;
+
+    private Tensor columns;
+    private Tensor outputError;
+
+    private Tensor[] gradients;
+
+    private int[][] weightShape;
+
+    public Convolution1D(int numberOfFilters, int kernelSize) {
+        this(numberOfFilters, kernelSize, 1, false);
+    }
+
+    public Convolution1D(int numberOfFilters, int kernelSize, int dilation, boolean causal) {
+        this(numberOfFilters, kernelSize, dilation, causal, new HeInitializerNormal());
+    }
+
+    public Convolution1D(int numberOfFilters, int kernelSize, int dilation, boolean causal, Initializer initializer) {
+        if (kernelSize < 1 || dilation < 1) {
+            throw new RuntimeException("Kernel size and dilation must be positive");
+        }
+        NUM_FILTERS = numberOfFilters;
+        KERNEL_SIZE = kernelSize;
+        DILATION = dilation;
+        CAUSAL = causal;
+
+        INITIALIZER = initializer;
+    }
+
+    @Override
+    public void setInDimensions(int[] inDimensions) {
+        IN_LENGTH = inDimensions[1];
+        IN_CHANNELS = inDimensions.length == 3 ? inDimensions[2] : 1;
+        int span = (KERNEL_SIZE - 1) * DILATION;
+        PADDING = CAUSAL ? span : 0;
+        OUT_LENGTH = IN_LENGTH + PADDING - span;
+        if (OUT_LENGTH < 1) {
+            throw new RuntimeException("Kernel out of bounds");
+        }
+        weightShape = new int[][]{{KERNEL_SIZE, IN_CHANNELS, NUM_FILTERS}, {1, NUM_FILTERS}};
+        weights = new Tensor[]{Tensor.zeros(dtype, weightShape[0]), Tensor.zeros(dtype, weightShape[1])};
+        gradients = new Tensor[]{Tensor.zeros(dtype, weightShape[0]), Tensor.zeros(dtype, weightShape[1])};
+    }
+
+    @Override
+    public int[] getOutDimensions() {
+        return new int[]{1, OUT_LENGTH, NUM_FILTERS};
+    }
+
+    @Override
+    public void initializeWeights() {
+        if (INITIALIZER != null) {
+            INITIALIZER.initialize(weights[0]);
+        }
+    }
+
+    @Override
+    public Tensor feedForward(Tensor in) {
+        int batch = in.size() / (IN_LENGTH * IN_CHANNELS);
+        in.reshape(batch, IN_LENGTH, IN_CHANNELS);
+        Tensor out = temporary(batch, OUT_LENGTH, NUM_FILTERS);
+        Tensor value = Tensor.reshape(out, batch * OUT_LENGTH, NUM_FILTERS);
+        Tensor.dotProductInto(patches(in, batch), kernelMatrix(weights[0]), value);
+        value.add(weights[1]);
+        return out;
+    }
+
+    /**
+     * Patch matrix of {@code in}, kept in {@code columns} for the gradient pass while learning.
+     */
+    private Tensor patches(Tensor in, int batch) {
+        int rows = batch * OUT_LENGTH;
+        Tensor patches;
+        if (learningOn) {
+            if (columns == null || columns.getShape()[0] != rows) {
+                columns = Tensor.zeros(dtype, rows, patchSize());
+            }
+            patches = columns;
+        } else {
+            patches = Tensor.zeros(dtype, rows, patchSize());
+        }
+        im2col(in, patches, batch);
+        return patches;
+    }
+
+    private int patchSize() {
+        return KERNEL_SIZE * IN_CHANNELS;
+    }
+
+    private Tensor kernelMatrix(Tensor kernel) {
+        return Tensor.reshape(kernel, patchSize(), NUM_FILTERS);
+    }
+
+    /**
+     * Input step read by output step {@code t} through kernel tap {@code k}, negative inside the
+     * causal padding.
+     */
+    private int inStep(int t, int k) {
+        return t + k * DILATION - PADDING;
+    }
+
+    /**
+     * Row t * batch + n of {@code patches} holds the KERNEL_SIZE input steps of sample n that
+     * output step t reads, channel by channel. Padded values stay zero. Columns are filled in
+     * parallel.
+     */
+    private void im2col(Tensor in, Tensor patches, int batch) {
+        Parallel.forEach(patchSize(), (start, end) -> {
+            for (int column = start; column < end; column++) {
+                int k = column % KERNEL_SIZE;
+                int inC = column / KERNEL_SIZE;
+                for (int t = 0; t < OUT_LENGTH; t++) {
+                    int step = inStep(t, k);
+                    int row = t * batch;
+                    if (step < 0) {
+                        for (int n = 0; n < batch; n++) {
+                            patches.set2(row + n, column, 0);
+                        }
+                    } else {
+                        for (int n = 0; n < batch; n++) {
+                            patches.set2(row + n, column, in.get3(n, step, inC));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds each row of {@code patches} back onto the input steps it was gathered from, the adjoint
+     * of {@link #im2col(Tensor, Tensor, int)}. Taps of one channel overlap, so the work is split by
+     * channel only.
+     */
+    private void col2im(Tensor patches, Tensor sequence, int batch) {
+        Parallel.forEach(IN_CHANNELS, (start, end) -> {
+            for (int inC = start; inC < end; inC++) {
+                for (int k = 0; k < KERNEL_SIZE; k++) {
+                    int column = inC * KERNEL_SIZE + k;
+                    for (int t = 0; t < OUT_LENGTH; t++) {
+                        int step = inStep(t, k);
+                        if (step >= 0) {
+                            int row = t * batch;
+                            for (int n = 0; n < batch; n++) {
+                                sequence.add3(n, step, inC, patches.get2(row + n, column));
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public Tensor[] getWeights() {
+        return weights;
+    }
+
+    @Override
+    public int[][] weightShape() {
+        return weightShape;
+    }
+
+    @Override
+    public void setOutputError(Tensor outputError) {
+        this.outputError = outputError.copy();
+    }
+
+    @Override
+    public Tensor[] getGradients() {
+        Tensor errors = Tensor.reshape(outputError, columns.getShape()[0], NUM_FILTERS);
+        Tensor.dotProductInto(Tensor.transpose(columns), errors, kernelMatrix(gradients[0]));
+        Tensor.sumToShapeInto(errors, gradients[1]);
+        return gradients;
+    }
+
+    @Override
+    public Tensor getDelta(Tensor outputError) {
+        int batch = outputError.getShape()[0];
+        Tensor errors = Tensor.reshape(outputError, batch * OUT_LENGTH, NUM_FILTERS);
+        Tensor patchErrors = Tensor.dotProductInto(errors, Tensor.transpose(kernelMatrix(weights[0])), temporary(batch * OUT_LENGTH, patchSize()));
+        Tensor delta = temporary(batch, IN_LENGTH, IN_CHANNELS);
+        col2im(patchErrors, delta, batch);
+        return delta;
+    }
+}
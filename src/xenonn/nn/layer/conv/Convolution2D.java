@@ -1,6 +1,9 @@
 package xenonn.nn.layer.conv;
 
+import xenonn.math.FFTConvolution;
+import xenonn.math.Parallel;
 import xenonn.math.Tensor;
+import xenonn.math.Winograd;
 import xenonn.nn.initialization.HeInitializerNormal;
 import xenonn.nn.initialization.Initializer;
 import xenonn.nn.layer.Layer;
@@ -8,6 +11,16 @@ import xenonn.nn.layer.type.Trainable;
 
 public class Convolution2D extends Layer implements Trainable {
 
+    /**
+     * Below this many input channels the Winograd tile transforms cost more than they save.
+     */
+    private static final int WINOGRAD_MIN_CHANNELS = 16;
+
+    /**
+     * Rough cost of one spectrum operation relative to one multiply-add of a matrix product, used
+     * to pick between {@link ConvolutionAlgorithm#FFT} and {@link ConvolutionAlgorithm#IM2COL}.
+     */
+    private static final double FFT_COST = 6;
 
     private int IN_X;
     private int IN_Y;
@@ -23,11 +36,21 @@ public class Convolution2D extends Layer implements Trainable {
 
     private final Initializer INITIALIZER;
 
+    private ConvolutionAlgorithm algorithm = ConvolutionAlgorithm.AUTO;
 
     private Tensor[] kernel;
 
+    /**
+     * Winograd transforms of the filters for the output and of the flipped filters for the delta,
+     * null until needed. Dropped when the weights are initialized or {@link #weightsChanged()} is
+     * called.
+     */
+    private double[] winogradFilters;
+    private double[] winogradDeltaFilters;
+
     private Tensor outputError;
     private Tensor inputs;
+    private Tensor columns;
     private Tensor delta;
 
     private Tensor[] gradients;
@@ -54,6 +77,48 @@ public class Convolution2D extends Layer implements Trainable {
         INITIALIZER = initializer;
     }
 
+    /**
+     * Selects how the convolution is computed, {@link ConvolutionAlgorithm#AUTO} by default.
+     * Every algorithm gives the same results up to rounding.
+     */
+    public void setAlgorithm(ConvolutionAlgorithm algorithm) {
+        if (algorithm == ConvolutionAlgorithm.WINOGRAD && KERNEL_SIZE != 3) {
+            throw new RuntimeException("Winograd needs a 3x3 kernel");
+        }
+        this.algorithm = algorithm;
+    }
+
+    public ConvolutionAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    private ConvolutionAlgorithm algorithm() {
+        if (algorithm != ConvolutionAlgorithm.AUTO) {
+            return algorithm;
+        }
+        if (KERNEL_SIZE == 3 && IN_IMAGES >= WINOGRAD_MIN_CHANNELS) {
+            return ConvolutionAlgorithm.WINOGRAD;
+        }
+        if (fftCost() < im2colCost()) {
+            return ConvolutionAlgorithm.FFT;
+        }
+        return ConvolutionAlgorithm.IM2COL;
+    }
+
+    /**
+     * Multiply-adds of one sample's forward pass through im2col.
+     */
+    private double im2colCost() {
+        return (double) OUT_X * OUT_Y * patchSize() * NUM_FILTERS;
+    }
+
+    /**
+     * Operations of one sample's forward pass through FFT.
+     */
+    private double fftCost() {
+        return FFT_COST * FFTConvolution.cost(IN_X, IN_Y, IN_IMAGES, KERNEL_SIZE, NUM_FILTERS, OUT_X, OUT_Y);
+    }
+
     @Override
     public void setInDimensions(int[] inDimensions) {
         IN_X = inDimensions[1];
@@ -72,11 +137,16 @@ public class Convolution2D extends Layer implements Trainable {
         int[] kernelShape = new int[]{KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES};
         int[] biasShape = new int[]{IN_IMAGES};
         for (int i = 0; i < kernel.length; i += 2) {
-            kernel[i] = Tensor.zeros(KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES);
-            kernel[i + 1] = Tensor.zeros(IN_IMAGES);
+            kernel[i] = Tensor.zeros(dtype, KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES);
+            kernel[i + 1] = Tensor.zeros(dtype, IN_IMAGES);
+            gradients[i] = Tensor.zeros(dtype, KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES);
+            gradients[i + 1] = Tensor.zeros(dtype, IN_IMAGES);
             weightShape[i] = kernelShape;
             weightShape[i + 1] = biasShape;
         }
+        columns = null;
+        winogradFilters = null;
+        winogradDeltaFilters = null;
     }
 
     @Override
@@ -91,38 +161,200 @@ public class Convolution2D extends Layer implements Trainable {
                 INITIALIZER.initialize(kernel[i]);
             }
         }
+        winogradFilters = null;
+        winogradDeltaFilters = null;
     }
 
     @Override
     public Tensor feedForward(Tensor in) {
-        in.reshape(1, IN_X, IN_Y, IN_IMAGES);
-        if (learningOn) {
-            inputs = in.copy();
+        int batch = in.size() / (IN_X * IN_Y * IN_IMAGES);
+        in.reshape(batch, IN_X, IN_Y, IN_IMAGES);
+        Tensor out = Tensor.zeros(dtype, batch, OUT_X, OUT_Y, NUM_FILTERS);
+        ConvolutionAlgorithm algorithm = algorithm();
+        if (algorithm == ConvolutionAlgorithm.IM2COL) {
+            feedForwardIm2col(in, out, batch);
+        } else {
+            if (learningOn) {
+                inputs = in.copy();
+            }
+            if (algorithm == ConvolutionAlgorithm.WINOGRAD) {
+                feedForwardWinograd(in, out, batch);
+            } else if (algorithm == ConvolutionAlgorithm.FFT) {
+                feedForwardFFT(in, out, batch);
+            } else {
+                feedForwardDirect(in, out, batch);
+            }
         }
-        Tensor out = Tensor.zeros(1, OUT_X, OUT_Y, NUM_FILTERS);
-        for (int inF = 0; inF < IN_IMAGES; inF++) {
-            for (int outF = 0; outF < NUM_FILTERS; outF++) {
-                int kernelIndex = outF * 2;
-                for (int x = 0; x < OUT_X; x++) {
-                    for (int y = 0; y < OUT_Y; y++) {
-                        double value = 0;
-                        for (int kx = 0; kx < KERNEL_SIZE; kx++) {
-                            for (int ky = 0; ky < KERNEL_SIZE; ky++) {
-                                int imageX = x + kx;
-                                int imageY = y + ky;
-                                if (!outOfBoundsForIn(imageX, imageY)) {
-                                    value += in.get(0, imageX, imageY) * kernel[kernelIndex].get(kx, ky, inF);
+        Tensor bias = Tensor.zeros(dtype, NUM_FILTERS);
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            bias.set1(outF, kernel[outF * 2 + 1].sum());
+        }
+        out.add(bias);
+        return out;
+    }
+
+    /**
+     * Split by output filter and sample, each task writing its own output plane.
+     */
+    private void feedForwardDirect(Tensor in, Tensor out, int batch) {
+        Parallel.forEach(NUM_FILTERS * batch, (start, end) -> {
+            for (int index = start; index < end; index++) {
+                int n = index % batch;
+                int outF = index / batch;
+                Tensor filter = kernel[outF * 2];
+                for (int inF = 0; inF < IN_IMAGES; inF++) {
+                    for (int x = 0; x < OUT_X; x++) {
+                        for (int y = 0; y < OUT_Y; y++) {
+                            double value = 0;
+                            for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                                for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                                    int imageX = x + kx;
+                                    int imageY = y + ky;
+                                    if (!outOfBoundsForIn(imageX, imageY)) {
+                                        value += in.get4(n, imageX, imageY, inF) * filter.get3(kx, ky, inF);
+                                    }
                                 }
                             }
+                            out.add4(n, x, y, outF, value);
                         }
-                        int[] indices = new int[]{0, x, y, outF};
-                        out.set(indices, out.get(indices) + value + kernel[kernelIndex + 1].get(inF));
                     }
                 }
             }
+        });
+    }
+
+    private void feedForwardIm2col(Tensor in, Tensor out, int batch) {
+        Tensor.dotProductInto(patches(in, batch), filterMatrix(), Tensor.reshape(out, batch * OUT_X * OUT_Y, NUM_FILTERS));
+    }
+
+    private void feedForwardWinograd(Tensor in, Tensor out, int batch) {
+        if (winogradFilters == null) {
+            winogradFilters = Winograd.transformFilters(filterArray(false), IN_IMAGES, NUM_FILTERS);
         }
+        double[] value = new double[out.size()];
+        Winograd.correlate(in.toArray(), batch, IN_X, IN_Y, IN_IMAGES, 0, winogradFilters, NUM_FILTERS, value, OUT_X, OUT_Y);
+        Tensor.copyInto(new Tensor(value, out.getShape()), out);
+    }
 
-        return out;
+    private void feedForwardFFT(Tensor in, Tensor out, int batch) {
+        double[] value = new double[out.size()];
+        FFTConvolution.correlate(in.toArray(), batch, IN_X, IN_Y, IN_IMAGES, filterArray(false), KERNEL_SIZE, NUM_FILTERS, value, OUT_X, OUT_Y);
+        Tensor.copyInto(new Tensor(value, out.getShape()), out);
+    }
+
+    /**
+     * Patch matrix of {@code in}, kept in {@code columns} for the gradient pass while learning.
+     */
+    private Tensor patches(Tensor in, int batch) {
+        int rows = batch * OUT_X * OUT_Y;
+        Tensor patches;
+        if (learningOn) {
+            if (columns == null || columns.getShape()[0] != rows) {
+                columns = Tensor.zeros(dtype, rows, patchSize());
+            }
+            patches = columns;
+        } else {
+            patches = Tensor.zeros(dtype, rows, patchSize());
+        }
+        im2col(in, patches, batch);
+        return patches;
+    }
+
+    private int patchSize() {
+        return KERNEL_SIZE * KERNEL_SIZE * IN_IMAGES;
+    }
+
+    /**
+     * Filters as the columns of a [KERNEL_SIZE * KERNEL_SIZE * IN_IMAGES, NUM_FILTERS] matrix.
+     */
+    private Tensor filterMatrix() {
+        int size = patchSize();
+        Tensor filters = Tensor.zeros(dtype, size, NUM_FILTERS);
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            Tensor.copyInto(Tensor.reshape(kernel[outF * 2], size, 1), Tensor.slice(filters, 1, outF, outF + 1));
+        }
+        return filters;
+    }
+
+    /**
+     * Filters as a [KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES, NUM_FILTERS] array. Flipped filters are
+     * rotated by 180 degrees with the channel roles swapped, [KERNEL_SIZE, KERNEL_SIZE,
+     * NUM_FILTERS, IN_IMAGES], which maps output errors back onto the input.
+     */
+    private double[] filterArray(boolean flipped) {
+        int size = patchSize();
+        int area = KERNEL_SIZE * KERNEL_SIZE;
+        double[] filters = new double[size * NUM_FILTERS];
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            double[] filter = kernel[outF * 2].toArray();
+            if (!flipped) {
+                System.arraycopy(filter, 0, filters, outF * size, size);
+                continue;
+            }
+            for (int inF = 0; inF < IN_IMAGES; inF++) {
+                for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                    for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                        int flippedIndex = (KERNEL_SIZE - 1 - kx) + KERNEL_SIZE * (KERNEL_SIZE - 1 - ky);
+                        filters[kx + KERNEL_SIZE * ky + area * (outF + NUM_FILTERS * inF)] = filter[flippedIndex + area * inF];
+                    }
+                }
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * Writes the patch under each output position as a row of {@code patches}, rows ordered like
+     * the output's [batch, OUT_X, OUT_Y] positions and columns like a kernel's values. Taps past
+     * the input edge are never written, so they keep the zero the matrix was allocated with.
+     * Columns are filled in parallel.
+     */
+    private void im2col(Tensor in, Tensor patches, int batch) {
+        Parallel.forEach(patchSize(), (start, end) -> {
+            for (int column = start; column < end; column++) {
+                int kx = column % KERNEL_SIZE;
+                int ky = column / KERNEL_SIZE % KERNEL_SIZE;
+                int inF = column / (KERNEL_SIZE * KERNEL_SIZE);
+                int xEnd = Math.min(OUT_X, IN_X - kx);
+                int yEnd = Math.min(OUT_Y, IN_Y - ky);
+                for (int y = 0; y < yEnd; y++) {
+                    for (int x = 0; x < xEnd; x++) {
+                        int row = (y * OUT_X + x) * batch;
+                        for (int n = 0; n < batch; n++) {
+                            patches.set2(row + n, column, in.get4(n, x + kx, y + ky, inF));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds each row of {@code patches} back onto the input positions it was gathered from, the
+     * adjoint of {@link #im2col(Tensor, Tensor, int)}. Overlapping patches of one channel add to
+     * the same values, so the work is split by channel only.
+     */
+    private void col2im(Tensor patches, Tensor image, int batch) {
+        Parallel.forEach(IN_IMAGES, (start, end) -> {
+            for (int inF = start; inF < end; inF++) {
+                int column = inF * KERNEL_SIZE * KERNEL_SIZE;
+                for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                    for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                        int xEnd = Math.min(OUT_X, IN_X - kx);
+                        int yEnd = Math.min(OUT_Y, IN_Y - ky);
+                        for (int y = 0; y < yEnd; y++) {
+                            for (int x = 0; x < xEnd; x++) {
+                                int row = (y * OUT_X + x) * batch;
+                                for (int n = 0; n < batch; n++) {
+                                    image.add4(n, x + kx, y + ky, inF, patches.get2(row + n, column));
+                                }
+                            }
+                        }
+                        column++;
+                    }
+                }
+            }
+        });
     }
 
     @Override
@@ -130,6 +362,12 @@ public class Convolution2D extends Layer implements Trainable {
         return kernel;
     }
 
+    @Override
+    public void weightsChanged() {
+        winogradFilters = null;
+        winogradDeltaFilters = null;
+    }
+
 
     @Override
     public int[][] weightShape() {
@@ -143,40 +381,88 @@ public class Convolution2D extends Layer implements Trainable {
 
     @Override
     public Tensor[] getGradients() {
-        for (int i = 0; i < gradients.length; i += 2) {
-            gradients[i] = Tensor.zeros(KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES);
-            gradients[i + 1] = Tensor.zeros(IN_IMAGES);
+        int batch = outputError.getShape()[0];
+        ConvolutionAlgorithm algorithm = algorithm();
+        if (algorithm == ConvolutionAlgorithm.IM2COL) {
+            gradientsIm2col(columns, batch);
+        } else if (algorithm == ConvolutionAlgorithm.WINOGRAD) {
+            gradientsIm2col(patches(inputs, batch), batch);
+        } else if (algorithm == ConvolutionAlgorithm.FFT) {
+            gradientsFFT(batch);
+        } else {
+            gradientsDirect(batch);
         }
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            double biasGradient = 0;
+            for (int n = 0; n < batch; n++) {
+                for (int x = 0; x < OUT_X; x++) {
+                    for (int y = 0; y < OUT_Y; y++) {
+                        biasGradient += outputError.get4(n, x, y, outF);
+                    }
+                }
+            }
+            gradients[outF * 2 + 1].zero();
+            gradients[outF * 2 + 1].add(biasGradient);
+        }
+        return gradients;
+    }
 
-        for (int inF = 0; inF < IN_IMAGES; inF++) {
-            for (int outF = 0; outF < NUM_FILTERS; outF++) {
-                int kernelIndex = outF * 2;
-                int[] biasIndex = new int[]{inF};
+    /**
+     * Split by output and input filter, each task writing its own slice of one filter's gradient.
+     */
+    private void gradientsDirect(int batch) {
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            gradients[outF * 2].zero();
+        }
+        Parallel.forEach(NUM_FILTERS * IN_IMAGES, (start, end) -> {
+            for (int pair = start; pair < end; pair++) {
+                int inF = pair % IN_IMAGES;
+                int outF = pair / IN_IMAGES;
+                Tensor filterGradient = gradients[outF * 2];
                 for (int kx = 0; kx < KERNEL_SIZE; kx++) {
                     for (int ky = 0; ky < KERNEL_SIZE; ky++) {
-                        int[] kernelIndices = {kx, ky, inF};
-                        for (int x = 0; x < OUT_X; x++) {
-                            for (int y = 0; y < OUT_Y; y++) {
-                                int[] inImageIndex = {0, x + kx, y + ky, inF};
-                                int[] outImageIndex = {0, x, y, outF};
-                                if (!outOfBoundsForIn(inImageIndex[1], inImageIndex[2])) {
-                                    double currentOutputError = outputError.get(outImageIndex);
-                                    gradients[kernelIndex].add(kernelIndices, currentOutputError * inputs.get(inImageIndex));
-                                    gradients[kernelIndex + 1].add(biasIndex, currentOutputError);
+                        double gradient = 0;
+                        for (int n = 0; n < batch; n++) {
+                            for (int x = 0; x < OUT_X; x++) {
+                                for (int y = 0; y < OUT_Y; y++) {
+                                    if (!outOfBoundsForIn(x + kx, y + ky)) {
+                                        gradient += outputError.get4(n, x, y, outF) * inputs.get4(n, x + kx, y + ky, inF);
+                                    }
                                 }
                             }
                         }
+                        filterGradient.add3(kx, ky, inF, gradient);
                     }
                 }
             }
+        });
+    }
+
+    private void gradientsIm2col(Tensor patches, int batch) {
+        int rows = batch * OUT_X * OUT_Y;
+        Tensor errors = Tensor.reshape(outputError, rows, NUM_FILTERS);
+        Tensor filterGradients = Tensor.dotProduct(Tensor.transpose(patches), errors);
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            Tensor column = Tensor.slice(filterGradients, 1, outF, outF + 1);
+            Tensor.copyInto(Tensor.reshape(column, KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES), gradients[outF * 2]);
+        }
+    }
+
+    private void gradientsFFT(int batch) {
+        int size = patchSize();
+        double[] value = new double[size * NUM_FILTERS];
+        FFTConvolution.filterGradients(inputs.toArray(), IN_X, IN_Y, IN_IMAGES, outputError.toArray(), OUT_X, OUT_Y, NUM_FILTERS, batch, KERNEL_SIZE, value);
+        Tensor filterGradients = new Tensor(value, size, NUM_FILTERS);
+        for (int outF = 0; outF < NUM_FILTERS; outF++) {
+            Tensor column = Tensor.slice(filterGradients, 1, outF, outF + 1);
+            Tensor.copyInto(Tensor.reshape(column, KERNEL_SIZE, KERNEL_SIZE, IN_IMAGES), gradients[outF * 2]);
         }
-        return gradients;
     }
 
     /*
     @Override
     public Tensor getDelta(Tensor outputError) {
-        delta = Tensor.zeros(1, IN_X, IN_Y, IN_IMAGES);
+        delta = Tensor.zeros(dtype, 1, IN_X, IN_Y, IN_IMAGES);
         for (int inF = 0; inF < IN_IMAGES; inF++) {
             for (int outF = 0; outF < NUM_FILTERS; outF++) {
                 int kernelIndex = outF * 2;
@@ -203,29 +489,67 @@ public class Convolution2D extends Layer implements Trainable {
     */
     @Override
     public Tensor getDelta(Tensor outputError) {
-        delta = Tensor.zeros(1, IN_X, IN_Y, IN_IMAGES);
-        for (int inF = 0; inF < IN_IMAGES; inF++) {
-            for (int outF = 0; outF < NUM_FILTERS; outF++) {
-                int kernelIndex = outF * 2;
-                for (int kx = 0; kx < KERNEL_SIZE; kx++) {
-                    for (int ky = 0; ky < KERNEL_SIZE; ky++) {
-                        int[] kernelIndices = {kx, ky, inF};
-                        double kernelValue = kernel[kernelIndex].get(kernelIndices);
-                        for (int x = 0; x < OUT_X; x++) {
-                            for (int y = 0; y < OUT_Y; y++) {
-                                int[] inImageIndex = {0, x + kx, y + ky, inF};
-                                int[] outImageIndex = {0, x, y, outF};
-                                if (!outOfBoundsForIn(inImageIndex[1], inImageIndex[2])) {
-                                    double currentDelta = outputError.get(outImageIndex) * kernelValue;
-                                    delta.add(inImageIndex, currentDelta);
+        int batch = outputError.getShape()[0];
+        delta = Tensor.zeros(dtype, batch, IN_X, IN_Y, IN_IMAGES);
+        ConvolutionAlgorithm algorithm = algorithm();
+        if (algorithm == ConvolutionAlgorithm.IM2COL) {
+            deltaIm2col(outputError, batch);
+        } else if (algorithm == ConvolutionAlgorithm.WINOGRAD) {
+            deltaWinograd(outputError, batch);
+        } else if (algorithm == ConvolutionAlgorithm.FFT) {
+            deltaFFT(outputError, batch);
+        } else {
+            deltaDirect(outputError, batch);
+        }
+        return delta;
+    }
+
+    private void deltaIm2col(Tensor outputError, int batch) {
+        Tensor errors = Tensor.reshape(outputError, batch * OUT_X * OUT_Y, NUM_FILTERS);
+        col2im(Tensor.dotProduct(errors, Tensor.transpose(filterMatrix())), delta, batch);
+    }
+
+    private void deltaWinograd(Tensor outputError, int batch) {
+        if (winogradDeltaFilters == null) {
+            winogradDeltaFilters = Winograd.transformFilters(filterArray(true), NUM_FILTERS, IN_IMAGES);
+        }
+        double[] value = new double[delta.size()];
+        Winograd.correlate(outputError.toArray(), batch, OUT_X, OUT_Y, NUM_FILTERS, KERNEL_SIZE - 1, winogradDeltaFilters, IN_IMAGES, value, IN_X, IN_Y);
+        Tensor.copyInto(new Tensor(value, delta.getShape()), delta);
+    }
+
+    private void deltaFFT(Tensor outputError, int batch) {
+        double[] value = new double[delta.size()];
+        FFTConvolution.convolve(outputError.toArray(), batch, OUT_X, OUT_Y, NUM_FILTERS, filterArray(false), KERNEL_SIZE, IN_IMAGES, value, IN_X, IN_Y);
+        Tensor.copyInto(new Tensor(value, delta.getShape()), delta);
+    }
+
+    /**
+     * Every output filter adds to every input plane, so the work is split by input filter and
+     * sample instead, leaving each task the only writer of its delta plane.
+     */
+    private void deltaDirect(Tensor outputError, int batch) {
+        Parallel.forEach(IN_IMAGES * batch, (start, end) -> {
+            for (int index = start; index < end; index++) {
+                int n = index % batch;
+                int inF = index / batch;
+                for (int outF = 0; outF < NUM_FILTERS; outF++) {
+                    Tensor filter = kernel[outF * 2];
+                    for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                        for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                            double kernelValue = filter.get3(kx, ky, inF);
+                            for (int x = 0; x < OUT_X; x++) {
+                                for (int y = 0; y < OUT_Y; y++) {
+                                    if (!outOfBoundsForIn(x + kx, y + ky)) {
+                                        delta.add4(n, x + kx, y + ky, inF, outputError.get4(n, x, y, outF) * kernelValue);
+                                    }
                                 }
                             }
                         }
                     }
                 }
             }
-        }
-        return delta;
+        });
     }
 
 
@@ -0,0 +1,31 @@
+package xenonn.nn.layer.conv;
+
+/**
+ * How {@link Convolution2D} computes its outputs, weight gradients and input deltas.
+ */
+public enum ConvolutionAlgorithm {
+    /**
+     * Picks {@link #WINOGRAD} for 3x3 kernels over at least 16 input channels, otherwise
+     * {@link #FFT} when its estimated cost is lower than {@link #IM2COL}'s, as for large kernels.
+     */
+    AUTO,
+    /**
+     * Nested loops over every filter tap, kept as the reference implementation.
+     */
+    DIRECT,
+    /**
+     * Lays every input patch out as a row of a matrix (im2col) so that each pass is a single
+     * matrix product.
+     */
+    IM2COL,
+    /**
+     * Winograd F(2x2, 3x3) for the output and the input delta of 3x3 kernels; weight gradients
+     * go through im2col.
+     */
+    WINOGRAD,
+    /**
+     * Products of zero padded image and filter spectra for the output, the weight gradients and
+     * the input delta. Its cost hardly depends on the kernel size.
+     */
+    FFT
+}
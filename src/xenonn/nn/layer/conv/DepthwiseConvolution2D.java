@@ -0,0 +1,211 @@
+package xenonn.nn.layer.conv;
+
+import xenonn.math.Parallel;
+import xenonn.math.Tensor;
+import xenonn.nn.initialization.HeInitializerNormal;
+import xenonn.nn.initialization.Initializer;
+import xenonn.nn.layer.Layer;
+import xenonn.nn.layer.type.Trainable;
+
+/**
+ * Convolves every input channel with its own DEPTH_MULTIPLIER filters, without mixing channels.
+ * Output channel c * DEPTH_MULTIPLIER + m comes from input channel c and filter m. Padding works
+ * like in {@link Convolution2D}.
+ * <p>
+ * Each output value only takes KERNEL_SIZE^2 multiply-adds, too few for a matrix product to
+ * batch, so the passes are direct loops split across the {@link Parallel} pool by channel.
+ */
+public class DepthwiseConvolution2D extends Layer implements Trainable {
+
+    private int IN_X;
+    private int IN_Y;
+    private int IN_IMAGES;
+
+    private final int DEPTH_MULTIPLIER;
+    private final int KERNEL_SIZE;
+
+    private final boolean ZERO_PADDING;
+
+    private int OUT_X;
+    private int OUT_Y;
+    private int OUT_IMAGES;
+
+    private final Initializer INITIALIZER;
+
+    private Tensor[] weights;
+
+    private Tensor inputs;
+    private Tensor outputError;
+
+    private Tensor[] gradients;
+
+    private int[][] weightShape;
+
+    public DepthwiseConvolution2D(int kernelSize, boolean zeroPadding) {
+        this(1, kernelSize, zeroPadding);
+    }
+
+    public DepthwiseConvolution2D(int depthMultiplier, int kernelSize, boolean zeroPadding) {
+        this(depthMultiplier, kernelSize, zeroPadding, new HeInitializerNormal());
+    }
+
+    public DepthwiseConvolution2D(int depthMultiplier, int kernelSize, boolean zeroPadding, Initializer initializer) {
+        DEPTH_MULTIPLIER = depthMultiplier;
+        KERNEL_SIZE = kernelSize;
+        ZERO_PADDING = zeroPadding;
+
+        INITIALIZER = initializer;
+    }
+
+    @Override
+    public void setInDimensions(int[] inDimensions) {
+        IN_X = inDimensions[1];
+        IN_Y = inDimensions[2];
+        IN_IMAGES = inDimensions.length == 4 ? inDimensions[3] : 1;
+        if (ZERO_PADDING) {
+            OUT_X = IN_X;
+            OUT_Y = IN_Y;
+        } else {
+            OUT_X = IN_X - KERNEL_SIZE + 1;
+            OUT_Y = IN_Y - KERNEL_SIZE + 1;
+        }
+        OUT_IMAGES = IN_IMAGES * DEPTH_MULTIPLIER;
+        weightShape = new int[][]{{KERNEL_SIZE, KERNEL_SIZE, OUT_IMAGES}, {OUT_IMAGES}};
+        weights = new Tensor[]{Tensor.zeros(dtype, weightShape[0]), Tensor.zeros(dtype, weightShape[1])};
+        gradients = new Tensor[]{Tensor.zeros(dtype, weightShape[0]), Tensor.zeros(dtype, weightShape[1])};
+    }
+
+    @Override
+    public int[] getOutDimensions() {
+        return new int[]{1, OUT_X, OUT_Y, OUT_IMAGES};
+    }
+
+    @Override
+    public void initializeWeights() {
+        if (INITIALIZER != null) {
+            INITIALIZER.initialize(weights[0]);
+        }
+    }
+
+    @Override
+    public Tensor feedForward(Tensor in) {
+        int batch = in.size() / (IN_X * IN_Y * IN_IMAGES);
+        in.reshape(batch, IN_X, IN_Y, IN_IMAGES);
+        if (learningOn) {
+            inputs = in.copy();
+        }
+        Tensor out = temporary(batch, OUT_X, OUT_Y, OUT_IMAGES);
+        Tensor kernel = weights[0];
+        Tensor bias = weights[1];
+        Parallel.forEach(OUT_IMAGES, (start, end) -> {
+            for (int outF = start; outF < end; outF++) {
+                int inF = outF / DEPTH_MULTIPLIER;
+                double biasValue = bias.get1(outF);
+                for (int y = 0; y < OUT_Y; y++) {
+                    for (int x = 0; x < OUT_X; x++) {
+                        for (int n = 0; n < batch; n++) {
+                            double value = biasValue;
+                            for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                                for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                                    if (!outOfBoundsForIn(x + kx, y + ky)) {
+                                        value += in.get4(n, x + kx, y + ky, inF) * kernel.get3(kx, ky, outF);
+                                    }
+                                }
+                            }
+                            out.set4(n, x, y, outF, value);
+                        }
+                    }
+                }
+            }
+        });
+        return out;
+    }
+
+    @Override
+    public Tensor[] getWeights() {
+        return weights;
+    }
+
+    @Override
+    public int[][] weightShape() {
+        return weightShape;
+    }
+
+    @Override
+    public void setOutputError(Tensor outputError) {
+        this.outputError = outputError.copy();
+    }
+
+    @Override
+    public Tensor[] getGradients() {
+        int batch = outputError.getShape()[0];
+        Tensor kernelGradient = gradients[0];
+        Tensor biasGradient = gradients[1];
+        Parallel.forEach(OUT_IMAGES, (start, end) -> {
+            for (int outF = start; outF < end; outF++) {
+                int inF = outF / DEPTH_MULTIPLIER;
+                for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                    for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                        double gradient = 0;
+                        for (int y = 0; y < OUT_Y; y++) {
+                            for (int x = 0; x < OUT_X; x++) {
+                                if (!outOfBoundsForIn(x + kx, y + ky)) {
+                                    for (int n = 0; n < batch; n++) {
+                                        gradient += outputError.get4(n, x, y, outF) * inputs.get4(n, x + kx, y + ky, inF);
+                                    }
+                                }
+                            }
+                        }
+                        kernelGradient.set3(kx, ky, outF, gradient);
+                    }
+                }
+                double gradient = 0;
+                for (int y = 0; y < OUT_Y; y++) {
+                    for (int x = 0; x < OUT_X; x++) {
+                        for (int n = 0; n < batch; n++) {
+                            gradient += outputError.get4(n, x, y, outF);
+                        }
+                    }
+                }
+                biasGradient.set1(outF, gradient);
+            }
+        });
+        return gradients;
+    }
+
+    /**
+     * Split by input channel, whose task is the only one adding the errors of its
+     * DEPTH_MULTIPLIER output channels into its delta plane.
+     */
+    @Override
+    public Tensor getDelta(Tensor outputError) {
+        int batch = outputError.getShape()[0];
+        Tensor delta = temporary(batch, IN_X, IN_Y, IN_IMAGES);
+        Tensor kernel = weights[0];
+        Parallel.forEach(IN_IMAGES, (start, end) -> {
+            for (int inF = start; inF < end; inF++) {
+                for (int outF = inF * DEPTH_MULTIPLIER; outF < (inF + 1) * DEPTH_MULTIPLIER; outF++) {
+                    for (int ky = 0; ky < KERNEL_SIZE; ky++) {
+                        for (int kx = 0; kx < KERNEL_SIZE; kx++) {
+                            double kernelValue = kernel.get3(kx, ky, outF);
+                            for (int y = 0; y < OUT_Y; y++) {
+                                for (int x = 0; x < OUT_X; x++) {
+                                    if (!outOfBoundsForIn(x + kx, y + ky)) {
+                                        for (int n = 0; n < batch; n++) {
+                                            delta.add4(n, x + kx, y + ky, inF, outputError.get4(n, x, y, outF) * kernelValue);
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return delta;
+    }
+
+    private boolean outOfBoundsForIn(int x, int y) {
+        return x < 0 || y < 0 || x >= IN_X || y >= IN_Y;
+    }
+}
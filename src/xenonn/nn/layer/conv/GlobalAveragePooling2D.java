@@ -0,0 +1,54 @@
+package xenonn.nn.layer.conv;
+
+import xenonn.math.Tensor;
+import xenonn.nn.layer.Layer;
+
+/**
+ * Averages every channel over the whole image, turning [batch, x, y, channels] into
+ * [batch, channels]. A cheap replacement for flattening into a dense layer.
+ */
+public class GlobalAveragePooling2D extends Layer {
+
+    private int IN_X;
+    private int IN_Y;
+    private int IN_IMAGES;
+
+    public GlobalAveragePooling2D() {
+
+    }
+
+    public void initializeWeights() {
+
+    }
+
+    @Override
+    public void setInDimensions(int[] inDimensions) {
+        IN_X = inDimensions[1];
+        IN_Y = inDimensions[2];
+        IN_IMAGES = inDimensions.length == 4 ? inDimensions[3] : 1;
+    }
+
+    @Override
+    public int[] getOutDimensions() {
+        return new int[]{1, IN_IMAGES};
+    }
+
+    @Override
+    public Tensor feedForward(Tensor in) {
+        int area = IN_X * IN_Y;
+        int batch = in.size() / (area * IN_IMAGES);
+        Tensor out = temporary(batch, IN_IMAGES);
+        Tensor.sumToShapeInto(Tensor.reshape(in, batch, area, IN_IMAGES), Tensor.reshape(out, batch, 1, IN_IMAGES));
+        return out.multiply(1.0 / area);
+    }
+
+    @Override
+    public Tensor getDelta(Tensor outputError) {
+        int area = IN_X * IN_Y;
+        int batch = outputError.getShape()[0];
+        Tensor delta = temporary(batch, IN_X, IN_Y, IN_IMAGES);
+        Tensor spread = Tensor.reshape(delta, batch, area, IN_IMAGES);
+        Tensor.addInto(spread, Tensor.reshape(outputError, batch, 1, IN_IMAGES), spread);
+        return delta.multiply(1.0 / area);
+    }
+}
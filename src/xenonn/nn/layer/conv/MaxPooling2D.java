@@ -1,104 +1,110 @@
 package xenonn.nn.layer.conv;
 
+import xenonn.math.DType;
 import xenonn.math.Tensor;
-import xenonn.nn.layer.Layer;
 
-public class MaxPooling2D extends Layer {
+import java.util.Arrays;
 
+public class MaxPooling2D extends Pooling2D {
 
-    private int IN_X;
-    private int IN_Y;
-
-    private final int POOL_SIZE;
-
-    private int OUT_X;
-    private int OUT_Y;
-    private int OUT_IMAGES;
-
-    private Tensor weights;
+    /**
+     * Position x + IN_X * y of the winning input of every output cell, in the output's
+     * [batch, OUT_X, OUT_Y, IN_IMAGES] order.
+     */
+    private int[] winners;
 
+    /**
+     * Non-overlapping windows, trailing rows and columns that don't fill a window are dropped.
+     */
     public MaxPooling2D(int poolSize) {
-        POOL_SIZE = poolSize;
-    }
-
-    public void initializeWeights() {
-
+        this(poolSize, poolSize, 0);
     }
 
-    @Override
-    public void setInDimensions(int[] inDimensions) {
-        IN_X = inDimensions[1];
-        IN_Y = inDimensions[2];
-        if (IN_X % POOL_SIZE != 0 || IN_Y % POOL_SIZE != 0) {
-            throw new RuntimeException("Pool out of bounds");
-        }
-        OUT_X = IN_X / POOL_SIZE;
-        OUT_Y = IN_Y / POOL_SIZE;
-        OUT_IMAGES = inDimensions.length == 4 ? inDimensions[3] : 1;
-        weights = Tensor.zeros(IN_X, IN_Y, POOL_SIZE, POOL_SIZE, OUT_IMAGES);
-    }
-
-    @Override
-    public int[] getOutDimensions() {
-        return new int[]{1, OUT_X, OUT_Y, OUT_IMAGES};
+    public MaxPooling2D(int poolSize, int stride, int padding) {
+        super(poolSize, stride, padding);
     }
 
+    /**
+     * Starts every window's batch run from its first input and folds the rest in with
+     * {@link xenonn.math.Kernels#maxPosition}, so ties go to the first input as before.
+     */
     @Override
     public Tensor feedForward(Tensor in) {
-        if (learningOn) {
-            weights.zero();
+        int batch = batch(in);
+        int cells = batch * OUT_X * OUT_Y * IN_IMAGES;
+        if (winners == null || winners.length != cells) {
+            winners = new int[cells];
         }
-        Tensor out = Tensor.zeros(1, OUT_X, OUT_Y, OUT_IMAGES);
-        for (int i = 0; i < OUT_IMAGES; i++) {
-            for (int x = 0; x < IN_X; x += POOL_SIZE) {
-                for (int y = 0; y < IN_Y; y += POOL_SIZE) {
-                    double value = Double.NEGATIVE_INFINITY;
-                    int pixelX = -1;
-                    int pixelY = -1;
-                    for (int kx = 0; kx < POOL_SIZE; kx++) {
-                        for (int ky = 0; ky < POOL_SIZE; ky++) {
-                            int imageX = x + kx;
-                            int imageY = y + ky;
-                            double pixelValue = in.get(0, imageX, imageY, i);
-                            if (pixelValue > value) {
-                                value = pixelValue;
-                                pixelX = kx;
-                                pixelY = ky;
+        Tensor input = flat(in);
+        Tensor out = temporary(batch, OUT_X, OUT_Y, IN_IMAGES);
+        boolean single = dtype == DType.FLOAT32;
+        double[] values = single ? null : input.getAll();
+        double[] outValues = single ? null : out.getAll();
+        float[] floatValues = single ? input.getAllFloat() : null;
+        float[] floatOutValues = single ? out.getAllFloat() : null;
+        int outOffset = 0;
+        for (int i = 0; i < IN_IMAGES; i++) {
+            for (int y = 0; y < OUT_Y; y++) {
+                int yStart = Math.max(windowStart(y), 0);
+                int yEnd = Math.min(windowStart(y) + POOL_SIZE, IN_Y);
+                for (int x = 0; x < OUT_X; x++) {
+                    int xStart = Math.max(windowStart(x), 0);
+                    int xEnd = Math.min(windowStart(x) + POOL_SIZE, IN_X);
+                    for (int imageY = yStart; imageY < yEnd; imageY++) {
+                        for (int imageX = xStart; imageX < xEnd; imageX++) {
+                            int position = imageX + IN_X * imageY;
+                            int inOffset = (position + IN_X * IN_Y * i) * batch;
+                            if (imageX == xStart && imageY == yStart) {
+                                System.arraycopy(single ? floatValues : values, inOffset, single ? floatOutValues : outValues, outOffset, batch);
+                                Arrays.fill(winners, outOffset, outOffset + batch, position);
+                            } else if (single) {
+                                KERNELS.maxPosition(floatValues, inOffset, floatOutValues, outOffset, winners, outOffset, position, batch);
+                            } else {
+                                KERNELS.maxPosition(values, inOffset, outValues, outOffset, winners, outOffset, position, batch);
                             }
                         }
                     }
-                    if (Double.isInfinite(value)) {
-                        System.out.println(in);
-                    }
-                    if (learningOn) {
-                        weights.set(new int[]{x + pixelX, y + pixelY, pixelX, pixelY, i}, 1);
-                    }
-                    //System.out.println(Arrays.toString(new int[]{x + pixelX, y + pixelY, pixelX, pixelY}));
-                    out.set(new int[]{0, x / POOL_SIZE, y / POOL_SIZE, i}, value);
+                    outOffset += batch;
                 }
             }
         }
         return out;
     }
 
-
-
+    /**
+     * Scatters every output error onto its winner, a flat loop since the targets aren't contiguous.
+     */
     @Override
     public Tensor getDelta(Tensor outputError) {
-        Tensor delta = Tensor.zeros(1, IN_X, IN_Y, OUT_IMAGES);
-        for (int i = 0; i < OUT_IMAGES; i++) {
-            for (int x = 0; x < OUT_X; x++) {
-                for (int y = 0; y < OUT_Y; y++) {
-                    for (int kx = 0; kx < POOL_SIZE; kx++) {
-                        for (int ky = 0; ky < POOL_SIZE; ky++) {
-                            int imageX = x * POOL_SIZE + kx;
-                            int imageY = y * POOL_SIZE + ky;
-                            int[] indices = new int[]{0, x / POOL_SIZE, y / POOL_SIZE, i};
-                            delta.set(indices, delta.get(indices) + outputError.get(0, x, y, i) * weights.get(imageX, imageY, kx, ky, i));
-                        }
+        int batch = outputError.getShape()[0];
+        Tensor error = flat(outputError);
+        Tensor delta = temporary(batch, IN_X, IN_Y, IN_IMAGES);
+        int area = IN_X * IN_Y;
+        int cells = OUT_X * OUT_Y;
+        if (dtype == DType.FLOAT32) {
+            float[] errors = error.getAllFloat();
+            float[] deltas = delta.getAllFloat();
+            int cell = 0;
+            for (int i = 0; i < IN_IMAGES; i++) {
+                for (int c = 0; c < cells; c++) {
+                    for (int n = 0; n < batch; n++) {
+                        deltas[n + batch * (winners[cell] + area * i)] += errors[cell];
+                        cell++;
                     }
                 }
             }
+            return delta;
+        }
+        double[] errors = error.getAll();
+        double[] deltas = delta.getAll();
+        int cell = 0;
+        for (int i = 0; i < IN_IMAGES; i++) {
+            for (int c = 0; c < cells; c++) {
+                for (int n = 0; n < batch; n++) {
+                    deltas[n + batch * (winners[cell] + area * i)] += errors[cell];
+                    cell++;
+                }
+            }
         }
         return delta;
     }
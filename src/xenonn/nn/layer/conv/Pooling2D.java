@@ -0,0 +1,90 @@
+package xenonn.nn.layer.conv;
+
+import xenonn.math.Kernels;
+import xenonn.math.Tensor;
+import xenonn.nn.layer.Layer;
+
+/**
+ * Window geometry shared by the 2D pooling layers. Windows of POOL_SIZE x POOL_SIZE values are
+ * placed every STRIDE values over an input padded by PADDING values on each side, so windows
+ * overlap when the stride is smaller than the pool. Padding never takes part in a window's
+ * result.
+ * <p>
+ * With the batch varying fastest, the values of one position across the batch are contiguous, so
+ * the layers pool whole batch runs at a time through the {@link Kernels}.
+ */
+public abstract class Pooling2D extends Layer {
+
+    protected static final Kernels KERNELS = Kernels.get();
+
+    protected int IN_X;
+    protected int IN_Y;
+    protected int IN_IMAGES;
+
+    protected final int POOL_SIZE;
+    protected final int STRIDE;
+    protected final int PADDING;
+
+    protected int OUT_X;
+    protected int OUT_Y;
+
+    protected Pooling2D(int poolSize, int stride, int padding) {
+        if (poolSize < 1 || stride < 1) {
+            throw new RuntimeException("Pool size and stride must be positive");
+        }
+        if (padding < 0 || padding >= poolSize) {
+            throw new RuntimeException("Padding must be smaller than the pool");
+        }
+        POOL_SIZE = poolSize;
+        STRIDE = stride;
+        PADDING = padding;
+    }
+
+    public void initializeWeights() {
+
+    }
+
+    @Override
+    public void setInDimensions(int[] inDimensions) {
+        IN_X = inDimensions[1];
+        IN_Y = inDimensions[2];
+        IN_IMAGES = inDimensions.length == 4 ? inDimensions[3] : 1;
+        if (IN_X + 2 * PADDING < POOL_SIZE || IN_Y + 2 * PADDING < POOL_SIZE) {
+            throw new RuntimeException("Pool out of bounds");
+        }
+        OUT_X = (IN_X + 2 * PADDING - POOL_SIZE) / STRIDE + 1;
+        OUT_Y = (IN_Y + 2 * PADDING - POOL_SIZE) / STRIDE + 1;
+    }
+
+    @Override
+    public int[] getOutDimensions() {
+        return new int[]{1, OUT_X, OUT_Y, IN_IMAGES};
+    }
+
+    /**
+     * Number of samples in {@code in}, which is reshaped to [batch, IN_X, IN_Y, IN_IMAGES].
+     */
+    protected int batch(Tensor in) {
+        int batch = in.size() / (IN_X * IN_Y * IN_IMAGES);
+        in.reshape(batch, IN_X, IN_Y, IN_IMAGES);
+        return batch;
+    }
+
+    /**
+     * {@code tensor} itself when kernels can run on its array, otherwise a heap copy in this
+     * layer's dtype.
+     */
+    protected Tensor flat(Tensor tensor) {
+        if (tensor.isView() || tensor.isOffHeap() || tensor.dtype() != dtype) {
+            return tensor.copy(dtype);
+        }
+        return tensor;
+    }
+
+    /**
+     * First input position of the window of output position {@code out}, before clipping.
+     */
+    protected int windowStart(int out) {
+        return out * STRIDE - PADDING;
+    }
+}
@@ -0,0 +1,163 @@
+package xenonn.nn.layer.conv;
+
+import xenonn.math.DType;
+import xenonn.math.Tensor;
+import xenonn.math.TensorArena;
+import xenonn.nn.layer.Dense;
+import xenonn.nn.layer.Layer;
+import xenonn.nn.layer.type.Trainable;
+
+/**
+ * A {@link DepthwiseConvolution2D} followed by a 1x1 (pointwise) convolution that mixes its
+ * channels into NUM_FILTERS outputs. The pointwise convolution is a {@link Dense} layer applied to
+ * every pixel at once, one matrix product of [batch * x * y, channels] by [channels, filters].
+ * <p>
+ * Weights are the depthwise kernel and bias followed by the pointwise weights and bias.
+ */
+public class SeparableConvolution2D extends Layer implements Trainable {
+
+    private final int NUM_FILTERS;
+
+    private final DepthwiseConvolution2D DEPTHWISE;
+    private final Dense POINTWISE;
+
+    private int OUT_X;
+    private int OUT_Y;
+    private int CHANNELS;
+
+    private Tensor[] weights;
+    private Tensor[] gradients;
+    private int[][] weightShape;
+
+    private Tensor outputError;
+    private Tensor depthwiseError;
+
+    public SeparableConvolution2D(int numberOfFilters, int kernelSize, boolean zeroPadding) {
+        this(numberOfFilters, 1, kernelSize, zeroPadding);
+    }
+
+    public SeparableConvolution2D(int numberOfFilters, int depthMultiplier, int kernelSize, boolean zeroPadding) {
+        NUM_FILTERS = numberOfFilters;
+        DEPTHWISE = new DepthwiseConvolution2D(depthMultiplier, kernelSize, zeroPadding);
+        POINTWISE = new Dense(numberOfFilters);
+    }
+
+    @Override
+    public void setDType(DType dtype) {
+        super.setDType(dtype);
+        DEPTHWISE.setDType(dtype);
+        POINTWISE.setDType(dtype);
+    }
+
+    @Override
+    public void setArena(TensorArena arena) {
+        super.setArena(arena);
+        DEPTHWISE.setArena(arena);
+        POINTWISE.setArena(arena);
+    }
+
+    @Override
+    public void learning(boolean on) {
+        super.learning(on);
+        DEPTHWISE.learning(on);
+        POINTWISE.learning(on);
+    }
+
+    @Override
+    public void setInDimensions(int[] inDimensions) {
+        DEPTHWISE.setInDimensions(inDimensions);
+        int[] depthwiseDimensions = DEPTHWISE.getOutDimensions();
+        OUT_X = depthwiseDimensions[1];
+        OUT_Y = depthwiseDimensions[2];
+        CHANNELS = depthwiseDimensions[3];
+        POINTWISE.setInDimensions(new int[]{1, CHANNELS});
+        weights = concatenate(DEPTHWISE.getWeights(), POINTWISE.getWeights());
+        weightShape = new int[weights.length][];
+        for (int i = 0; i < weights.length; i++) {
+            weightShape[i] = weights[i].getShape().clone();
+        }
+        gradients = new Tensor[weights.length];
+    }
+
+    private static Tensor[] concatenate(Tensor[] first, Tensor[] second) {
+        Tensor[] tensors = new Tensor[first.length + second.length];
+        System.arraycopy(first, 0, tensors, 0, first.length);
+        System.arraycopy(second, 0, tensors, first.length, second.length);
+        return tensors;
+    }
+
+    @Override
+    public int[] getOutDimensions() {
+        return new int[]{1, OUT_X, OUT_Y, NUM_FILTERS};
+    }
+
+    @Override
+    public void initializeWeights() {
+        DEPTHWISE.initializeWeights();
+        POINTWISE.initializeWeights();
+    }
+
+    @Override
+    public void weightsChanged() {
+        DEPTHWISE.weightsChanged();
+        POINTWISE.weightsChanged();
+    }
+
+    @Override
+    public Tensor feedForward(Tensor in) {
+        Tensor depthwise = DEPTHWISE.feedForward(in);
+        int batch = depthwise.getShape()[0];
+        Tensor pixels = Tensor.reshape(depthwise, batch * OUT_X * OUT_Y, CHANNELS);
+        return Tensor.reshape(POINTWISE.feedForward(pixels), batch, OUT_X, OUT_Y, NUM_FILTERS);
+    }
+
+    @Override
+    public Tensor[] getWeights() {
+        return weights;
+    }
+
+    @Override
+    public int[][] weightShape() {
+        return weightShape;
+    }
+
+    /**
+     * Also propagates the error through the pointwise convolution, which the depthwise gradients
+     * and {@link #getDelta(Tensor)} both need.
+     */
+    @Override
+    public void setOutputError(Tensor outputError) {
+        Tensor pixelError = pixelError(outputError);
+        POINTWISE.setOutputError(pixelError);
+        depthwiseError = depthwiseError(pixelError, outputError.getShape()[0]);
+        DEPTHWISE.setOutputError(depthwiseError);
+        this.outputError = outputError;
+    }
+
+    @Override
+    public Tensor[] getGradients() {
+        Tensor[] depthwiseGradients = DEPTHWISE.getGradients();
+        Tensor[] pointwiseGradients = POINTWISE.getGradients();
+        System.arraycopy(depthwiseGradients, 0, gradients, 0, depthwiseGradients.length);
+        System.arraycopy(pointwiseGradients, 0, gradients, depthwiseGradients.length, pointwiseGradients.length);
+        return gradients;
+    }
+
+    @Override
+    public Tensor getDelta(Tensor outputError) {
+        Tensor error = depthwiseError;
+        if (outputError != this.outputError) {
+            error = depthwiseError(pixelError(outputError), outputError.getShape()[0]);
+        }
+        this.outputError = null;
+        return DEPTHWISE.getDelta(error);
+    }
+
+    private Tensor pixelError(Tensor outputError) {
+        return Tensor.reshape(outputError, outputError.size() / NUM_FILTERS, NUM_FILTERS);
+    }
+
+    private Tensor depthwiseError(Tensor pixelError, int batch) {
+        return Tensor.reshape(POINTWISE.getDelta(pixelError), batch, OUT_X, OUT_Y, CHANNELS);
+    }
+}
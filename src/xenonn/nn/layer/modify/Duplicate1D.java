@@ -32,11 +32,13 @@ public class Duplicate1D extends Layer {
 
     @Override
     public Tensor feedForward(Tensor in) {
-        Tensor out = Tensor.zeros(1, outLength);
+        int batch = in.getShape()[0];
+        Tensor out = Tensor.zeros(dtype, batch, outLength);
         for (int i = 0; i < DUPLICATION_AMOUNT; i++) {
             for (int j = 0; j < inLength; j++) {
-                int[] indices = new int[]{0, i * inLength + j};
-                out.set(indices, in.get(0, j));
+                for (int n = 0; n < batch; n++) {
+                    out.set2(n, i * inLength + j, in.get2(n, j));
+                }
             }
         }
         return out;
@@ -46,11 +48,13 @@ public class Duplicate1D extends Layer {
 
     @Override
     public Tensor getDelta(Tensor outputError) {
-        Tensor delta = Tensor.zeros(inDimensions);
+        int batch = outputError.getShape()[0];
+        Tensor delta = Tensor.zeros(dtype, batchShape(inDimensions, batch));
         for (int i = 0; i < DUPLICATION_AMOUNT; i++) {
             for (int j = 0; j < inLength; j++) {
-                int[] indices = new int[]{0, j};
-                delta.set(indices, delta.get(indices) + outputError.get(0, i * inLength + j));
+                for (int n = 0; n < batch; n++) {
+                    delta.add2(n, j, outputError.get2(n, i * inLength + j));
+                }
             }
         }
         return delta;
@@ -1,6 +1,9 @@
 package xenonn.nn.layer.modify;
 
+import xenonn.math.DType;
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
+import xenonn.math.TensorArena;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
 import xenonn.nn.layer.type.TrainableMemory;
@@ -46,6 +49,13 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
     private int[][] weightShape;
     private Tensor[] weights;
 
+    /**
+     * Gradients of a trainable inner layer without memory, summed over the output errors set
+     * since they were last read, like memory layers sum theirs over the steps.
+     */
+    private Tensor[] layer0Gradients;
+    private Tensor[] layer1Gradients;
+
     public Merge1D(Layer layer0, Layer layer1, int layer0Input) {
         LAYER_0 = layer0;
         LAYER_1 = layer1;
@@ -118,6 +128,40 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
         for (int i = 0; i < layer1WeightLength; i++) {
             weightShape[layer0WeightLength + i] = trainableLayer1.weightShape()[i];
         }
+        if (LAYER_0_TRAINABLE && !LAYER_0_TRAINABLE_MEMORY) {
+            layer0Gradients = zeros(trainableLayer0.weightShape());
+        }
+        if (LAYER_1_TRAINABLE && !LAYER_1_TRAINABLE_MEMORY) {
+            layer1Gradients = zeros(trainableLayer1.weightShape());
+        }
+    }
+
+    private Tensor[] zeros(int[][] shapes) {
+        Tensor[] tensors = new Tensor[shapes.length];
+        for (int i = 0; i < shapes.length; i++) {
+            tensors[i] = Tensor.zeros(dtype, shapes[i]);
+        }
+        return tensors;
+    }
+
+    private static void addAll(Tensor[] sums, Tensor[] tensors) {
+        for (int i = 0; i < sums.length; i++) {
+            sums[i].add(tensors[i]);
+        }
+    }
+
+    @Override
+    public void setDType(DType dtype) {
+        super.setDType(dtype);
+        LAYER_0.setDType(dtype);
+        LAYER_1.setDType(dtype);
+    }
+
+    @Override
+    public void setArena(TensorArena arena) {
+        super.setArena(arena);
+        LAYER_0.setArena(arena);
+        LAYER_1.setArena(arena);
     }
 
     @Override
@@ -146,6 +190,28 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
         return Tensor.concat(out0, out1);
     }
 
+    /**
+     * Steps through the sequence one row at a time, as the inner layers need not take batches.
+     */
+    @Override
+    public Tensor feedForwardSequence(Tensor sequence, double[] memories, double[] inputs, int step) {
+        int steps = sequence.getShape()[0];
+        Tensor[] outputs = new Tensor[steps];
+        for (int t = 0; t < steps; t++) {
+            if (memories != null) {
+                writeMemory(memories, step + t);
+            }
+            outputs[t] = feedForward(Tensor.slice(sequence, 0, t, t + 1).copy());
+            if (inputs != null) {
+                writeInput(inputs, step + t);
+            }
+        }
+        if (memories != null) {
+            writeMemory(memories, step + steps);
+        }
+        return Tensor.stack(outputs);
+    }
+
     @Override
     public Tensor getDelta(Tensor outputError) {
         Tensor[] errors = Tensor.split(outputError, LAYER_0_OUTPUT);
@@ -158,6 +224,10 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
     public void initializeWeights() {
         LAYER_0.initializeWeights();
         LAYER_1.initializeWeights();
+        collectWeights();
+    }
+
+    private void collectWeights() {
         for (int i = 0; i < layer0WeightLength; i++) {
             weights[i] = trainableLayer0.getWeights()[i];
         }
@@ -166,6 +236,27 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
         }
     }
 
+    @Override
+    public void moveWeights(MemoryScope scope) {
+        if (LAYER_0_TRAINABLE) {
+            trainableLayer0.moveWeights(scope);
+        }
+        if (LAYER_1_TRAINABLE) {
+            trainableLayer1.moveWeights(scope);
+        }
+        collectWeights();
+    }
+
+    @Override
+    public void weightsChanged() {
+        if (LAYER_0_TRAINABLE) {
+            trainableLayer0.weightsChanged();
+        }
+        if (LAYER_1_TRAINABLE) {
+            trainableLayer1.weightsChanged();
+        }
+    }
+
     @Override
     public int[][] weightShape() {
         return weightShape;
@@ -175,10 +266,12 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
     public Tensor[] getGradients() {
         Tensor[] gradients = new Tensor[length];
         if (LAYER_0_TRAINABLE) {
-            System.arraycopy(trainableLayer0.getGradients(), 0, gradients, 0, layer0WeightLength);
+            Tensor[] gradients0 = LAYER_0_TRAINABLE_MEMORY ? trainableLayer0.getGradients() : layer0Gradients;
+            System.arraycopy(gradients0, 0, gradients, 0, layer0WeightLength);
         }
         if (LAYER_1_TRAINABLE) {
-            System.arraycopy(trainableLayer1.getGradients(), 0, gradients, layer0WeightLength, layer1WeightLength);
+            Tensor[] gradients1 = LAYER_1_TRAINABLE_MEMORY ? trainableLayer1.getGradients() : layer1Gradients;
+            System.arraycopy(gradients1, 0, gradients, layer0WeightLength, layer1WeightLength);
         }
         return gradients;
     }
@@ -189,9 +282,15 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
             Tensor[] outputErrors = Tensor.split(outputError, LAYER_0_OUTPUT);
             if (LAYER_0_TRAINABLE) {
                 trainableLayer0.setOutputError(outputErrors[0]);
+                if (!LAYER_0_TRAINABLE_MEMORY) {
+                    addAll(layer0Gradients, trainableLayer0.getGradients());
+                }
             }
             if (LAYER_1_TRAINABLE) {
                 trainableLayer1.setOutputError(outputErrors[1]);
+                if (!LAYER_1_TRAINABLE_MEMORY) {
+                    addAll(layer1Gradients, trainableLayer1.getGradients());
+                }
             }
         }
     }
@@ -274,8 +373,8 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
     @Override
     public Tensor getInput() {
         if (TRAINABLE_MEMORY) {
-            Tensor input0 = Tensor.zeros(layer0Input);
-            Tensor input1 = Tensor.zeros(layer1Input);
+            Tensor input0 = Tensor.zeros(dtype, layer0Input);
+            Tensor input1 = Tensor.zeros(dtype, layer1Input);
             if (LAYER_0_TRAINABLE_MEMORY) {
                 input0 = trainableMemoryLayer0.getInput();
             }
@@ -287,12 +386,87 @@ public class Merge1D extends Layer implements Trainable, TrainableMemory {
         return null;
     }
 
+    private int memorySize0() {
+        return LAYER_0_TRAINABLE_MEMORY ? trainableMemoryLayer0.memorySize() : 0;
+    }
+
+    private int inputSize0() {
+        return LAYER_0_TRAINABLE_MEMORY ? trainableMemoryLayer0.inputSize() : 0;
+    }
+
+    /**
+     * The slot of a step holds the first layer's memory followed by the second's.
+     */
+    @Override
+    public int memorySize() {
+        return memorySize0() + (LAYER_1_TRAINABLE_MEMORY ? trainableMemoryLayer1.memorySize() : 0);
+    }
+
+    /**
+     * The slot of a step holds the first layer's input followed by the second's, leaving out the
+     * input of a layer without memory.
+     */
+    @Override
+    public int inputSize() {
+        return inputSize0() + (LAYER_1_TRAINABLE_MEMORY ? trainableMemoryLayer1.inputSize() : 0);
+    }
+
+    @Override
+    public void writeMemoryAt(double[] slab, int offset) {
+        if (LAYER_0_TRAINABLE_MEMORY) {
+            trainableMemoryLayer0.writeMemoryAt(slab, offset);
+        }
+        if (LAYER_1_TRAINABLE_MEMORY) {
+            trainableMemoryLayer1.writeMemoryAt(slab, offset + memorySize0());
+        }
+    }
+
+    @Override
+    public void readMemoryAt(double[] slab, int offset) {
+        if (LAYER_0_TRAINABLE_MEMORY) {
+            trainableMemoryLayer0.readMemoryAt(slab, offset);
+        }
+        if (LAYER_1_TRAINABLE_MEMORY) {
+            trainableMemoryLayer1.readMemoryAt(slab, offset + memorySize0());
+        }
+    }
+
+    @Override
+    public void readNextMemoryAt(double[] slab, int offset) {
+        if (LAYER_0_TRAINABLE_MEMORY) {
+            trainableMemoryLayer0.readNextMemoryAt(slab, offset);
+        }
+        if (LAYER_1_TRAINABLE_MEMORY) {
+            trainableMemoryLayer1.readNextMemoryAt(slab, offset + memorySize0());
+        }
+    }
+
+    @Override
+    public void writeInputAt(double[] slab, int offset) {
+        if (LAYER_0_TRAINABLE_MEMORY) {
+            trainableMemoryLayer0.writeInputAt(slab, offset);
+        }
+        if (LAYER_1_TRAINABLE_MEMORY) {
+            trainableMemoryLayer1.writeInputAt(slab, offset + inputSize0());
+        }
+    }
+
+    @Override
+    public void readInputAt(double[] slab, int offset) {
+        if (LAYER_0_TRAINABLE_MEMORY) {
+            trainableMemoryLayer0.readInputAt(slab, offset);
+        }
+        if (LAYER_1_TRAINABLE_MEMORY) {
+            trainableMemoryLayer1.readInputAt(slab, offset + inputSize0());
+        }
+    }
+
     @Override
     public Tensor getMemoryDelta(Tensor delta) {
         if (TRAINABLE_MEMORY) {
             Tensor[] deltas = Tensor.split(delta, LAYER_0_OUTPUT);
-            Tensor delta0 = Tensor.zeros(layer0Output);
-            Tensor delta1 = Tensor.zeros(layer1Output);
+            Tensor delta0 = Tensor.zeros(dtype, layer0Output);
+            Tensor delta1 = Tensor.zeros(dtype, layer1Output);
             if (LAYER_0_TRAINABLE_MEMORY) {
                 delta0 = trainableMemoryLayer0.getMemoryDelta(deltas[0]);
             }
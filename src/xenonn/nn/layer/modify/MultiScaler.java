@@ -4,6 +4,8 @@ import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
 
+import java.util.Arrays;
+
 public class MultiScaler extends Layer implements Trainable {
 
 
@@ -16,15 +18,36 @@ public class MultiScaler extends Layer implements Trainable {
 
     private transient Tensor outputError;
 
+    private final boolean PER_CHANNEL;
+
+    public MultiScaler() {
+        this(false);
+    }
+
+    /**
+     * With {@code perChannel} set there is one weight per channel (the last dimension), broadcast
+     * over the other dimensions, instead of one per input value.
+     */
+    public MultiScaler(boolean perChannel) {
+        PER_CHANNEL = perChannel;
+    }
+
     public void initializeWeights() {
-        weights[0] = Tensor.ones(inDimensions);
+        weights[0] = Tensor.ones(dtype, weightShape[0]);
     }
 
     @Override
     public void setInDimensions(int[] inDimensions) {
         this.inDimensions = inDimensions;
         outDimensions = inDimensions.clone();
-        weightShape[0] = inDimensions;
+        weightShape[0] = PER_CHANNEL ? channelShape(inDimensions) : inDimensions;
+    }
+
+    private static int[] channelShape(int[] inDimensions) {
+        int[] shape = new int[inDimensions.length];
+        Arrays.fill(shape, 1);
+        shape[shape.length - 1] = inDimensions[inDimensions.length - 1];
+        return shape;
     }
 
     @Override
@@ -60,7 +83,7 @@ public class MultiScaler extends Layer implements Trainable {
 
     @Override
     public Tensor[] getGradients() {
-        return new Tensor[]{Tensor.multiply(outputError, input)};
+        return new Tensor[]{Tensor.sumToShape(Tensor.multiply(outputError, input), weightShape[0])};
     }
 
     @Override
@@ -4,6 +4,8 @@ import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
 
+import java.util.Arrays;
+
 public class MultiShifter extends Layer implements Trainable {
 
 
@@ -14,15 +16,36 @@ public class MultiShifter extends Layer implements Trainable {
 
     private transient Tensor outputError;
 
+    private final boolean PER_CHANNEL;
+
+    public MultiShifter() {
+        this(false);
+    }
+
+    /**
+     * With {@code perChannel} set there is one weight per channel (the last dimension), broadcast
+     * over the other dimensions, instead of one per input value.
+     */
+    public MultiShifter(boolean perChannel) {
+        PER_CHANNEL = perChannel;
+    }
+
     public void initializeWeights() {
-        weights[0] = Tensor.zeros(inDimensions);
+        weights[0] = Tensor.zeros(dtype, weightShape[0]);
     }
 
     @Override
     public void setInDimensions(int[] inDimensions) {
         this.inDimensions = inDimensions;
         outDimensions = inDimensions.clone();
-        weightShape[0] = inDimensions;
+        weightShape[0] = PER_CHANNEL ? channelShape(inDimensions) : inDimensions;
+    }
+
+    private static int[] channelShape(int[] inDimensions) {
+        int[] shape = new int[inDimensions.length];
+        Arrays.fill(shape, 1);
+        shape[shape.length - 1] = inDimensions[inDimensions.length - 1];
+        return shape;
     }
 
     @Override
@@ -55,7 +78,7 @@ public class MultiShifter extends Layer implements Trainable {
 
     @Override
     public Tensor[] getGradients() {
-        return new Tensor[]{outputError};
+        return new Tensor[]{Tensor.sumToShape(outputError, weightShape[0])};
     }
 
     @Override
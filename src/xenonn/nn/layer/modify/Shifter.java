@@ -16,8 +16,8 @@ public class Shifter extends Layer implements Trainable {
     private transient Tensor outputError;
 
     public void initializeWeights() {
-        weights[0] = Tensor.zeros(1);
-        gradients[0] = Tensor.zeros(1);
+        weights[0] = Tensor.zeros(dtype, 1);
+        gradients[0] = Tensor.zeros(dtype, 1);
     }
 
     @Override
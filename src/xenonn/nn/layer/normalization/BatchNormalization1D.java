@@ -67,7 +67,7 @@ public class BatchNormalization1D extends Layer {
         averageVariance = averageVariance * MOMENTUM + variance * (1 - MOMENTUM);
 
         Tensor value = in.copy();
-        value.reshape(1, IN_SIZE);
+        value.reshape(in.size() / IN_SIZE, IN_SIZE);
         if (learningOn) {
             lastVariance = variance;
             lastStdDev = (Math.sqrt(variance) + EPSILON);
@@ -78,16 +78,25 @@ public class BatchNormalization1D extends Layer {
         } else {
             value = Tensor.multiply(Tensor.add(in, -averageMean), 1 / (Math.sqrt(averageVariance) + EPSILON));
         }
-        value.reshape(IN_SHAPE);
+        value.reshape(batchShape(IN_SHAPE, in.size() / IN_SIZE));
         return value;
     }
 
+    /**
+     * The statistics are taken over the whole batch.
+     */
+    @Override
+    public boolean independentSamples() {
+        return false;
+    }
+
 
 
     @Override
     public Tensor getDelta(Tensor outputError) {
 
-        outputError.reshape(1, IN_SIZE);
+        int[] shape = outputError.getShape().clone();
+        outputError.reshape(outputError.size() / IN_SIZE, IN_SIZE);
 
         double invertedStdDev = 1 / lastStdDev;
 
@@ -100,7 +109,7 @@ public class BatchNormalization1D extends Layer {
         Tensor derivative1 = Tensor.multiply(Tensor.add(outputError, -lastMean), 2);
         double derivative2 = meanDerivative * invertedStdDev / IN_SIZE;
         Tensor delta = Tensor.add(Tensor.add(derivative0, derivative1), derivative2);
-        delta.reshape(IN_SHAPE);
+        delta.reshape(shape);
         return delta;
     }
 
@@ -35,14 +35,16 @@ public class Dropout extends Layer {
     @Override
     public Tensor feedForward(Tensor tensor) {
         if (learningOn) {
+            int batch = tensor.size() / IN;
             Tensor out = tensor.copy();
-            out.reshape(1, IN);
-            derivatives = Tensor.ones(1, IN);
-            for (int i = 0; i < IN; i++) {
-                int[] indices = new int[]{0, i};
-                if (Math.random() < DROPOUT) {
-                    out.set(indices, 0);
-                    derivatives.set(indices, 0);
+            out.reshape(batch, IN);
+            derivatives = Tensor.ones(dtype, batch, IN);
+            for (int n = 0; n < batch; n++) {
+                for (int i = 0; i < IN; i++) {
+                    if (Math.random() < DROPOUT) {
+                        out.set2(n, i, 0);
+                        derivatives.set2(n, i, 0);
+                    }
                 }
             }
             out.reshape(tensor.getShape());
@@ -56,7 +58,7 @@ public class Dropout extends Layer {
     @Override
     public Tensor getDelta(Tensor outputError) {
         Tensor delta = outputError.copy();
-        delta.reshape(1, IN);
+        delta.reshape(delta.size() / IN, IN);
         delta.multiply(derivatives);
         delta.reshape(outputError.getShape());
         return delta;
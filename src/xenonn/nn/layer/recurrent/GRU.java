@@ -1,9 +1,8 @@
 package xenonn.nn.layer.recurrent;
 
+import xenonn.math.Kernels;
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
-import xenonn.nn.activation.ActivationFunction;
-import xenonn.nn.activation.Sigmoid;
-import xenonn.nn.activation.Tanh;
 import xenonn.nn.initialization.Initializer;
 import xenonn.nn.initialization.NullInitializer;
 import xenonn.nn.initialization.XavierInitializerNormal;
@@ -11,10 +10,18 @@ import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
 import xenonn.nn.layer.type.TrainableMemory;
 
+/**
+ * The update, reset and candidate weights are packed into [IN, 3 * MEMORY_CELLS] input,
+ * [MEMORY_CELLS, 3 * MEMORY_CELLS] recurrent and [1, 3 * MEMORY_CELLS] bias matrices. Both gates
+ * come from one input and one recurrent matrix product. Only the candidate's recurrent product
+ * waits for the reset gate. {@link #getWeights()} and {@link #getGradients()} still list input,
+ * recurrent and bias weights per gate, as views of the packed matrices.
+ */
 public class GRU extends Layer implements Trainable, TrainableMemory {
 
-    private final ActivationFunction SIGMOID = new Sigmoid();
-    private final ActivationFunction TANH = new Tanh();
+    private static final int GATES = 3;
+
+    private static final Kernels KERNELS = Kernels.get();
     private final Initializer INITIALIZER;
 
     private int IN;
@@ -23,25 +30,52 @@ public class GRU extends Layer implements Trainable, TrainableMemory {
     private final Tensor[] WEIGHTS;
     private int[][] weightShape = new int[9][];
 
+    private Tensor inputWeights;
+    private Tensor recurrentWeights;
+    private Tensor bias;
 
     private Tensor[] gradients = new Tensor[9];
 
-    private transient Tensor lastInput;
-    private transient Tensor candidateOutput;
-    private transient Tensor activatedCandidateOutput;
-    private Tensor output;
-    private transient Tensor[] gates = new Tensor[2];
-
-    private transient Tensor learningLastInput;
-    private transient Tensor learningCandidateOutput;
-    private transient Tensor learningActivatedCandidateOutput;
-    private Tensor learningOutput;
-    private transient Tensor[] learningGates = new Tensor[2];
-    private transient Tensor[] learningGateDerivatives = new Tensor[2];
-    private transient Tensor learningDerivativeCandidateOutput;
-
-    private transient Tensor nextLearningCandidateOutput;
-    private transient Tensor nextLearningActivatedCandidateOutput;
+    private Tensor inputGradients;
+    private Tensor recurrentGradients;
+    private Tensor biasGradients;
+
+    private Tensor inputGradientScratch;
+    private Tensor gateGradientScratch;
+    private Tensor candidateGradientScratch;
+
+    private final State STATE = new State();
+    private final State LEARNING_STATE = new State();
+    private final State LEARNING_NEXT_STATE = new State();
+
+    private transient Tensor gateProjection;
+    private transient Tensor resetOutput;
+    private transient Tensor candidateProjection;
+
+    private transient Tensor derivatives;
+    private transient Tensor resetError;
+    private transient Tensor resetProjection;
+    private transient Tensor updatedOutput;
+
+    /**
+     * Working arrays of {@link #step(State, int)}, {@link #derivatives(Tensor)} and
+     * {@link #calculateGradients(Tensor)}, two packed ones of GATES * cells values and six of
+     * cells values, where cells is the step's rows times MEMORY_CELLS. Sized by
+     * {@link #fitScratch(int)}.
+     */
+    private transient double[] packedScratch;
+    private transient double[] activationScratch;
+    private transient double[][] cellScratch;
+
+    /**
+     * Values of one step. Gates holds the packed pre-activations of both gates and the candidate.
+     */
+    private static final class State {
+        private Tensor input;
+        private Tensor output;
+        private Tensor activatedCandidate;
+        private Tensor gates;
+    }
 
     public GRU(int memoryCells) {
         this(memoryCells, new XavierInitializerNormal());
@@ -72,25 +106,75 @@ public class GRU extends Layer implements Trainable, TrainableMemory {
         for (int i = 0; i < 9; i += 3) {
             System.arraycopy(repeatingWeightShape, 0, weightShape, i, 3);
         }
-        for (int i = 0; i < weightShape.length; i++) {
-            if (WEIGHTS[i] == null) {
-                WEIGHTS[i] = Tensor.zeros(weightShape[i]);
+        int packed = GATES * MEMORY_CELLS;
+        inputWeights = Tensor.zeros(dtype, IN, packed);
+        recurrentWeights = Tensor.zeros(dtype, MEMORY_CELLS, packed);
+        bias = Tensor.zeros(dtype, 1, packed);
+        Tensor[] given = WEIGHTS.clone();
+        sliceGates(inputWeights, recurrentWeights, bias, WEIGHTS);
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            if (given[i] != null) {
+                Tensor.copyInto(given[i], WEIGHTS[i]);
             }
-            gradients[i] = Tensor.zeros(weightShape[i]);
         }
-        for (int i = 0; i < learningGates.length; i++) {
-            gates[i] = Tensor.zeros(weightShape[i]);
-            learningGates[i] = Tensor.zeros(weightShape[i]);
+        inputGradients = Tensor.zeros(dtype, IN, packed);
+        recurrentGradients = Tensor.zeros(dtype, MEMORY_CELLS, packed);
+        biasGradients = Tensor.zeros(dtype, 1, packed);
+        sliceGates(inputGradients, recurrentGradients, biasGradients, gradients);
+        inputGradientScratch = Tensor.zeros(dtype, IN, packed);
+        gateGradientScratch = Tensor.zeros(dtype, MEMORY_CELLS, 2 * MEMORY_CELLS);
+        candidateGradientScratch = Tensor.zeros(dtype, MEMORY_CELLS, MEMORY_CELLS);
+        for (State state : new State[]{STATE, LEARNING_STATE, LEARNING_NEXT_STATE}) {
+            state.input = Tensor.zeros(dtype, inDimensions);
+            state.output = Tensor.zeros(dtype, 1, MEMORY_CELLS);
+            state.activatedCandidate = Tensor.zeros(dtype, 1, MEMORY_CELLS);
+            state.gates = Tensor.zeros(dtype, 1, packed);
+        }
+        fitScratch(1);
+    }
+
+    private void fitScratch(int rows) {
+        int cells = rows * MEMORY_CELLS;
+        if (cellScratch != null && cellScratch[0].length == cells) {
+            return;
+        }
+        packedScratch = new double[GATES * cells];
+        activationScratch = new double[GATES * cells];
+        cellScratch = new double[6][cells];
+    }
+
+    /**
+     * Fills {@code views} with the input, recurrent and bias columns of each gate.
+     */
+    private void sliceGates(Tensor input, Tensor recurrent, Tensor bias, Tensor[] views) {
+        for (int gate = 0; gate < GATES; gate++) {
+            int start = gate * MEMORY_CELLS;
+            int end = start + MEMORY_CELLS;
+            views[gate * 3] = Tensor.slice(input, 1, start, end);
+            views[gate * 3 + 1] = Tensor.slice(recurrent, 1, start, end);
+            views[gate * 3 + 2] = Tensor.slice(bias, 1, start, end);
         }
-        lastInput = Tensor.zeros(inDimensions);
-        output = Tensor.zeros(1, MEMORY_CELLS);
-        candidateOutput = Tensor.zeros(1, MEMORY_CELLS);
-        activatedCandidateOutput = Tensor.zeros(1, MEMORY_CELLS);
+    }
+
+    /**
+     * Columns of the update and reset gates in a packed matrix.
+     */
+    private Tensor gateColumns(Tensor packed) {
+        return Tensor.slice(packed, 1, 0, 2 * MEMORY_CELLS);
+    }
+
+    /**
+     * Columns of the candidate in a packed matrix.
+     */
+    private Tensor candidateColumns(Tensor packed) {
+        return Tensor.slice(packed, 1, 2 * MEMORY_CELLS, 3 * MEMORY_CELLS);
+    }
 
-        learningLastInput = Tensor.zeros(inDimensions);
-        learningOutput = Tensor.zeros(1, MEMORY_CELLS);
-        learningCandidateOutput = Tensor.zeros(1, MEMORY_CELLS);
-        learningActivatedCandidateOutput = Tensor.zeros(1, MEMORY_CELLS);
+    private Tensor scratch(Tensor tensor, int rows, int columns) {
+        if (tensor == null || tensor.getShape()[0] != rows) {
+            return Tensor.zeros(dtype, rows, columns);
+        }
+        return tensor;
     }
 
     @Override
@@ -98,32 +182,101 @@ public class GRU extends Layer implements Trainable, TrainableMemory {
         return new int[]{1, MEMORY_CELLS};
     }
 
+    private State state() {
+        return learningOn ? LEARNING_STATE : STATE;
+    }
+
     @Override
     public Tensor feedForward(Tensor in) {
-        if (learningOn) {
-            learningLastInput = in.copy();
-            Tensor[] activatedGates = new Tensor[2]; //update reset
-            for (int i = 0; i < activatedGates.length; i++) {
-                int index = i * 3;
-                learningGates[i] = Tensor.add(Tensor.add(Tensor.dotProduct(in, WEIGHTS[index]), Tensor.dotProduct(learningOutput, WEIGHTS[index + 1])), WEIGHTS[index + 2]);
-                activatedGates[i] = SIGMOID.value(learningGates[i]);
+        State state = state();
+        int rows = in.getShape()[0];
+        fitRows(state, rows);
+        Tensor.copyInto(in, state.input);
+        Tensor.dotProductInto(in, inputWeights, state.gates);
+        step(state, rows);
+        return state.output.copy();
+    }
+
+    /**
+     * Projects every step of the sequence onto the input weights in one matrix product, so only
+     * the recurrent products are left to the steps.
+     */
+    @Override
+    public Tensor feedForwardSequence(Tensor sequence, double[] memories, double[] inputs, int step) {
+        State state = state();
+        fitRows(state, 1);
+        int steps = sequence.getShape()[0];
+        Tensor projections = Tensor.dotProduct(sequence, inputWeights);
+        Tensor outputs = Tensor.zeros(dtype, steps, MEMORY_CELLS);
+        for (int t = 0; t < steps; t++) {
+            if (memories != null) {
+                writeMemory(memories, step + t);
+            }
+            Tensor.copyInto(Tensor.slice(sequence, 0, t, t + 1), state.input);
+            Tensor.copyInto(Tensor.slice(projections, 0, t, t + 1), state.gates);
+            step(state, 1);
+            Tensor.copyInto(state.output, Tensor.slice(outputs, 0, t, t + 1));
+            if (inputs != null) {
+                writeInput(inputs, step + t);
             }
-            learningCandidateOutput = Tensor.add(Tensor.dotProduct(in, WEIGHTS[6]), Tensor.dotProduct(Tensor.multiply(activatedGates[0], learningOutput), WEIGHTS[7]));
-            learningActivatedCandidateOutput = TANH.value(learningCandidateOutput);
-            learningOutput = Tensor.add(Tensor.multiply(Tensor.subtract(1, activatedGates[1]), learningOutput), Tensor.multiply(activatedGates[1], learningActivatedCandidateOutput));
-            return learningOutput.copy();
         }
-        lastInput = in.copy();
-        Tensor[] activatedGates = new Tensor[2]; //update reset
-        for (int i = 0; i < activatedGates.length; i++) {
-            int index = i * 3;
-            gates[i] = Tensor.add(Tensor.add(Tensor.dotProduct(in, WEIGHTS[index]), Tensor.dotProduct(output, WEIGHTS[index + 1])), WEIGHTS[index + 2]);
-            activatedGates[i] = SIGMOID.value(gates[i]);
+        if (memories != null) {
+            writeMemory(memories, step + steps);
+        }
+        return outputs;
+    }
+
+    /**
+     * Finishes a step whose input projection is already in the gates of {@code state}.
+     */
+    private void step(State state, int rows) {
+        Tensor gates = state.gates;
+        gateProjection = scratch(gateProjection, rows, 2 * MEMORY_CELLS);
+        Tensor.dotProductInto(state.output, gateColumns(recurrentWeights), gateProjection);
+        gateColumns(gates).add(gateProjection).add(gateColumns(bias));
+        int cells = rows * MEMORY_CELLS;
+        fitScratch(rows);
+        double[] preActivations = packedScratch;
+        double[] activations = activationScratch;
+        double[] output = cellScratch[0];
+        double[] reset = cellScratch[1];
+        state.output.toArray(output, 0);
+        gateColumns(gates).toArray(preActivations, 0);
+        KERNELS.sigmoid(preActivations, 0, activations, 0, 2 * cells);
+        for (int i = 0; i < cells; i++) {
+            reset[i] = activations[i] * output[i];
+        }
+        resetOutput = scratch(resetOutput, rows, MEMORY_CELLS);
+        resetOutput.setAll(reset, 0);
+        candidateProjection = scratch(candidateProjection, rows, MEMORY_CELLS);
+        Tensor candidate = candidateColumns(gates).add(Tensor.dotProductInto(resetOutput, candidateColumns(recurrentWeights), candidateProjection));
+        candidate.toArray(preActivations, 2 * cells);
+        KERNELS.tanh(preActivations, 2 * cells, activations, 2 * cells, cells);
+        for (int i = 0; i < cells; i++) {
+            double update = activations[cells + i];
+            output[i] = (1 - update) * output[i] + update * activations[2 * cells + i];
         }
-        candidateOutput = Tensor.add(Tensor.dotProduct(in, WEIGHTS[6]), Tensor.dotProduct(Tensor.multiply(activatedGates[0], output), WEIGHTS[7]));
-        activatedCandidateOutput = TANH.value(candidateOutput);
-        output = Tensor.add(Tensor.multiply(Tensor.subtract(1, activatedGates[1]), output), Tensor.multiply(activatedGates[1], activatedCandidateOutput));
-        return output.copy();
+        state.activatedCandidate.setAll(activations, 2 * cells);
+        state.output.setAll(output, 0);
+    }
+
+    /**
+     * Gives the state one row per sample, spreading a single row across the batch. A state of any
+     * other row count belongs to a batch of another size, so it starts again from zero.
+     */
+    private void fitRows(State state, int rows) {
+        if (state.gates.getShape()[0] == rows) {
+            return;
+        }
+        state.output = spread(state.output, rows);
+        state.activatedCandidate = Tensor.zeros(dtype, rows, MEMORY_CELLS);
+        state.gates = Tensor.zeros(dtype, rows, GATES * MEMORY_CELLS);
+        state.input = Tensor.zeros(dtype, rows, IN);
+    }
+
+    private Tensor spread(Tensor cells, int rows) {
+        Tensor spread = Tensor.zeros(dtype, rows, MEMORY_CELLS);
+        return cells.getShape()[0] == 1 ? spread.add(cells) : spread;
     }
 
     @Override
@@ -131,19 +284,63 @@ public class GRU extends Layer implements Trainable, TrainableMemory {
         return WEIGHTS;
     }
 
+    /**
+     * Moves the packed matrices and slices the per-gate views again.
+     */
+    @Override
+    public void moveWeights(MemoryScope scope) {
+        inputWeights.moveTo(scope);
+        recurrentWeights.moveTo(scope);
+        bias.moveTo(scope);
+        sliceGates(inputWeights, recurrentWeights, bias, WEIGHTS);
+    }
 
     @Override
     public Tensor getDelta(Tensor outputError) {
-        learningDerivativeCandidateOutput = SIGMOID.value(learningGates[0]).multiply(TANH.derivative(nextLearningCandidateOutput)).multiply(outputError);
-        learningGateDerivatives[0] = Tensor.subtract(nextLearningActivatedCandidateOutput, learningOutput).multiply(outputError).multiply(SIGMOID.derivative(learningGates[0]));
-        learningGateDerivatives[1] = Tensor.dotProduct(Tensor.multiply(learningDerivativeCandidateOutput, learningOutput), Tensor.transpose(WEIGHTS[7])).multiply(SIGMOID.derivative(learningGates[1]));
-        Tensor delta = Tensor.zeros(1, IN);
-        for (int i = 0; i < 2; i++) {
-            int index = i * 3;
-            delta.add(Tensor.dotProduct(learningGateDerivatives[i], Tensor.transpose(WEIGHTS[index])));
+        Tensor derivatives = derivatives(outputError);
+        return Tensor.dotProductInto(derivatives, Tensor.transpose(inputWeights), temporary(outputError.getShape()[0], IN));
+    }
+
+    /**
+     * Derivatives of the loss with respect to the packed pre-activations of the current step. The
+     * second gate's derivative goes through the candidate's recurrent weights, so it takes a
+     * matrix product between two passes over the memory cells.
+     */
+    private Tensor derivatives(Tensor outputError) {
+        int rows = outputError.getShape()[0];
+        derivatives = scratch(derivatives, rows, GATES * MEMORY_CELLS);
+        resetError = scratch(resetError, rows, MEMORY_CELLS);
+        resetProjection = scratch(resetProjection, rows, MEMORY_CELLS);
+        int cells = rows * MEMORY_CELLS;
+        fitScratch(rows);
+        double[] gates = packedScratch;
+        double[] derivatives = activationScratch;
+        double[] error = cellScratch[0];
+        double[] output = cellScratch[1];
+        double[] activatedCandidate = cellScratch[2];
+        double[] gate = cellScratch[3];
+        double[] reset = cellScratch[4];
+        double[] resetGate = cellScratch[5];
+        outputError.toArray(error, 0);
+        LEARNING_NEXT_STATE.gates.toArray(gates, 0);
+        LEARNING_STATE.output.toArray(output, 0);
+        LEARNING_NEXT_STATE.activatedCandidate.toArray(activatedCandidate, 0);
+        KERNELS.sigmoidDerivative(gates, 0, derivatives, 0, 2 * cells);
+        KERNELS.tanhDerivative(gates, 2 * cells, derivatives, 2 * cells, cells);
+        KERNELS.sigmoid(gates, 0, gate, 0, cells);
+        for (int i = 0; i < cells; i++) {
+            double derivativeCandidate = gate[i] * derivatives[2 * cells + i] * error[i];
+            derivatives[i] = (activatedCandidate[i] - output[i]) * error[i] * derivatives[i];
+            derivatives[2 * cells + i] = derivativeCandidate;
+            reset[i] = derivativeCandidate * output[i];
         }
-        delta.add(Tensor.dotProduct(learningDerivativeCandidateOutput, Tensor.transpose(WEIGHTS[6])));
-        return delta;
+        resetError.setAll(reset, 0);
+        Tensor.dotProductInto(resetError, Tensor.transpose(candidateColumns(recurrentWeights)), resetProjection).toArray(resetGate, 0);
+        for (int i = 0; i < cells; i++) {
+            derivatives[cells + i] = resetGate[i] * derivatives[cells + i];
+        }
+        this.derivatives.setAll(derivatives, 0);
+        return this.derivatives;
     }
 
 
@@ -164,98 +361,120 @@ public class GRU extends Layer implements Trainable, TrainableMemory {
 
     @Override
     public void setMemory(Tensor[] memory) {
-        if (learningOn) {
-            learningOutput = memory[0].copy();
-            learningCandidateOutput = memory[1].copy();
-            learningActivatedCandidateOutput = memory[2].copy();
-            return;
-        }
-        output = memory[0].copy();
-        candidateOutput = memory[1].copy();
-        activatedCandidateOutput = memory[2].copy();
+        State state = state();
+        state.output = memory[0].copy();
+        state.activatedCandidate = memory[1].copy();
+        state.gates = memory[2].copy();
     }
 
     @Override
     public void setNextMemory(Tensor[] memory) {
-        nextLearningCandidateOutput = memory[1].copy();
-        nextLearningActivatedCandidateOutput = memory[2].copy();
-        for (int i = 3; i < memory.length; i++) {
-            learningGates[i - 3] = memory[i].copy();
-        }
+        LEARNING_NEXT_STATE.output = memory[0].copy();
+        LEARNING_NEXT_STATE.activatedCandidate = memory[1].copy();
+        LEARNING_NEXT_STATE.gates = memory[2].copy();
     }
 
     @Override
     public void setInput(Tensor input) {
-        if (learningOn) {
-            learningLastInput = input.copy();
-            return;
-        }
-        lastInput = input.copy();
+        state().input = input.copy();
     }
 
     @Override
     public void resetMemory() {
-        if (learningOn) {
-            learningOutput.zero();
-            return;
-        }
-        output.zero();
+        state().output.zero();
     }
 
     @Override
     public Tensor[] getMemory() {
-        if (learningOn) {
-            Tensor[] memory = new Tensor[3 + gates.length];
-            memory[0] = learningOutput.copy();
-            memory[1] = learningCandidateOutput.copy();
-            memory[2] = learningActivatedCandidateOutput.copy();
-            for (int i = 3; i < memory.length; i++) {
-                memory[i] = learningGates[i - 3].copy();
-            }
-            return memory;
-        }
-        Tensor[] memory = new Tensor[3 + gates.length];
-        memory[0] = output.copy();
-        memory[1] = candidateOutput.copy();
-        memory[2] = activatedCandidateOutput.copy();
-        for (int i = 3; i < memory.length; i++) {
-            memory[i] = gates[i - 3].copy();
-        }
-        return memory;
+        State state = state();
+        return new Tensor[]{state.output.copy(), state.activatedCandidate.copy(), state.gates.copy()};
     }
 
     @Override
     public Tensor getInput() {
-        if (learningOn) {
-            return learningLastInput.copy();
+        return state().input.copy();
+    }
+
+    /**
+     * The tensors of a state that make up its memory, in the order of {@link #getMemory()}.
+     */
+    private static Tensor[] memory(State state) {
+        return new Tensor[]{state.output, state.activatedCandidate, state.gates};
+    }
+
+    /**
+     * A slot holds one row of memory: two cell vectors and the packed gates.
+     */
+    @Override
+    public int memorySize() {
+        return (2 + GATES) * MEMORY_CELLS;
+    }
+
+    @Override
+    public int inputSize() {
+        return IN;
+    }
+
+    @Override
+    public void writeMemoryAt(double[] slab, int offset) {
+        TrainableMemory.write(memory(singleRow(state())), slab, offset);
+    }
+
+    @Override
+    public void readMemoryAt(double[] slab, int offset) {
+        State state = state();
+        fitRows(state, 1);
+        TrainableMemory.read(slab, offset, memory(state));
+    }
+
+    @Override
+    public void readNextMemoryAt(double[] slab, int offset) {
+        fitRows(LEARNING_NEXT_STATE, 1);
+        TrainableMemory.read(slab, offset, memory(LEARNING_NEXT_STATE));
+    }
+
+    @Override
+    public void writeInputAt(double[] slab, int offset) {
+        singleRow(state()).input.toArray(slab, offset);
+    }
+
+    @Override
+    public void readInputAt(double[] slab, int offset) {
+        State state = state();
+        fitRows(state, 1);
+        state.input.setAll(slab, offset);
+    }
+
+    private State singleRow(State state) {
+        if (state.gates.getShape()[0] != 1) {
+            throw new RuntimeException("A memory slot holds one row, the state holds " + state.gates.getShape()[0]);
         }
-        return lastInput.copy();
+        return state;
     }
 
     @Override
     public Tensor getMemoryDelta(Tensor delta) {
-        Tensor[] gateErrors = new Tensor[2];
-        for (int i = 0; i < gateErrors.length; i++) {
-            gateErrors[i] = Tensor.dotProduct(learningGateDerivatives[i], Tensor.transpose(WEIGHTS[i * 3 + 1]));
-        }
-        return gateErrors[0].add(gateErrors[1]).add(learningDerivativeCandidateOutput);
+        Tensor gateErrors = Tensor.dotProductInto(gateColumns(derivatives), Tensor.transpose(gateColumns(recurrentWeights)), temporary(derivatives.getShape()[0], MEMORY_CELLS));
+        return gateErrors.add(candidateColumns(derivatives));
     }
 
     @Override
     public void calculateGradients(Tensor outputError) {
-        learningDerivativeCandidateOutput = SIGMOID.value(learningGates[0]).multiply(TANH.derivative(nextLearningCandidateOutput)).multiply(outputError);
-        learningGateDerivatives[0] = Tensor.subtract(nextLearningActivatedCandidateOutput, learningOutput).multiply(outputError).multiply(SIGMOID.derivative(learningGates[0]));
-        learningGateDerivatives[1] = Tensor.dotProduct(Tensor.multiply(learningDerivativeCandidateOutput, learningOutput), Tensor.transpose(WEIGHTS[7])).multiply(SIGMOID.derivative(learningGates[1]));
-        for (int i = 0; i < 2; i++) {
-            int index = i * 3;
-            gradients[index].add(Tensor.dotProduct(Tensor.transpose(learningLastInput), learningGateDerivatives[i]));
-            gradients[index + 1].add(Tensor.dotProduct(Tensor.transpose(learningOutput), learningGateDerivatives[i]));
-            gradients[index + 2].add(learningGateDerivatives[i]);
-        }
-        gradients[6].add(Tensor.dotProduct(Tensor.transpose(learningLastInput), learningDerivativeCandidateOutput));
-        gradients[7].add(Tensor.dotProduct(Tensor.transpose(Tensor.multiply(SIGMOID.value(learningGates[1]), learningOutput)), learningDerivativeCandidateOutput));
-        gradients[8].add(learningDerivativeCandidateOutput);
+        Tensor derivatives = derivatives(outputError);
+        int rows = outputError.getShape()[0];
+        Tensor output = LEARNING_STATE.output;
+        inputGradients.add(Tensor.dotProductInto(Tensor.transpose(LEARNING_STATE.input), derivatives, inputGradientScratch));
+        gateColumns(recurrentGradients).add(Tensor.dotProductInto(Tensor.transpose(output), gateColumns(derivatives), gateGradientScratch));
+        int cells = rows * MEMORY_CELLS;
+        double[] updated = cellScratch[0];
+        double[] previousOutput = cellScratch[1];
+        LEARNING_NEXT_STATE.gates.toArray(packedScratch, 0);
+        KERNELS.sigmoid(packedScratch, cells, updated, 0, cells);
+        output.toArray(previousOutput, 0);
+        KERNELS.multiply(updated, 0, previousOutput, 0, updated, 0, cells);
+        updatedOutput = scratch(updatedOutput, rows, MEMORY_CELLS);
+        updatedOutput.setAll(updated, 0);
+        candidateColumns(recurrentGradients).add(Tensor.dotProductInto(Tensor.transpose(updatedOutput), candidateColumns(derivatives), candidateGradientScratch));
+        biasGradients.add(derivatives);
     }
 }
-
-
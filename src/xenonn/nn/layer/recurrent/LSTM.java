@@ -1,9 +1,8 @@
 package xenonn.nn.layer.recurrent;
 
+import xenonn.math.Kernels;
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
-import xenonn.nn.activation.ActivationFunction;
-import xenonn.nn.activation.Sigmoid;
-import xenonn.nn.activation.Tanh;
 import xenonn.nn.initialization.Initializer;
 import xenonn.nn.initialization.NullInitializer;
 import xenonn.nn.initialization.XavierInitializerNormal;
@@ -11,10 +10,18 @@ import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
 import xenonn.nn.layer.type.TrainableMemory;
 
+/**
+ * The four gates (forget, input, output, candidate) share packed [IN, 4 * MEMORY_CELLS] input,
+ * [MEMORY_CELLS, 4 * MEMORY_CELLS] recurrent and [1, 4 * MEMORY_CELLS] bias matrices, so a step is
+ * two matrix products, one bulk activation of the packed pre-activations and one pass over the
+ * memory cells. {@link #getWeights()} and {@link #getGradients()} still list input, recurrent and
+ * bias weights per gate, as views of the packed matrices.
+ */
 public class LSTM extends Layer implements Trainable, TrainableMemory {
 
-    private final ActivationFunction SIGMOID = new Sigmoid();
-    private final ActivationFunction TANH = new Tanh();
+    private static final int GATES = 4;
+
+    private static final Kernels KERNELS = Kernels.get();
     private final Initializer INITIALIZER;
 
     private int IN;
@@ -23,32 +30,46 @@ public class LSTM extends Layer implements Trainable, TrainableMemory {
     private final Tensor[] WEIGHTS;
     private int[][] weightShape = new int[12][];
 
+    private Tensor inputWeights;
+    private Tensor recurrentWeights;
+    private Tensor bias;
 
     private Tensor[] gradients = new Tensor[12];
 
-    private transient Tensor lastInput;
-    private Tensor memoryCell;
-    private transient Tensor activatedMemoryCell;
-    private transient Tensor candidateMemoryCell;
-    private transient Tensor activatedCandidateMemoryCell;
-    private Tensor outputCell;
-    private transient Tensor[] gates = new Tensor[9];
-
-    private transient Tensor learningLastInput;
-    private Tensor learningMemoryCell;
-    private transient Tensor learningActivatedMemoryCell;
-    private transient Tensor learningCandidateMemoryCell;
-    private transient Tensor learningActivatedCandidateMemoryCell;
-    private Tensor learningOutputCell;
-
-    private transient Tensor learningNextMemoryCell;
-    private transient Tensor learningNextActivatedMemoryCell;
-    private transient Tensor learningNextCandidateMemoryCell;
-    private transient Tensor learningNextActivatedCandidateMemoryCell;
-    private transient Tensor learningNextOutputCell;
-    private transient Tensor[] learningGates = new Tensor[9];
-    private transient Tensor[] learningGateDerivatives = new Tensor[9];
-    private transient Tensor candidateDerivative;
+    private Tensor inputGradients;
+    private Tensor recurrentGradients;
+    private Tensor biasGradients;
+
+    private Tensor inputGradientScratch;
+    private Tensor recurrentGradientScratch;
+
+    private final State STATE = new State();
+    private final State LEARNING_STATE = new State();
+    private final State LEARNING_NEXT_STATE = new State();
+
+    private transient Tensor recurrentProjection;
+    private transient Tensor gateDerivatives;
+
+    /**
+     * Working arrays of {@link #step(State, int)} and {@link #gateDerivatives(Tensor)}, two packed
+     * ones of GATES * cells values and six of cells values, where cells is the step's rows times
+     * MEMORY_CELLS. Sized by {@link #fitScratch(int)}.
+     */
+    private transient double[] packedScratch;
+    private transient double[] activationScratch;
+    private transient double[][] cellScratch;
+
+    /**
+     * Values of one step. Gates holds the packed pre-activations of the four gates.
+     */
+    private static final class State {
+        private Tensor input;
+        private Tensor memoryCell;
+        private Tensor activatedMemoryCell;
+        private Tensor outputCell;
+        private Tensor activatedCandidate;
+        private Tensor gates;
+    }
 
     public LSTM(int memoryCells) {
         this(memoryCells, new XavierInitializerNormal());
@@ -79,28 +100,55 @@ public class LSTM extends Layer implements Trainable, TrainableMemory {
         for (int i = 0; i < 12; i += 3) {
             System.arraycopy(repeatingWeightShape, 0, weightShape, i, 3);
         }
-        for (int i = 0; i < weightShape.length; i++) {
-            if (WEIGHTS[i] == null) {
-                WEIGHTS[i] = Tensor.zeros(weightShape[i]);
+        int packed = GATES * MEMORY_CELLS;
+        inputWeights = Tensor.zeros(dtype, IN, packed);
+        recurrentWeights = Tensor.zeros(dtype, MEMORY_CELLS, packed);
+        bias = Tensor.zeros(dtype, 1, packed);
+        Tensor[] given = WEIGHTS.clone();
+        sliceGates(inputWeights, recurrentWeights, bias, WEIGHTS);
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            if (given[i] != null) {
+                Tensor.copyInto(given[i], WEIGHTS[i]);
             }
-            gradients[i] = Tensor.zeros(weightShape[i]);
         }
-        for (int i = 0; i < learningGates.length; i++) {
-            gates[i] = Tensor.zeros(weightShape[i]);
-            learningGates[i] = Tensor.zeros(weightShape[i]);
+        inputGradients = Tensor.zeros(dtype, IN, packed);
+        recurrentGradients = Tensor.zeros(dtype, MEMORY_CELLS, packed);
+        biasGradients = Tensor.zeros(dtype, 1, packed);
+        sliceGates(inputGradients, recurrentGradients, biasGradients, gradients);
+        inputGradientScratch = Tensor.zeros(dtype, IN, packed);
+        recurrentGradientScratch = Tensor.zeros(dtype, MEMORY_CELLS, packed);
+        for (State state : new State[]{STATE, LEARNING_STATE, LEARNING_NEXT_STATE}) {
+            state.input = Tensor.zeros(dtype, inDimensions);
+            state.memoryCell = Tensor.zeros(dtype, 1, MEMORY_CELLS);
+            state.activatedMemoryCell = Tensor.zeros(dtype, 1, MEMORY_CELLS);
+            state.outputCell = Tensor.zeros(dtype, 1, MEMORY_CELLS);
+            state.activatedCandidate = Tensor.zeros(dtype, 1, MEMORY_CELLS);
+            state.gates = Tensor.zeros(dtype, 1, packed);
+        }
+        fitScratch(1);
+    }
+
+    private void fitScratch(int rows) {
+        int cells = rows * MEMORY_CELLS;
+        if (cellScratch != null && cellScratch[0].length == cells) {
+            return;
+        }
+        packedScratch = new double[GATES * cells];
+        activationScratch = new double[GATES * cells];
+        cellScratch = new double[6][cells];
+    }
+
+    /**
+     * Fills {@code views} with the input, recurrent and bias columns of each gate.
+     */
+    private void sliceGates(Tensor input, Tensor recurrent, Tensor bias, Tensor[] views) {
+        for (int gate = 0; gate < GATES; gate++) {
+            int start = gate * MEMORY_CELLS;
+            int end = start + MEMORY_CELLS;
+            views[gate * 3] = Tensor.slice(input, 1, start, end);
+            views[gate * 3 + 1] = Tensor.slice(recurrent, 1, start, end);
+            views[gate * 3 + 2] = Tensor.slice(bias, 1, start, end);
         }
-        lastInput = Tensor.zeros(inDimensions);
-        memoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        candidateMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        activatedMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        activatedCandidateMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        outputCell = Tensor.zeros(1, MEMORY_CELLS);
-        learningOutputCell = Tensor.zeros(1, MEMORY_CELLS);
-        learningLastInput = Tensor.zeros(inDimensions);
-        learningMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        learningCandidateMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        learningActivatedCandidateMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
-        learningActivatedMemoryCell = Tensor.zeros(1, MEMORY_CELLS);
     }
 
     @Override
@@ -108,36 +156,102 @@ public class LSTM extends Layer implements Trainable, TrainableMemory {
         return new int[]{1, MEMORY_CELLS};
     }
 
+    private State state() {
+        return learningOn ? LEARNING_STATE : STATE;
+    }
+
     @Override
     public Tensor feedForward(Tensor in) {
-        if (learningOn) {
-            learningLastInput = in.copy();
-            Tensor[] activatedGates = new Tensor[3]; //forget, input, output
-            for (int i = 0; i < activatedGates.length; i++) {
-                int index = i * 3;
-                learningGates[i] = Tensor.dotProduct(in, WEIGHTS[index]).add(Tensor.dotProduct(learningOutputCell, WEIGHTS[index + 1])).add(WEIGHTS[index + 2]);
-                activatedGates[i] = SIGMOID.value(learningGates[i]);
+        State state = state();
+        int rows = in.getShape()[0];
+        fitRows(state, rows);
+        Tensor.copyInto(in, state.input);
+        Tensor.dotProductInto(in, inputWeights, state.gates);
+        step(state, rows);
+        return state.outputCell.copy();
+    }
+
+    /**
+     * Projects every step of the sequence onto the input weights in one matrix product, so only
+     * the recurrent product is left to the steps.
+     */
+    @Override
+    public Tensor feedForwardSequence(Tensor sequence, double[] memories, double[] inputs, int step) {
+        State state = state();
+        fitRows(state, 1);
+        int steps = sequence.getShape()[0];
+        Tensor projections = Tensor.dotProduct(sequence, inputWeights);
+        Tensor outputs = Tensor.zeros(dtype, steps, MEMORY_CELLS);
+        for (int t = 0; t < steps; t++) {
+            if (memories != null) {
+                writeMemory(memories, step + t);
+            }
+            Tensor.copyInto(Tensor.slice(sequence, 0, t, t + 1), state.input);
+            Tensor.copyInto(Tensor.slice(projections, 0, t, t + 1), state.gates);
+            step(state, 1);
+            Tensor.copyInto(state.outputCell, Tensor.slice(outputs, 0, t, t + 1));
+            if (inputs != null) {
+                writeInput(inputs, step + t);
             }
-            learningCandidateMemoryCell = Tensor.dotProduct(in, WEIGHTS[9]).add(Tensor.dotProduct(learningOutputCell, WEIGHTS[10])).add(WEIGHTS[11]);
-            learningActivatedCandidateMemoryCell = TANH.value(learningCandidateMemoryCell);
-            learningMemoryCell = Tensor.multiply(activatedGates[0], learningMemoryCell).add(Tensor.multiply(activatedGates[1], learningCandidateMemoryCell));
-            learningActivatedMemoryCell = TANH.value(learningMemoryCell);
-            learningOutputCell = Tensor.multiply(activatedGates[2], learningActivatedMemoryCell);
-            return learningOutputCell.copy();
         }
-        lastInput = in.copy();
-        Tensor[] activatedGates = new Tensor[3]; //forget, input, output
-        for (int i = 0; i < activatedGates.length; i++) {
-            int index = i * 3;
-            gates[i] = Tensor.dotProduct(in, WEIGHTS[index]).add(Tensor.dotProduct(outputCell, WEIGHTS[index + 1])).add(WEIGHTS[index + 2]);
-            activatedGates[i] = SIGMOID.value(gates[i]);
+        if (memories != null) {
+            writeMemory(memories, step + steps);
         }
-        candidateMemoryCell = Tensor.dotProduct(in, WEIGHTS[9]).add(Tensor.dotProduct(outputCell, WEIGHTS[10])).add(WEIGHTS[11]);
-        activatedCandidateMemoryCell = TANH.value(candidateMemoryCell);
-        memoryCell = Tensor.multiply(activatedGates[0], memoryCell).add(Tensor.multiply(activatedGates[1], candidateMemoryCell));
-        activatedMemoryCell = TANH.value(memoryCell);
-        outputCell = Tensor.multiply(activatedGates[2], activatedMemoryCell);
-        return outputCell.copy();
+        return outputs;
+    }
+
+    /**
+     * Finishes a step whose input projection is already in the gates of {@code state}.
+     */
+    private void step(State state, int rows) {
+        Tensor gates = state.gates;
+        if (recurrentProjection == null || recurrentProjection.getShape()[0] != rows) {
+            recurrentProjection = Tensor.zeros(dtype, rows, GATES * MEMORY_CELLS);
+        }
+        gates.add(Tensor.dotProductInto(state.outputCell, recurrentWeights, recurrentProjection)).add(bias);
+        fitScratch(rows);
+        int cells = rows * MEMORY_CELLS;
+        double[] preActivations = packedScratch;
+        double[] activations = activationScratch;
+        double[] memory = cellScratch[0];
+        double[] activatedMemory = cellScratch[1];
+        double[] output = cellScratch[2];
+        gates.toArray(preActivations, 0);
+        KERNELS.sigmoid(preActivations, 0, activations, 0, 3 * cells);
+        KERNELS.tanh(preActivations, 3 * cells, activations, 3 * cells, cells);
+        state.memoryCell.toArray(memory, 0);
+        for (int i = 0; i < cells; i++) {
+            memory[i] = activations[i] * memory[i] + activations[cells + i] * preActivations[3 * cells + i];
+        }
+        KERNELS.tanh(memory, 0, activatedMemory, 0, cells);
+        for (int i = 0; i < cells; i++) {
+            output[i] = activations[2 * cells + i] * activatedMemory[i];
+        }
+        state.memoryCell.setAll(memory, 0);
+        state.activatedMemoryCell.setAll(activatedMemory, 0);
+        state.outputCell.setAll(output, 0);
+        state.activatedCandidate.setAll(activations, 3 * cells);
+    }
+
+    /**
+     * Gives the state one row per sample, spreading a single row across the batch. A state of any
+     * other row count belongs to a batch of another size, so it starts again from zero.
+     */
+    private void fitRows(State state, int rows) {
+        if (state.gates.getShape()[0] == rows) {
+            return;
+        }
+        state.memoryCell = spread(state.memoryCell, rows);
+        state.outputCell = spread(state.outputCell, rows);
+        state.activatedMemoryCell = Tensor.zeros(dtype, rows, MEMORY_CELLS);
+        state.activatedCandidate = Tensor.zeros(dtype, rows, MEMORY_CELLS);
+        state.gates = Tensor.zeros(dtype, rows, GATES * MEMORY_CELLS);
+        state.input = Tensor.zeros(dtype, rows, IN);
+    }
+
+    private Tensor spread(Tensor cells, int rows) {
+        Tensor spread = Tensor.zeros(dtype, rows, MEMORY_CELLS);
+        return cells.getShape()[0] == 1 ? spread.add(cells) : spread;
     }
 
     @Override
@@ -145,21 +259,61 @@ public class LSTM extends Layer implements Trainable, TrainableMemory {
         return WEIGHTS;
     }
 
+    /**
+     * Moves the packed matrices and slices the per-gate views again.
+     */
+    @Override
+    public void moveWeights(MemoryScope scope) {
+        inputWeights.moveTo(scope);
+        recurrentWeights.moveTo(scope);
+        bias.moveTo(scope);
+        sliceGates(inputWeights, recurrentWeights, bias, WEIGHTS);
+    }
 
     @Override
     public Tensor getDelta(Tensor outputError) {
-        Tensor derivativeCell = Tensor.multiply(outputError, TANH.derivative(learningNextMemoryCell));
-        Tensor derivativeActivatedOutputGate = Tensor.multiply(outputError, learningNextActivatedMemoryCell);
-        learningGateDerivatives[0] = Tensor.multiply(Tensor.multiply(derivativeCell, learningMemoryCell), SIGMOID.derivative(learningGates[0]));
-        learningGateDerivatives[1] = Tensor.multiply(Tensor.multiply(derivativeCell, learningNextActivatedCandidateMemoryCell), SIGMOID.derivative(learningGates[1]));
-        learningGateDerivatives[2] = Tensor.multiply(derivativeActivatedOutputGate, SIGMOID.derivative(learningGates[2]));
-        Tensor[] gateErrors = new Tensor[3];
-        for (int i = 0; i < gateErrors.length; i++) {
-            gateErrors[i] = Tensor.dotProduct(learningGateDerivatives[i], Tensor.transpose(WEIGHTS[i * 3]));
+        Tensor derivatives = gateDerivatives(outputError);
+        return Tensor.dotProductInto(derivatives, Tensor.transpose(inputWeights), temporary(outputError.getShape()[0], IN));
+    }
+
+    /**
+     * Derivatives of the loss with respect to the packed gate pre-activations of the current step.
+     */
+    private Tensor gateDerivatives(Tensor outputError) {
+        int rows = outputError.getShape()[0];
+        if (gateDerivatives == null || gateDerivatives.getShape()[0] != rows) {
+            gateDerivatives = Tensor.zeros(dtype, rows, GATES * MEMORY_CELLS);
+        }
+        State next = LEARNING_NEXT_STATE;
+        fitScratch(rows);
+        int cells = rows * MEMORY_CELLS;
+        double[] gates = packedScratch;
+        double[] derivatives = activationScratch;
+        double[] error = cellScratch[0];
+        double[] inputGate = cellScratch[1];
+        double[] memoryDerivative = cellScratch[2];
+        double[] memory = cellScratch[3];
+        double[] activatedMemory = cellScratch[4];
+        double[] activatedCandidate = cellScratch[5];
+        outputError.toArray(error, 0);
+        next.gates.toArray(gates, 0);
+        KERNELS.sigmoidDerivative(gates, 0, derivatives, 0, 3 * cells);
+        KERNELS.tanhDerivative(gates, 3 * cells, derivatives, 3 * cells, cells);
+        KERNELS.sigmoid(gates, cells, inputGate, 0, cells);
+        next.memoryCell.toArray(memoryDerivative, 0);
+        KERNELS.tanhDerivative(memoryDerivative, 0, memoryDerivative, 0, cells);
+        LEARNING_STATE.memoryCell.toArray(memory, 0);
+        next.activatedMemoryCell.toArray(activatedMemory, 0);
+        next.activatedCandidate.toArray(activatedCandidate, 0);
+        for (int i = 0; i < cells; i++) {
+            double derivativeCell = error[i] * memoryDerivative[i];
+            derivatives[i] = derivativeCell * memory[i] * derivatives[i];
+            derivatives[cells + i] = derivativeCell * activatedCandidate[i] * derivatives[cells + i];
+            derivatives[2 * cells + i] = error[i] * activatedMemory[i] * derivatives[2 * cells + i];
+            derivatives[3 * cells + i] = derivativeCell * inputGate[i] * derivatives[3 * cells + i];
         }
-        candidateDerivative = Tensor.multiply(Tensor.multiply(derivativeCell, SIGMOID.value(learningGates[1])), TANH.derivative(learningNextCandidateMemoryCell));
-        Tensor candidateError = Tensor.dotProduct(candidateDerivative, Tensor.transpose(WEIGHTS[9]));
-        return Tensor.add(Tensor.add(gateErrors[0], gateErrors[1]), Tensor.add(gateErrors[2], candidateError));
+        gateDerivatives.setAll(derivatives, 0);
+        return gateDerivatives;
     }
 
     @Override
@@ -179,116 +333,114 @@ public class LSTM extends Layer implements Trainable, TrainableMemory {
 
     @Override
     public void setMemory(Tensor[] memory) {
-        if (learningOn) {
-            learningMemoryCell = memory[0].copy();
-            learningActivatedMemoryCell = memory[1].copy();
-            learningCandidateMemoryCell = memory[2].copy();
-            learningOutputCell = memory[3].copy();
-            learningActivatedCandidateMemoryCell = memory[4].copy();
-            return;
-        }
-        memoryCell = memory[0].copy();
-        activatedMemoryCell = memory[1].copy();
-        candidateMemoryCell = memory[2].copy();
-        outputCell = memory[3].copy();
-        activatedCandidateMemoryCell = memory[4].copy();
+        State state = state();
+        state.memoryCell = memory[0].copy();
+        state.activatedMemoryCell = memory[1].copy();
+        state.outputCell = memory[2].copy();
+        state.activatedCandidate = memory[3].copy();
+        state.gates = memory[4].copy();
     }
 
     @Override
     public void setNextMemory(Tensor[] memory) {
-        learningNextMemoryCell = memory[0].copy();
-        learningNextActivatedMemoryCell = memory[1].copy();
-        learningNextCandidateMemoryCell = memory[2].copy();
-        learningNextOutputCell = memory[3].copy();
-        learningNextActivatedCandidateMemoryCell = memory[4].copy();
-        for (int i = 5; i < memory.length; i++) {
-            learningGates[i - 5] = memory[i].copy();
-        }
+        LEARNING_NEXT_STATE.memoryCell = memory[0].copy();
+        LEARNING_NEXT_STATE.activatedMemoryCell = memory[1].copy();
+        LEARNING_NEXT_STATE.outputCell = memory[2].copy();
+        LEARNING_NEXT_STATE.activatedCandidate = memory[3].copy();
+        LEARNING_NEXT_STATE.gates = memory[4].copy();
     }
 
     @Override
     public void setInput(Tensor input) {
-        if (learningOn) {
-            learningLastInput = input.copy();
-            return;
-        }
-        lastInput = input.copy();
+        state().input = input.copy();
     }
 
     @Override
     public void resetMemory() {
-        if (learningOn) {
-            learningMemoryCell.zero();
-            learningOutputCell.zero();
-            return;
-        }
-        memoryCell.zero();
-        outputCell.zero();
+        State state = state();
+        state.memoryCell.zero();
+        state.outputCell.zero();
     }
 
     @Override
     public Tensor[] getMemory() {
-        if (learningOn) {
-            Tensor[] memory = new Tensor[5 + gates.length];
-            memory[0] = learningMemoryCell.copy();
-            memory[1] = learningActivatedMemoryCell.copy();
-            memory[2] = learningCandidateMemoryCell.copy();
-            memory[3] = learningOutputCell.copy();
-            memory[4] = learningActivatedCandidateMemoryCell.copy();
-            for (int i = 5; i < memory.length; i++) {
-                memory[i] = learningGates[i - 5].copy();
-            }
-            return memory;
-        }
-        Tensor[] memory = new Tensor[5 + gates.length];
-        memory[0] = memoryCell.copy();
-        memory[1] = activatedMemoryCell.copy();
-        memory[2] = candidateMemoryCell.copy();
-        memory[3] = outputCell.copy();
-        memory[4] = activatedCandidateMemoryCell.copy();
-        for (int i = 5; i < memory.length; i++) {
-            memory[i] = gates[i - 5].copy();
-        }
-        return memory;
+        State state = state();
+        return new Tensor[]{state.memoryCell.copy(), state.activatedMemoryCell.copy(), state.outputCell.copy(),
+                state.activatedCandidate.copy(), state.gates.copy()};
     }
 
     @Override
     public Tensor getInput() {
-        if (learningOn) {
-            return learningLastInput.copy();
+        return state().input.copy();
+    }
+
+    /**
+     * The tensors of a state that make up its memory, in the order of {@link #getMemory()}.
+     */
+    private static Tensor[] memory(State state) {
+        return new Tensor[]{state.memoryCell, state.activatedMemoryCell, state.outputCell, state.activatedCandidate, state.gates};
+    }
+
+    /**
+     * A slot holds one row of memory: four cell vectors and the packed gates.
+     */
+    @Override
+    public int memorySize() {
+        return (4 + GATES) * MEMORY_CELLS;
+    }
+
+    @Override
+    public int inputSize() {
+        return IN;
+    }
+
+    @Override
+    public void writeMemoryAt(double[] slab, int offset) {
+        TrainableMemory.write(memory(singleRow(state())), slab, offset);
+    }
+
+    @Override
+    public void readMemoryAt(double[] slab, int offset) {
+        State state = state();
+        fitRows(state, 1);
+        TrainableMemory.read(slab, offset, memory(state));
+    }
+
+    @Override
+    public void readNextMemoryAt(double[] slab, int offset) {
+        fitRows(LEARNING_NEXT_STATE, 1);
+        TrainableMemory.read(slab, offset, memory(LEARNING_NEXT_STATE));
+    }
+
+    @Override
+    public void writeInputAt(double[] slab, int offset) {
+        singleRow(state()).input.toArray(slab, offset);
+    }
+
+    @Override
+    public void readInputAt(double[] slab, int offset) {
+        State state = state();
+        fitRows(state, 1);
+        state.input.setAll(slab, offset);
+    }
+
+    private State singleRow(State state) {
+        if (state.gates.getShape()[0] != 1) {
+            throw new RuntimeException("A memory slot holds one row, the state holds " + state.gates.getShape()[0]);
         }
-        return lastInput.copy();
+        return state;
     }
 
     @Override
     public Tensor getMemoryDelta(Tensor delta) {
-        Tensor[] gateErrors = new Tensor[3];
-        for (int i = 0; i < gateErrors.length; i++) {
-            gateErrors[i] = Tensor.dotProduct(learningGateDerivatives[i], Tensor.transpose(WEIGHTS[i * 3 + 1]));
-        }
-        Tensor candidateError = Tensor.dotProduct(candidateDerivative, Tensor.transpose(WEIGHTS[10]));
-        return candidateError.add(gateErrors[0]).add(gateErrors[1]).add(gateErrors[2]);
+        return Tensor.dotProductInto(gateDerivatives, Tensor.transpose(recurrentWeights), temporary(gateDerivatives.getShape()[0], MEMORY_CELLS));
     }
 
     @Override
     public void calculateGradients(Tensor outputError) {
-        Tensor derivativeCell = Tensor.multiply(outputError, TANH.derivative(learningNextMemoryCell));
-        Tensor derivativeActivatedOutputGate = Tensor.multiply(outputError, learningNextActivatedMemoryCell);
-        learningGateDerivatives[0] = Tensor.multiply(derivativeCell, learningMemoryCell).multiply(SIGMOID.derivative(learningGates[0]));
-        learningGateDerivatives[1] = Tensor.multiply(derivativeCell, learningNextActivatedCandidateMemoryCell).multiply(SIGMOID.derivative(learningGates[1]));
-        learningGateDerivatives[2] = Tensor.multiply(derivativeActivatedOutputGate, SIGMOID.derivative(learningGates[2]));
-        for (int i = 0; i < 3; i++) {
-            int index = i * 3;
-            gradients[index].add(Tensor.dotProduct(Tensor.transpose(learningLastInput), learningGateDerivatives[i]));
-            gradients[index + 1].add(Tensor.dotProduct(Tensor.transpose(learningOutputCell), learningGateDerivatives[i]));
-            gradients[index + 2].add(learningGateDerivatives[i]);
-        }
-        //candidateDerivative = Tensor.multiply(Tensor.multiply(derivativeCell, SIGMOID.value(learningGates[1])), TANH.derivative(learningNextCandidateMemoryCell));
-        candidateDerivative = Tensor.multiply(derivativeCell, SIGMOID.value(learningGates[1])).multiply(TANH.derivative(learningNextCandidateMemoryCell));
-        gradients[9].add(Tensor.dotProduct(Tensor.transpose(learningLastInput), candidateDerivative));
-        gradients[10].add(Tensor.dotProduct(Tensor.transpose(learningOutputCell), candidateDerivative));
-        gradients[11].add(candidateDerivative);
+        Tensor derivatives = gateDerivatives(outputError);
+        inputGradients.add(Tensor.dotProductInto(Tensor.transpose(LEARNING_STATE.input), derivatives, inputGradientScratch));
+        recurrentGradients.add(Tensor.dotProductInto(Tensor.transpose(LEARNING_STATE.outputCell), derivatives, recurrentGradientScratch));
+        biasGradients.add(derivatives);
     }
 }
-
-
@@ -59,16 +59,16 @@ public class Recurrent extends Layer implements Trainable, TrainableMemory {
         weightShape = new int[][]{{IN, MEMORY_CELLS}, {MEMORY_CELLS, MEMORY_CELLS}, {1, MEMORY_CELLS}};
         for (int i = 0; i < weightShape.length; i++) {
             if (WEIGHTS[i] == null) {
-                WEIGHTS[i] = Tensor.zeros(weightShape[i]);
+                WEIGHTS[i] = Tensor.zeros(dtype, weightShape[i]);
             }
-            memoryGradients[i] = Tensor.zeros(weightShape[i]);
+            memoryGradients[i] = Tensor.zeros(dtype, weightShape[i]);
         }
-        lastInput = Tensor.zeros(inDimensions);
-        learningLastInput = Tensor.zeros(inDimensions);
-        learningActivatedMemory = Tensor.zeros(weightShape[2]);
-        lastMemory = Tensor.zeros(weightShape[2]);
-        learningLastMemory = Tensor.zeros(weightShape[2]);
-        activatedMemory = Tensor.zeros(weightShape[2]);
+        lastInput = Tensor.zeros(dtype, inDimensions);
+        learningLastInput = Tensor.zeros(dtype, inDimensions);
+        learningActivatedMemory = Tensor.zeros(dtype, weightShape[2]);
+        lastMemory = Tensor.zeros(dtype, weightShape[2]);
+        learningLastMemory = Tensor.zeros(dtype, weightShape[2]);
+        activatedMemory = Tensor.zeros(dtype, weightShape[2]);
     }
 
     @Override
@@ -78,16 +78,48 @@ public class Recurrent extends Layer implements Trainable, TrainableMemory {
 
     @Override
     public Tensor feedForward(Tensor in) {
+        return step(in, Tensor.dotProduct(in, WEIGHTS[0]));
+    }
+
+    /**
+     * Projects every step of the sequence onto the input weights in one matrix product, so only
+     * the recurrent product is left to the steps.
+     */
+    @Override
+    public Tensor feedForwardSequence(Tensor sequence, double[] memories, double[] inputs, int step) {
+        int steps = sequence.getShape()[0];
+        Tensor projections = Tensor.dotProduct(sequence, WEIGHTS[0]);
+        Tensor outputs = Tensor.zeros(dtype, steps, MEMORY_CELLS);
+        for (int t = 0; t < steps; t++) {
+            if (memories != null) {
+                writeMemory(memories, step + t);
+            }
+            Tensor out = step(Tensor.slice(sequence, 0, t, t + 1), Tensor.slice(projections, 0, t, t + 1).copy());
+            Tensor.copyInto(out, Tensor.slice(outputs, 0, t, t + 1));
+            if (inputs != null) {
+                writeInput(inputs, step + t);
+            }
+        }
+        if (memories != null) {
+            writeMemory(memories, step + steps);
+        }
+        return outputs;
+    }
+
+    /**
+     * One step of {@code in}, given its projection onto the input weights.
+     */
+    private Tensor step(Tensor in, Tensor projection) {
         if (learningOn) {
             learningLastInput = in.copy();
             //learningLastMemory = Tensor.add(Tensor.add(Tensor.dotProduct(in, WEIGHTS[0]), Tensor.dotProduct(learningActivatedMemory, WEIGHTS[1])), WEIGHTS[2]);
-            learningLastMemory = Tensor.dotProduct(in, WEIGHTS[0]).add(Tensor.dotProduct(learningActivatedMemory, WEIGHTS[1])).add(WEIGHTS[2]);
+            learningLastMemory = projection.add(Tensor.dotProduct(learningActivatedMemory, WEIGHTS[1])).add(WEIGHTS[2]);
             learningActivatedMemory = ACTIVATION_FUNCTION.value(learningLastMemory);
             return learningActivatedMemory.copy();
         }
         lastInput = in.copy();
         //lastMemory = Tensor.add(Tensor.add(Tensor.dotProduct(in, WEIGHTS[0]), Tensor.dotProduct(activatedMemory, WEIGHTS[1])), WEIGHTS[2]);
-        learningLastMemory = Tensor.dotProduct(in, WEIGHTS[0]).add(Tensor.dotProduct(activatedMemory, WEIGHTS[1])).add(WEIGHTS[2]);
+        learningLastMemory = projection.add(Tensor.dotProduct(activatedMemory, WEIGHTS[1])).add(WEIGHTS[2]);
         activatedMemory = ACTIVATION_FUNCTION.value(lastMemory);
         return activatedMemory.copy();
     }
@@ -172,6 +204,60 @@ public class Recurrent extends Layer implements Trainable, TrainableMemory {
         return lastInput.copy();
     }
 
+    private Tensor[] memory() {
+        if (learningOn) {
+            return new Tensor[]{learningLastMemory, learningActivatedMemory};
+        }
+        return new Tensor[]{lastMemory, activatedMemory};
+    }
+
+    private Tensor input() {
+        return learningOn ? learningLastInput : lastInput;
+    }
+
+    @Override
+    public int memorySize() {
+        return TrainableMemory.size(memory());
+    }
+
+    @Override
+    public int inputSize() {
+        return input().size();
+    }
+
+    @Override
+    public void writeMemoryAt(double[] slab, int offset) {
+        TrainableMemory.write(memory(), slab, offset);
+    }
+
+    @Override
+    public void readMemoryAt(double[] slab, int offset) {
+        TrainableMemory.read(slab, offset, memory());
+    }
+
+    /**
+     * Reads the memory into the next memory derivative before taking its derivative in place.
+     */
+    @Override
+    public void readNextMemoryAt(double[] slab, int offset) {
+        if (learningNextMemoryDerivative == null) {
+            learningNextMemoryDerivative = Tensor.zeros(dtype, weightShape[2]);
+            learningNextActivatedMemory = Tensor.zeros(dtype, weightShape[2]);
+        }
+        TrainableMemory.read(slab, offset, new Tensor[]{learningNextMemoryDerivative, learningNextActivatedMemory});
+        ACTIVATION_FUNCTION.derivativeInto(learningNextMemoryDerivative, learningNextMemoryDerivative);
+    }
+
+    @Override
+    public void writeInputAt(double[] slab, int offset) {
+        input().toArray(slab, offset);
+    }
+
+    @Override
+    public void readInputAt(double[] slab, int offset) {
+        input().setAll(slab, offset);
+    }
+
     @Override
     public Tensor getMemoryDelta(Tensor delta) {
         return Tensor.dotProduct(Tensor.multiply(delta, learningNextMemoryDerivative), Tensor.transpose(WEIGHTS[1]));
@@ -1,5 +1,6 @@
 package xenonn.nn.layer.type;
 
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
 
 public interface Trainable {
@@ -12,4 +13,23 @@ public interface Trainable {
 
     Tensor[] getWeights();
 
+    /**
+     * Moves the weights into off-heap storage owned by {@code scope}. Layers whose weights are
+     * views of larger tensors move those instead, so the views stay connected.
+     */
+    default void moveWeights(MemoryScope scope) {
+        Tensor[] weights = getWeights();
+        for (int i = 0; i < weights.length; i++) {
+            weights[i].moveTo(scope);
+        }
+    }
+
+    /**
+     * Called after the tensors of {@link #getWeights()} were changed in place, as optimizers do on
+     * every step. Layers keeping values derived from their weights drop them here.
+     */
+    default void weightsChanged() {
+
+    }
+
 }
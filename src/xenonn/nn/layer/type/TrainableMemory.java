@@ -2,6 +2,13 @@ package xenonn.nn.layer.type;
 
 import xenonn.math.Tensor;
 
+/**
+ * Besides the Tensor[] copies of {@link #getMemory()}, the memory and input of a step can be
+ * written into and read back from a slab owned by the caller: a double[] holding step after step,
+ * {@link #memorySize()} or {@link #inputSize()} values each. Reading a step back fills the layer's
+ * own tensors without allocating. The step methods find the slot and hand its offset to the
+ * methods ending in At, which layers override. Their defaults go through the Tensor[] methods.
+ */
 public interface TrainableMemory extends Trainable {
 
     void setMemory(Tensor[] memory);
@@ -19,4 +26,122 @@ public interface TrainableMemory extends Trainable {
     Tensor getMemoryDelta(Tensor delta);
 
     void calculateGradients(Tensor outputError);
+
+    /**
+     * Feeds the rows of a {T, ...} sequence through the layer as T consecutive steps, starting from
+     * the current memory, and returns the {T, ...} outputs. The memory is left as after the last
+     * step. When not null, {@code memories} receives the memory before every step and after the
+     * last one and {@code inputs} the input of every step, in the slots of steps {@code step} on.
+     */
+    Tensor feedForwardSequence(Tensor sequence, double[] memories, double[] inputs, int step);
+
+    default int memorySize() {
+        Tensor[] memory = getMemory();
+        return memory == null ? 0 : size(memory);
+    }
+
+    default int inputSize() {
+        Tensor input = getInput();
+        return input == null ? 0 : input.size();
+    }
+
+    /**
+     * Writes the memory into the slot of {@code step}.
+     */
+    default void writeMemory(double[] slab, int step) {
+        writeMemoryAt(slab, step * memorySize());
+    }
+
+    /**
+     * Sets the memory to the one in the slot of {@code step}, like {@link #setMemory(Tensor[])}.
+     */
+    default void readMemory(double[] slab, int step) {
+        readMemoryAt(slab, step * memorySize());
+    }
+
+    /**
+     * Sets the next memory to the one in the slot of {@code step}, like
+     * {@link #setNextMemory(Tensor[])}.
+     */
+    default void readNextMemory(double[] slab, int step) {
+        readNextMemoryAt(slab, step * memorySize());
+    }
+
+    default void writeInput(double[] slab, int step) {
+        writeInputAt(slab, step * inputSize());
+    }
+
+    default void readInput(double[] slab, int step) {
+        readInputAt(slab, step * inputSize());
+    }
+
+    /**
+     * Writes the memory into the slab from {@code offset}, so a layer holding other layers can
+     * give each a part of its own slot.
+     */
+    default void writeMemoryAt(double[] slab, int offset) {
+        Tensor[] memory = getMemory();
+        if (memory != null) {
+            write(memory, slab, offset);
+        }
+    }
+
+    default void readMemoryAt(double[] slab, int offset) {
+        Tensor[] memory = getMemory();
+        if (memory != null) {
+            read(slab, offset, memory);
+            setMemory(memory);
+        }
+    }
+
+    default void readNextMemoryAt(double[] slab, int offset) {
+        Tensor[] memory = getMemory();
+        if (memory != null) {
+            read(slab, offset, memory);
+            setNextMemory(memory);
+        }
+    }
+
+    default void writeInputAt(double[] slab, int offset) {
+        Tensor input = getInput();
+        if (input != null) {
+            input.toArray(slab, offset);
+        }
+    }
+
+    default void readInputAt(double[] slab, int offset) {
+        Tensor input = getInput();
+        if (input != null) {
+            input.setAll(slab, offset);
+            setInput(input);
+        }
+    }
+
+    static int size(Tensor[] tensors) {
+        int size = 0;
+        for (int i = 0; i < tensors.length; i++) {
+            size += tensors[i].size();
+        }
+        return size;
+    }
+
+    /**
+     * Writes {@code tensors} one after another into the slab from {@code offset}.
+     */
+    static void write(Tensor[] tensors, double[] slab, int offset) {
+        for (int i = 0; i < tensors.length; i++) {
+            tensors[i].toArray(slab, offset);
+            offset += tensors[i].size();
+        }
+    }
+
+    /**
+     * Fills {@code tensors} one after another from the slab from {@code offset}.
+     */
+    static void read(double[] slab, int offset, Tensor[] tensors) {
+        for (int i = 0; i < tensors.length; i++) {
+            tensors[i].setAll(slab, offset);
+            offset += tensors[i].size();
+        }
+    }
 }
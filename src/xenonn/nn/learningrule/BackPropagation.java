@@ -3,6 +3,7 @@ package xenonn.nn.learningrule;
 import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
+import xenonn.nn.layer.type.TrainableMemory;
 import xenonn.nn.loss.Loss;
 import xenonn.nn.model.Model;
 import xenonn.nn.optimizer.Optimizer;
@@ -16,12 +17,24 @@ public class BackPropagation extends GradientBasedOptimizer {
 
     private final Optimizer OPTIMIZER;
 
+    /**
+     * Whether a batch can go through the layers as one tensor. Layers with memory step through
+     * one sample at a time and layers like batch normalization treat a batch as a whole, so with
+     * either the samples are propagated one by one.
+     */
+    private final boolean STACK_BATCHES;
+
     private Tensor[][] weightGradients;
 
     public BackPropagation(Model model, Optimizer optimizer, Loss loss) {
         super(model, loss);
         OPTIMIZER = optimizer;
         weightGradients = new Tensor[model.getLayers().length][];
+        boolean stackBatches = true;
+        for (int i = 0; i < NUM_LAYERS; i++) {
+            stackBatches &= LAYERS[i].independentSamples() && !(LAYERS[i] instanceof TrainableMemory);
+        }
+        STACK_BATCHES = stackBatches;
     }
 
 
@@ -32,10 +45,12 @@ public class BackPropagation extends GradientBasedOptimizer {
             System.err.println("No training set");
         } else {
             for (int i = 0; i < iterations; i++) {
+                List<Integer> indices = new ArrayList<>(batchSize);
                 for (int j = 0; j < batchSize; j++) {
-                    int index = (int) (Math.random() * trainIn.size());
-                    backPropagate(trainIn.get(index), trainOut.get(index));
+                    indices.add((int) (Math.random() * trainIn.size()));
                 }
+                BatchRunner main = new BatchRunner(indices, 0, batchSize);
+                main.run();
                 step();
             }
         }
@@ -71,6 +86,10 @@ public class BackPropagation extends GradientBasedOptimizer {
     public Tensor trainOnError(Tensor error, boolean returnInputError) {
         MODEL.learn(true);
         Tensor inputError = backPropagateOnError(error, returnInputError);
+        if (inputError != null) {
+            inputError = inputError.copy();
+        }
+        ARENA.reset();
         MODEL.learn(false);
         return inputError;
     }
@@ -97,13 +116,7 @@ public class BackPropagation extends GradientBasedOptimizer {
             Trainable trainableLayer = ((Trainable) currentLayer);
             trainableLayer.setOutputError(outputError);
             Tensor[] layerGradients = trainableLayer.getGradients();
-            if (weightGradients[layerIndex] == null) {
-                weightGradients[layerIndex] = layerGradients;
-            } else {
-                for (int j = 0; j < weightGradients[layerIndex].length; j++) {
-                    weightGradients[layerIndex][j].add(layerGradients[j]);
-                }
-            }
+            weightGradients[layerIndex] = accumulate(weightGradients[layerIndex], layerGradients);
         }
         return (layerIndex == 0 && !returnInputError) ? null : currentLayer.getDelta(outputError);
     }
@@ -119,8 +132,14 @@ public class BackPropagation extends GradientBasedOptimizer {
                 }
             }
         }
+        ARENA.reset();
     }
 
+    /**
+     * Stacks the samples of a batch along the first dimension and propagates them together, so
+     * each layer runs once per batch, unless the model can't take a batch as one tensor. Samples
+     * without an expected output are skipped.
+     */
     private class BatchRunner {
 
         private final List<Integer> INDICES;
@@ -134,9 +153,26 @@ public class BackPropagation extends GradientBasedOptimizer {
         }
 
         public void run() {
+            if (!STACK_BATCHES) {
+                for (int i = START_INDEX; i < END_INDEX; i++) {
+                    int index = INDICES.get(i);
+                    if (trainOut.get(index) != null) {
+                        backPropagate(trainIn.get(index), trainOut.get(index));
+                    }
+                }
+                return;
+            }
+            List<Tensor> in = new ArrayList<>(END_INDEX - START_INDEX);
+            List<Tensor> out = new ArrayList<>(END_INDEX - START_INDEX);
             for (int i = START_INDEX; i < END_INDEX; i++) {
                 int index = INDICES.get(i);
-                backPropagate(trainIn.get(index), trainOut.get(index));
+                if (trainOut.get(index) != null) {
+                    in.add(trainIn.get(index));
+                    out.add(trainOut.get(index));
+                }
+            }
+            if (!in.isEmpty()) {
+                backPropagate(Tensor.stack(in.toArray(new Tensor[0])), Tensor.stack(out.toArray(new Tensor[0])));
             }
         }
     }
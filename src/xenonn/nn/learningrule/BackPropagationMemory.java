@@ -9,8 +9,20 @@ import xenonn.nn.model.Model;
 import xenonn.nn.optimizer.Optimizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Errors reaching a memory layer are collected per step and propagated back through time in one
+ * sweep per step of the optimizer, so a batch costs one backward pass over the sequence however
+ * many targets it has. With {@link #setTruncation(int, int)} the steps are split into chunks whose
+ * errors only travel back a fixed number of steps.
+ * <p>
+ * The memory and inputs of every step are cached as far as the targets need them, fed forward
+ * from the last cached step. Each memory layer writes them into slabs of its own, one double[]
+ * for its memory and one for its inputs, which are kept across training calls. After an optimizer step the cache is dropped, or kept for up to
+ * {@link #setStaleness(int)} steps.
+ */
 public class BackPropagationMemory extends GradientBasedOptimizer {
 
 
@@ -18,8 +30,18 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
 
     private Tensor[][] weightGradients;
 
-    private ArrayList<Tensor[]>[] memoryCells;
-    private ArrayList<Tensor>[] inputs;
+    private final double[][] MEMORIES;
+    private final double[][] INPUTS;
+    private int cachedSteps;
+    private Tensor[][] memoryErrors;
+    private int firstError = Integer.MAX_VALUE;
+    private int lastError = -1;
+
+    private int truncationInterval = Integer.MAX_VALUE;
+    private int truncationLength = Integer.MAX_VALUE;
+
+    private int staleness;
+    private int stepsSinceRefresh;
 
     private Tensor[][] initialMemory;
     private final int[] MEMORY_LAYER_INDICES;
@@ -29,6 +51,7 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
 
     private final boolean TRAIN_MEMORY;
     private final boolean TRAIN_NORMAL;
+    private final boolean SEQUENCE_FORWARD;
 
 
     public BackPropagationMemory(Model model, Optimizer optimizer, Loss loss) {
@@ -51,14 +74,43 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
             }
         }
         MEMORY_LAYER_NUM = memoryLayerNum;
-        memoryCells = new ArrayList[MEMORY_LAYER_NUM];
-        inputs = new ArrayList[MEMORY_LAYER_NUM];
+        boolean sequenceForward = true;
+        for (int i = 0; i < NUM_LAYERS; i++) {
+            sequenceForward &= LAYERS[i].independentSamples();
+        }
+        SEQUENCE_FORWARD = sequenceForward;
+        MEMORIES = new double[MEMORY_LAYER_NUM][0];
+        INPUTS = new double[MEMORY_LAYER_NUM][0];
         MEMORY_LAYER_INDICES = new int[MEMORY_LAYER_NUM];
         for (int i = 0; i < MEMORY_LAYER_NUM; i++) {
             MEMORY_LAYER_INDICES[i] = memoryLayerIndices.get(i);
         }
     }
 
+    /**
+     * Truncated back propagation through time: the steps are split into chunks of
+     * {@code interval} steps, and the errors of a chunk travel back {@code length} steps from its
+     * last step. Without truncation every error travels back to the first step.
+     */
+    public void setTruncation(int interval, int length) {
+        if (interval < 1 || length < interval) {
+            throw new RuntimeException("Truncation length must be at least the interval");
+        }
+        truncationInterval = interval;
+        truncationLength = length;
+    }
+
+    /**
+     * Number of optimizer steps the cached memory may be reused for before it is fed forward again
+     * under the new weights. With the default of 0 it is refreshed after every step.
+     */
+    public void setStaleness(int steps) {
+        if (steps < 0) {
+            throw new RuntimeException("Staleness can't be negative");
+        }
+        staleness = steps;
+    }
+
     @Override
     public void trainIterations(int iterations, int batchSize) {
         int size = trainIn.size();
@@ -117,7 +169,16 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
         saveMemory();
         MODEL.learn(true);
         resetTrain();
-        Tensor inputError = backPropagateOnError(error, trainIn.size() - 1, returnInputError);
+        int index = trainIn.size() - 1;
+        cacheSteps(index);
+        setMemory(index);
+        MODEL.feedForward(trainIn.get(index));
+        Tensor inputError = backPropagateOnError(error, index, returnInputError);
+        if (inputError != null) {
+            inputError = inputError.copy();
+        }
+        backPropagateThroughTime();
+        ARENA.reset();
         resetTrain();
         MODEL.learn(false);
         return inputError;
@@ -132,25 +193,82 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
         }
     }
 
+    /**
+     * Drops the cached steps, which are fed forward again as far as they are needed.
+     */
     private void resetTrain() {
         resetCache();
-        resetMemory();
-        for (int i = 0; i < trainIn.size(); i++) {
-            addMemoryCell();
-            MODEL.feedForward(trainIn.get(i));
-            addInput();
+        stepsSinceRefresh = 0;
+    }
+
+    /**
+     * Caches the steps up to {@code index}, feeding forward from the memory after the last cached
+     * step.
+     */
+    private void cacheSteps(int index) {
+        int start = cachedSteps;
+        int end = index + 1;
+        if (end <= start) {
+            return;
+        }
+        if (start == 0) {
+            resetMemory();
+        } else {
+            for (int i = 0; i < MEMORY_LAYER_NUM; i++) {
+                TrainableMemory memoryLayer = (TrainableMemory) LAYERS[MEMORY_LAYER_INDICES[i]];
+                memoryLayer.readMemory(MEMORIES[i], start);
+            }
+        }
+        if (SEQUENCE_FORWARD) {
+            feedForwardSequence(start, end);
+        } else {
+            for (int i = start; i < end; i++) {
+                addMemoryCell(i);
+                MODEL.feedForward(trainIn.get(i));
+                addInput(i);
+            }
+            addMemoryCell(end);
+        }
+        cachedSteps = end;
+    }
+
+    /**
+     * Feeds the steps through one layer at a time, as a single batch through the layers without
+     * memory, while the memory layers record their states.
+     */
+    private void feedForwardSequence(int start, int end) {
+        Tensor out = Tensor.stack(trainIn.subList(start, end).toArray(new Tensor[0])).copy(MODEL.getDType());
+        int memoryIndex = 0;
+        for (int i = 0; i < NUM_LAYERS; i++) {
+            if (LAYERS[i] instanceof TrainableMemory) {
+                TrainableMemory memoryLayer = (TrainableMemory) LAYERS[i];
+                out = memoryLayer.feedForwardSequence(out, MEMORIES[memoryIndex], INPUTS[memoryIndex], start);
+                memoryIndex++;
+            } else {
+                out = LAYERS[i].feedForward(out);
+            }
         }
-        addMemoryCell();
-        resetMemory();
     }
 
     private void resetCache() {
-        memoryCells = new ArrayList[MEMORY_LAYER_NUM];
-        inputs = new ArrayList[MEMORY_LAYER_NUM];
+        int size = trainIn.size();
         for (int i = 0; i < MEMORY_LAYER_NUM; i++) {
-            memoryCells[i] = new ArrayList<>();
-            inputs[i] = new ArrayList<>();
+            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[MEMORY_LAYER_INDICES[i]];
+            int memoryLength = (size + 1) * memoryLayer.memorySize();
+            if (MEMORIES[i].length != memoryLength) {
+                MEMORIES[i] = new double[memoryLength];
+            }
+            int inputLength = size * memoryLayer.inputSize();
+            if (INPUTS[i].length != inputLength) {
+                INPUTS[i] = new double[inputLength];
+            }
+        }
+        cachedSteps = 0;
+        if (memoryErrors == null || (MEMORY_LAYER_NUM > 0 && memoryErrors[0].length != trainIn.size())) {
+            memoryErrors = new Tensor[MEMORY_LAYER_NUM][trainIn.size()];
         }
+        firstError = Integer.MAX_VALUE;
+        lastError = -1;
     }
 
     private void resetMemory() {
@@ -161,39 +279,35 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
         }
     }
 
-    private void addMemoryCell() {
-        int memoryIndex = 0;
+    private void addMemoryCell(int step) {
         for (int i = 0; i < MEMORY_LAYER_NUM; i++) {
-            int layerIndex = MEMORY_LAYER_INDICES[i];
-            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[layerIndex];
-            memoryCells[memoryIndex].add(memoryLayer.getMemory());
-            memoryIndex++;
+            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[MEMORY_LAYER_INDICES[i]];
+            memoryLayer.writeMemory(MEMORIES[i], step);
         }
     }
 
-    private void addInput() {
-        int memoryIndex = 0;
+    private void addInput(int step) {
         for (int i = 0; i < MEMORY_LAYER_NUM; i++) {
-            int layerIndex = MEMORY_LAYER_INDICES[i];
-            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[layerIndex];
-            inputs[memoryIndex].add(memoryLayer.getInput());
-            memoryIndex++;
+            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[MEMORY_LAYER_INDICES[i]];
+            memoryLayer.writeInput(INPUTS[i], step);
         }
     }
 
     private void setMemory(int index) {
-        int memoryIndex = 0;
         for (int i = 0; i < MEMORY_LAYER_NUM; i++) {
-            int layerIndex = MEMORY_LAYER_INDICES[i];
-            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[layerIndex];
-            memoryLayer.setMemory(memoryCells[memoryIndex].get(index));
-            memoryLayer.setNextMemory(memoryCells[memoryIndex].get(index + 1));
-            memoryLayer.setInput(inputs[memoryIndex].get(index));
-            memoryIndex++;
+            setMemory(i, index);
         }
     }
 
+    private void setMemory(int memoryIndex, int index) {
+        TrainableMemory memoryLayer = (TrainableMemory) LAYERS[MEMORY_LAYER_INDICES[memoryIndex]];
+        memoryLayer.readMemory(MEMORIES[memoryIndex], index);
+        memoryLayer.readNextMemory(MEMORIES[memoryIndex], index + 1);
+        memoryLayer.readInput(INPUTS[memoryIndex], index);
+    }
+
     private void backPropagate(Tensor in, Tensor expectedOut, int index) {
+        cacheSteps(index);
         setMemory(index);
         Tensor out = MODEL.feedForward(in);
         Tensor error = LOSS.getGradient(out, expectedOut);
@@ -215,50 +329,77 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
 
             trainableLayer.setOutputError(outputError);
             if (TRAIN_MEMORY && trainableLayer instanceof TrainableMemory) {
-                backPropagateThroughTime(outputError, memoryIndex, cacheIndex);
+                addMemoryError(outputError, memoryIndex, cacheIndex);
                 memoryIndex--;
             } else if (TRAIN_NORMAL) {
                 Tensor[] layerGradients = trainableLayer.getGradients();
-                if (weightGradients[layerIndex] == null) {
-                    weightGradients[layerIndex] = layerGradients;
-                } else {
-                    for (int j = 0; j < weightGradients[layerIndex].length; j++) {
-                        weightGradients[layerIndex][j].add(layerGradients[j]);
-                    }
-                }
+                weightGradients[layerIndex] = accumulate(weightGradients[layerIndex], layerGradients);
             }
         }
         return (layerIndex == 0 && !returnInputError) ? null : layer.getDelta(outputError);
     }
 
-    private void backPropagateThroughTime(Tensor memoryError, int memoryIndex, int cacheIndex) {
-        int layerIndex = MEMORY_LAYER_INDICES[memoryIndex];
-        TrainableMemory memoryLayer = (TrainableMemory) LAYERS[layerIndex];
-        Tensor error = memoryError.copy();
-        for (int j = cacheIndex; j >= 0; j--) {
-            memoryLayer.setMemory(memoryCells[memoryIndex].get(j));
-            memoryLayer.setNextMemory(memoryCells[memoryIndex].get(j + 1));
-            memoryLayer.setInput(inputs[memoryIndex].get(j));
-            memoryLayer.calculateGradients(error);
-            if (j != 0) {
-                error = memoryLayer.getMemoryDelta(error);
-            }
-        }
-        Tensor[] layerGradients = memoryLayer.getGradients();
-        if (weightGradients[layerIndex] == null) {
-            weightGradients[layerIndex] = layerGradients;
+    /**
+     * Keeps the error of a memory layer for the next sweep and leaves the layer in the state of
+     * the step, which its delta is taken from.
+     */
+    private void addMemoryError(Tensor memoryError, int memoryIndex, int cacheIndex) {
+        Tensor[] errors = memoryErrors[memoryIndex];
+        if (errors[cacheIndex] == null) {
+            errors[cacheIndex] = memoryError.copy();
         } else {
-            for (int j = 0; j < weightGradients[layerIndex].length; j++) {
-                weightGradients[layerIndex][j].add(layerGradients[j]);
+            errors[cacheIndex].add(memoryError);
+        }
+        firstError = Math.min(firstError, cacheIndex);
+        lastError = Math.max(lastError, cacheIndex);
+        setMemory(memoryIndex, cacheIndex);
+    }
+
+    /**
+     * Propagates the collected errors of every memory layer back through time, one chunk at a
+     * time, adding each step's own error to the one coming from the step after it. Errors are
+     * linear in the error at the top, so this gives the sum of propagating every error back on its
+     * own.
+     */
+    private void backPropagateThroughTime() {
+        if (lastError < 0) {
+            return;
+        }
+        int lastStep = trainIn.size() - 1;
+        for (int memoryIndex = 0; memoryIndex < MEMORY_LAYER_NUM; memoryIndex++) {
+            int layerIndex = MEMORY_LAYER_INDICES[memoryIndex];
+            TrainableMemory memoryLayer = (TrainableMemory) LAYERS[layerIndex];
+            Tensor[] errors = memoryErrors[memoryIndex];
+            for (int chunk = firstError / truncationInterval; chunk <= lastError / truncationInterval; chunk++) {
+                int chunkStart = chunk * truncationInterval;
+                int chunkEnd = Math.min(lastStep, chunkStart + (truncationInterval - 1));
+                int stop = Math.max(0, chunkEnd - (truncationLength - 1));
+                Tensor error = null;
+                for (int j = Math.min(chunkEnd, lastError); j >= stop; j--) {
+                    if (j >= chunkStart && errors[j] != null) {
+                        error = error == null ? errors[j] : error.add(errors[j]);
+                    }
+                    if (error == null) {
+                        continue;
+                    }
+                    setMemory(memoryIndex, j);
+                    memoryLayer.calculateGradients(error);
+                    if (j != stop) {
+                        error = memoryLayer.getMemoryDelta(error);
+                    }
+                }
             }
+            Tensor[] layerGradients = memoryLayer.getGradients();
+            weightGradients[layerIndex] = accumulate(weightGradients[layerIndex], layerGradients);
+            Arrays.fill(errors, null);
         }
-        memoryLayer.setMemory(memoryCells[memoryIndex].get(cacheIndex));
-        memoryLayer.setNextMemory(memoryCells[memoryIndex].get(cacheIndex + 1));
-        memoryLayer.setInput(inputs[memoryIndex].get(cacheIndex));
+        firstError = Integer.MAX_VALUE;
+        lastError = -1;
     }
 
     @Override
     public void step() {
+        backPropagateThroughTime();
         OPTIMIZER.step(weightGradients);
         for (int i = 0; i < weightGradients.length; i++) {
             if (weightGradients[i] != null) {
@@ -268,6 +409,10 @@ public class BackPropagationMemory extends GradientBasedOptimizer {
                 }
             }
         }
-        resetTrain();
+        ARENA.reset();
+        stepsSinceRefresh++;
+        if (stepsSinceRefresh > staleness) {
+            resetTrain();
+        }
     }
 }
@@ -1,6 +1,7 @@
 package xenonn.nn.learningrule;
 
 import xenonn.math.Tensor;
+import xenonn.math.TensorArena;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.loss.Loss;
 import xenonn.nn.model.Model;
@@ -16,6 +17,7 @@ public abstract class GradientBasedOptimizer {
     protected final Loss LOSS;
     protected final Layer[] LAYERS;
     protected final int NUM_LAYERS;
+    protected final TensorArena ARENA;
     protected int capacity = -1;
 
     protected List<Tensor> trainIn;
@@ -34,6 +36,10 @@ public abstract class GradientBasedOptimizer {
         LOSS = loss;
         LAYERS = MODEL.getLayers();
         NUM_LAYERS = LAYERS.length;
+        ARENA = new TensorArena();
+        for (int i = 0; i < NUM_LAYERS; i++) {
+            LAYERS[i].setArena(ARENA);
+        }
 
         trainIn = new ArrayList<>();
         trainOut = new ArrayList<>();
@@ -168,6 +174,24 @@ public abstract class GradientBasedOptimizer {
 
     public abstract void step();
 
+    /**
+     * Adds a layer's gradients to the learning rule's own accumulators, allocating them on first
+     * use, and zeroes the layer's gradients so layers may keep reusing the same buffers.
+     */
+    protected static Tensor[] accumulate(Tensor[] accumulators, Tensor[] gradients) {
+        if (accumulators == null) {
+            accumulators = new Tensor[gradients.length];
+            for (int i = 0; i < gradients.length; i++) {
+                accumulators[i] = Tensor.zeros(gradients[i].dtype(), gradients[i].getShape().clone());
+            }
+        }
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i].add(gradients[i]);
+            gradients[i].zero();
+        }
+        return accumulators;
+    }
+
     private static final int argmax(double[] d) {
         int index = 0;
         for (int i = 1; i < d.length; i++) {
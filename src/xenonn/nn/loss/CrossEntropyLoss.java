@@ -4,37 +4,42 @@ import xenonn.math.Tensor;
 
 public class CrossEntropyLoss extends Loss {
 
-    private static final int[] INDICES = new int[2];
-
     @Override
     public double getLoss(Tensor out, Tensor expectedOut) {
-        int[] indices = new int[2];
-        double[] output = out.get(1, indices);
-        double[] expectedOutput = expectedOut.get(1, indices);
+        int[] shape = out.getShape();
         double loss = 0;
-        for (int i = 0; i < output.length; i++) {
-            if (expectedOutput[i] == 1) {
-                loss += -Math.log(output[i]);
-            } else {
-                loss += -Math.log(1 - output[i]);
+        for (int n = 0; n < shape[0]; n++) {
+            for (int i = 0; i < shape[1]; i++) {
+                if (expectedOut.get2(n, i) == 1) {
+                    loss += -Math.log(out.get2(n, i));
+                } else {
+                    loss += -Math.log(1 - out.get2(n, i));
+                }
             }
         }
         return loss;
     }
 
+    /**
+     * Gradient for each row of a batch, taking the row's largest expected value as its label.
+     */
     @Override
     public Tensor getGradient(Tensor out, Tensor expectedOut) {
         Tensor grad = out.copy();
-        int label = argmax(expectedOut.get(1, INDICES));
-        grad.set(new int[]{0, label}, grad.get(0, label) - 1);
-        grad.multiply(1D / out.getShape()[1]);
+        int[] shape = out.getShape();
+        for (int n = 0; n < shape[0]; n++) {
+            int label = argmax(expectedOut, n);
+            grad.add2(n, label, -1);
+        }
+        grad.multiply(1D / shape[1]);
         return grad;
     }
 
-    private static final int argmax(double[] d) {
+    private static int argmax(Tensor tensor, int row) {
+        int columns = tensor.getShape()[1];
         int index = 0;
-        for (int i = 1; i < d.length; i++) {
-            if (d[i] > d[index]) {
+        for (int i = 1; i < columns; i++) {
+            if (tensor.get2(row, i) > tensor.get2(row, index)) {
                 index = i;
             }
         }
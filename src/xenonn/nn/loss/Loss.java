@@ -17,7 +17,13 @@ public abstract class Loss {
         return loss;
     }
 
+    /**
+     * Loss summed over the samples of a batch, stacked along the first dimension.
+     */
     public abstract double getLoss(Tensor out, Tensor expectedOut);
 
+    /**
+     * Gradient of {@link #getLoss(Tensor, Tensor)} with respect to {@code out}, one row per sample.
+     */
     public abstract Tensor getGradient(Tensor out, Tensor expectedOut);
 }
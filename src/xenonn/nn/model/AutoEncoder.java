@@ -1,5 +1,6 @@
 package xenonn.nn.model;
 
+import xenonn.math.DType;
 import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
@@ -12,13 +13,18 @@ public class AutoEncoder extends Model {
 
 
     public AutoEncoder(int[] inputShape, Layer... layers) {
+        this(DType.FLOAT64, inputShape, layers);
+    }
+
+    public AutoEncoder(DType dtype, int[] inputShape, Layer... layers) {
+        DTYPE = dtype;
         MODEL_INPUT_SHAPE = inputShape;
         LAYERS = layers;
     }
 
     @Override
     public Tensor feedForward(Tensor Tensor) {
-        Tensor out = Tensor.copy();
+        Tensor out = Tensor.copy(DTYPE);
         for (int i = 0; i < LAYERS.length; i++) {
             out = LAYERS[i].feedForward(out);
         }
@@ -26,7 +32,7 @@ public class AutoEncoder extends Model {
     }
 
     public Tensor encode(Tensor Tensor, int encodingLayer) {
-        Tensor out = Tensor.copy();
+        Tensor out = Tensor.copy(DTYPE);
         for (int i = 0; i <= encodingLayer; i++) {
             out = LAYERS[i].feedForward(out);
         }
@@ -36,6 +42,9 @@ public class AutoEncoder extends Model {
 
     @Override
     public void initialize() {
+        for (int i = 0; i < LAYERS.length; i++) {
+            LAYERS[i].setDType(DTYPE);
+        }
         LAYERS[0].setInDimensions(MODEL_INPUT_SHAPE);
         for (int i = 1; i < LAYERS.length; i++) {
             LAYERS[i].setInDimensions(LAYERS[i - 1].getOutDimensions());
@@ -1,11 +1,15 @@
 package xenonn.nn.model;
 
+import xenonn.math.DType;
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
+import xenonn.nn.layer.type.Trainable;
 
 public abstract class Model {
 
     Layer[] LAYERS;
+    DType DTYPE = DType.FLOAT64;
 
     public abstract Tensor feedForward(Tensor Tensor);
 
@@ -22,4 +26,20 @@ public abstract class Model {
     public Layer[] getLayers() {
         return LAYERS;
     }
+
+    public DType getDType() {
+        return DTYPE;
+    }
+
+    /**
+     * Moves the weights of every trainable layer into off-heap storage owned by {@code scope}.
+     * Call after {@link #initialize()}.
+     */
+    public void moveWeights(MemoryScope scope) {
+        for (int i = 0; i < LAYERS.length; i++) {
+            if (LAYERS[i] instanceof Trainable) {
+                ((Trainable) LAYERS[i]).moveWeights(scope);
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package xenonn.nn.optimizer;
 
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
@@ -14,6 +15,7 @@ public class Adam extends Optimizer {
 
     private final Tensor[][] CACHE_0;
     private final Tensor[][] CACHE_1;
+    private final Tensor[][] SCRATCH;
 
     public Adam(Model model, double learningRate, double beta0, double beta1) {
         super(model);
@@ -23,6 +25,7 @@ public class Adam extends Optimizer {
         Layer[] layers = MODEL.getLayers();
         CACHE_0 = new Tensor[layers.length][];
         CACHE_1 = new Tensor[layers.length][];
+        SCRATCH = new Tensor[layers.length][];
         for (int i = 0; i < layers.length; i++) {
             if (layers[i] instanceof Trainable) {
                 Trainable layer = (Trainable) layers[i];
@@ -30,9 +33,11 @@ public class Adam extends Optimizer {
                 int cacheLength = weightShape.length;
                 CACHE_0[i] = new Tensor[cacheLength];
                 CACHE_1[i] = new Tensor[cacheLength];
+                SCRATCH[i] = new Tensor[cacheLength];
                 for (int j = 0; j < cacheLength; j++) {
-                    CACHE_0[i][j] = Tensor.zeros(weightShape[j]);
-                    CACHE_1[i][j] = Tensor.zeros(weightShape[j]);
+                    CACHE_0[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
+                    CACHE_1[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
+                    SCRATCH[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
                 }
             }
         }
@@ -46,17 +51,25 @@ public class Adam extends Optimizer {
                 int length = gradients[i].length;
                 Trainable layer = (Trainable) layers[i];
                 for (int j = 0; j < length; j++) {
+                    Tensor scratch = SCRATCH[i][j];
                     CACHE_0[i][j].multiply(BETA_0);
-                    CACHE_0[i][j].add(Tensor.multiply(gradients[i][j], 1 - BETA_0));
+                    CACHE_0[i][j].add(Tensor.multiplyInto(gradients[i][j], 1 - BETA_0, scratch));
 
                     CACHE_1[i][j].multiply(BETA_1);
-                    CACHE_1[i][j].add(Tensor.multiply(Tensor.square(gradients[i][j]), 1 - BETA_1));
+                    CACHE_1[i][j].add(Tensor.squareInto(gradients[i][j], scratch).multiply(1 - BETA_1));
 
-                    Tensor cache0Hat = Tensor.multiply(CACHE_0[i][j], 1 / (1 - BETA_0));
-                    Tensor cache1Hat = Tensor.multiply(CACHE_1[i][j], 1 / (1 - BETA_1));
-                    layer.getWeights()[j].subtract(Tensor.multiply(Tensor.divide(cache0Hat, Tensor.add(Tensor.sqrt(cache1Hat), EPSILON)), LEARNING_RATE));
+                    Tensor.multiplyInto(CACHE_1[i][j], 1 / (1 - BETA_1), scratch).sqrt().add(EPSILON);
+                    Tensor.divideInto(CACHE_0[i][j], scratch, scratch).multiply(LEARNING_RATE / (1 - BETA_0));
+                    layer.getWeights()[j].subtract(scratch);
                 }
+                layer.weightsChanged();
             }
         }
     }
+
+    @Override
+    public void moveCaches(MemoryScope scope) {
+        moveTo(CACHE_0, scope);
+        moveTo(CACHE_1, scope);
+    }
 }
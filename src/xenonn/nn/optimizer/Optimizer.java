@@ -1,5 +1,6 @@
 package xenonn.nn.optimizer;
 
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
 import xenonn.nn.model.Model;
 
@@ -12,4 +13,21 @@ public abstract class Optimizer {
     }
 
     public abstract void step(Tensor[][] gradients);
+
+    /**
+     * Moves the optimizer's per-weight caches into off-heap storage owned by {@code scope}.
+     */
+    public void moveCaches(MemoryScope scope) {
+
+    }
+
+    protected static void moveTo(Tensor[][] tensors, MemoryScope scope) {
+        for (int i = 0; i < tensors.length; i++) {
+            if (tensors[i] != null) {
+                for (int j = 0; j < tensors[i].length; j++) {
+                    tensors[i][j].moveTo(scope);
+                }
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package xenonn.nn.optimizer;
 
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
@@ -12,6 +13,7 @@ public class RMSProp extends Optimizer {
     private final double BETA;
 
     private final Tensor[][] CACHE;
+    private final Tensor[][] SCRATCH;
 
     public RMSProp(Model model, double learningRate, double beta) {
         super(model);
@@ -19,14 +21,17 @@ public class RMSProp extends Optimizer {
         BETA = beta;
         Layer[] layers = MODEL.getLayers();
         CACHE = new Tensor[layers.length][];
+        SCRATCH = new Tensor[layers.length][];
         for (int i = 0; i < layers.length; i++) {
             if (layers[i] instanceof Trainable) {
                 Trainable layer = (Trainable) layers[i];
                 int[][] weightShape = layer.weightShape();
                 int cacheLength = weightShape.length;
                 CACHE[i] = new Tensor[cacheLength];
+                SCRATCH[i] = new Tensor[cacheLength];
                 for (int j = 0; j < cacheLength; j++) {
-                    CACHE[i][j] = Tensor.zeros(weightShape[j]);
+                    CACHE[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
+                    SCRATCH[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
                 }
             }
         }
@@ -40,11 +45,22 @@ public class RMSProp extends Optimizer {
                 int length = gradients[i].length;
                 Trainable layer = (Trainable) layers[i];
                 for (int j = 0; j < length; j++) {
+                    Tensor scratch = SCRATCH[i][j];
                     CACHE[i][j].multiply(BETA);
-                    CACHE[i][j].add(Tensor.multiply(Tensor.square(gradients[i][j]), 1 - BETA));
-                    layer.getWeights()[j].subtract(Tensor.multiply(Tensor.divide(gradients[i][j], Tensor.add(Tensor.sqrt(CACHE[i][j]), EPSILON)), LEARNING_RATE));
+                    Tensor.squareInto(gradients[i][j], scratch).multiply(1 - BETA);
+                    CACHE[i][j].add(scratch);
+
+                    Tensor.sqrtInto(CACHE[i][j], scratch).add(EPSILON);
+                    Tensor.divideInto(gradients[i][j], scratch, scratch).multiply(LEARNING_RATE);
+                    layer.getWeights()[j].subtract(scratch);
                 }
+                layer.weightsChanged();
             }
         }
     }
+
+    @Override
+    public void moveCaches(MemoryScope scope) {
+        moveTo(CACHE, scope);
+    }
 }
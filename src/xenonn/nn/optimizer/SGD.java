@@ -1,5 +1,6 @@
 package xenonn.nn.optimizer;
 
+import xenonn.math.MemoryScope;
 import xenonn.math.Tensor;
 import xenonn.nn.layer.Layer;
 import xenonn.nn.layer.type.Trainable;
@@ -11,6 +12,7 @@ public class SGD extends Optimizer {
     private final double MOMENTUM;
 
     private final Tensor[][] CACHE;
+    private final Tensor[][] SCRATCH;
 
     public SGD(Model model, double learningRate, double momentum) {
         super(model);
@@ -18,14 +20,17 @@ public class SGD extends Optimizer {
         MOMENTUM = momentum;
         Layer[] layers = MODEL.getLayers();
         CACHE = new Tensor[layers.length][];
+        SCRATCH = new Tensor[layers.length][];
         for (int i = 0; i < layers.length; i++) {
             if (layers[i] instanceof Trainable) {
                 Trainable layer = (Trainable) layers[i];
                 int[][] weightShape = layer.weightShape();
                 int cacheLength = weightShape.length;
                 CACHE[i] = new Tensor[cacheLength];
+                SCRATCH[i] = new Tensor[cacheLength];
                 for (int j = 0; j < cacheLength; j++) {
-                    CACHE[i][j] = Tensor.zeros(weightShape[j]);
+                    CACHE[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
+                    SCRATCH[i][j] = Tensor.zeros(MODEL.getDType(), weightShape[j]);
                 }
             }
         }
@@ -39,11 +44,18 @@ public class SGD extends Optimizer {
                 int length = gradients[i].length;
                 Trainable layer = (Trainable) layers[i];
                 for (int j = 0; j < length; j++) {
+                    Tensor scratch = SCRATCH[i][j];
                     CACHE[i][j].multiply(MOMENTUM);
-                    CACHE[i][j].add(Tensor.multiply(gradients[i][j], 1 - MOMENTUM));
-                    layer.getWeights()[j].subtract(Tensor.multiply(CACHE[i][j], LEARNING_RATE));
+                    CACHE[i][j].add(Tensor.multiplyInto(gradients[i][j], 1 - MOMENTUM, scratch));
+                    layer.getWeights()[j].subtract(Tensor.multiplyInto(CACHE[i][j], LEARNING_RATE, scratch));
                 }
+                layer.weightsChanged();
             }
         }
     }
+
+    @Override
+    public void moveCaches(MemoryScope scope) {
+        moveTo(CACHE, scope);
+    }
 }
@@ -0,0 +1,122 @@
+package xenonn.sample;
+
+import xenonn.math.Tensor;
+import xenonn.nn.layer.conv.Convolution2D;
+import xenonn.nn.layer.conv.ConvolutionAlgorithm;
+
+import java.util.Random;
+
+/**
+ * Compares the outputs, weight gradients and input deltas of every {@link ConvolutionAlgorithm}
+ * against {@link ConvolutionAlgorithm#DIRECT}, once with the initial weights and once after
+ * changing them, and throws if any differ by more than {@link #TOLERANCE}.
+ */
+public class ConvolutionCheck {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static final Random RANDOM = new Random(0);
+
+    public static void main(String[] args) {
+        ConvolutionAlgorithm[] all = {ConvolutionAlgorithm.IM2COL, ConvolutionAlgorithm.WINOGRAD, ConvolutionAlgorithm.FFT};
+        ConvolutionAlgorithm[] noWinograd = {ConvolutionAlgorithm.IM2COL, ConvolutionAlgorithm.FFT};
+        check(3, 8, 8, 4, 5, 2, true, all);
+        check(3, 9, 7, 16, 3, 3, false, all);
+        check(5, 12, 10, 2, 4, 2, true, noWinograd);
+        check(5, 12, 10, 3, 2, 1, false, noWinograd);
+        check(1, 6, 6, 3, 2, 2, false, noWinograd);
+        System.out.println("All algorithms agree with DIRECT");
+    }
+
+    private static void check(int kernelSize, int x, int y, int channels, int filters, int batch,
+                              boolean zeroPadding, ConvolutionAlgorithm[] algorithms) {
+        Convolution2D reference = layer(ConvolutionAlgorithm.DIRECT, kernelSize, x, y, channels, filters, zeroPadding);
+        reference.initializeWeights();
+        Convolution2D[] layers = new Convolution2D[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            layers[i] = layer(algorithms[i], kernelSize, x, y, channels, filters, zeroPadding);
+            copyWeights(reference, layers[i]);
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            Tensor in = random(batch, x, y, channels);
+            Tensor[] expected = run(reference, in);
+            for (int i = 0; i < algorithms.length; i++) {
+                Tensor[] actual = run(layers[i], in);
+                double difference = 0;
+                for (int j = 0; j < expected.length; j++) {
+                    difference = Math.max(difference, maxDifference(expected[j], actual[j]));
+                }
+                String name = algorithms[i] + " " + kernelSize + "x" + kernelSize + " " + x + "x" + y + "x" + channels
+                        + " filters " + filters + " batch " + batch + (zeroPadding ? " padded" : "") + " pass " + pass;
+                System.out.println(name + ": " + difference);
+                if (difference > TOLERANCE) {
+                    throw new RuntimeException(name + " differs from DIRECT by " + difference);
+                }
+            }
+            for (int i = 0; i < reference.getWeights().length; i += 2) {
+                Tensor step = random(reference.getWeights()[i].getShape());
+                reference.getWeights()[i].add(step);
+                for (Convolution2D layer : layers) {
+                    layer.getWeights()[i].add(step);
+                }
+            }
+            reference.weightsChanged();
+            for (Convolution2D layer : layers) {
+                layer.weightsChanged();
+            }
+        }
+    }
+
+    private static Convolution2D layer(ConvolutionAlgorithm algorithm, int kernelSize, int x, int y, int channels,
+                                       int filters, boolean zeroPadding) {
+        Convolution2D layer = new Convolution2D(filters, kernelSize, zeroPadding);
+        layer.setAlgorithm(algorithm);
+        layer.setInDimensions(new int[]{1, x, y, channels});
+        layer.learning(true);
+        return layer;
+    }
+
+    private static void copyWeights(Convolution2D from, Convolution2D to) {
+        for (int i = 0; i < from.getWeights().length; i++) {
+            Tensor.copyInto(from.getWeights()[i], to.getWeights()[i]);
+        }
+        to.weightsChanged();
+    }
+
+    /**
+     * Output, input delta and weight gradients of one pass.
+     */
+    private static Tensor[] run(Convolution2D layer, Tensor in) {
+        Tensor out = layer.feedForward(in.copy()).copy();
+        Tensor error = Tensor.multiply(out, 0.5);
+        layer.setOutputError(error);
+        Tensor[] gradients = layer.getGradients();
+        Tensor[] result = new Tensor[gradients.length + 2];
+        result[0] = out;
+        result[1] = layer.getDelta(error).copy();
+        for (int i = 0; i < gradients.length; i++) {
+            result[i + 2] = gradients[i].copy();
+        }
+        return result;
+    }
+
+    private static Tensor random(int... shape) {
+        Tensor tensor = Tensor.zeros(shape);
+        double[] values = new double[tensor.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = RANDOM.nextGaussian();
+        }
+        tensor.setAll(values);
+        return tensor;
+    }
+
+    private static double maxDifference(Tensor a, Tensor b) {
+        double[] aValues = a.toArray();
+        double[] bValues = b.toArray();
+        double difference = 0;
+        for (int i = 0; i < aValues.length; i++) {
+            difference = Math.max(difference, Math.abs(aValues[i] - bValues[i]));
+        }
+        return difference;
+    }
+}